@@ -0,0 +1,155 @@
+/*The color settings of one render, shared by the main fractal and the Julia panel. A copy of the settings is taken
+ * when a render starts so that every tile colors the frame the same way, even if the sliders are moved part way through.
+ * The colors are worked out once per setting into palettes (lookup tables) so that coloring a pixel is a single array
+ * read instead of creating several Colors*/
+public class Coloring {
+	//entries of the smooth coloring palette for each whole maxIterations of smooth value. The palette covers smooth values
+	//up to twice maxIterations, anything past that has the color of the last entry
+	private static final int FRACTAL_STEPS = 16384;
+	//entries of each Orbit Trap palette for a distance of one trap size. Distances of twice the trap size and more have
+	//the brightest color
+	private static final int TRAP_STEPS = 4096;
+
+	//value of Color.brighter, which the brightness levels copy
+	private static final double BRIGHTER_FACTOR = 0.7;
+	private static final int BRIGHTER_MINIMUM = (int) (1.0 / (1.0 - BRIGHTER_FACTOR));
+
+	//the Orbit Trap colors do not depend on the settings so there is one palette for every render, one part for each
+	//remainder of the iterations taken divided by 6
+	private static final int[] trapPalette = createTrapPalette();
+
+	//the settings used last, so that renders with the same settings share their palette
+	private static Coloring last;
+
+	private final int red;
+	private final int green;
+	private final int blue;
+	private final int brightnessLevel;
+	private final Gradient gradient;
+	private final boolean histogram;
+	private final int[] fractalPalette;
+
+	/*constructor. Colors the fractal with the given gradient, or shades of the given RGB color if gradient is null*/
+	private Coloring(int red, int green, int blue, int brightnessLevel, Gradient gradient, boolean histogram){
+		this.red = red;
+		this.green = green;
+		this.blue = blue;
+		this.brightnessLevel = brightnessLevel;
+		this.gradient = gradient;
+		this.histogram = histogram;
+		fractalPalette = createFractalPalette();
+	}
+
+	/*returns the coloring for the given settings. Colors the fractal with the given gradient, or shades of the given RGB
+	 * color if gradient is null. With histogram coloring the palette is spread evenly over the pixels of the frame
+	 * instead of over the iterations. The palette is only built again when the settings change*/
+	public static synchronized Coloring create(int red, int green, int blue, int brightnessLevel, Gradient gradient,
+			boolean histogram){
+		if(last == null || last.red != red || last.green != green || last.blue != blue || last.brightnessLevel != brightnessLevel
+				|| last.gradient != gradient || last.histogram != histogram){
+			last = new Coloring(red, green, blue, brightnessLevel, gradient, histogram);
+		}
+		return last;
+	}
+
+	/*returns true if the smooth values are colored by their place in the histogram of the frame*/
+	public boolean isHistogram(){
+		return histogram;
+	}
+
+	/*works out the color of every entry of the smooth coloring palette*/
+	private int[] createFractalPalette(){
+		int[] palette = new int[FRACTAL_STEPS * 2];
+
+		for(int i = 0; i < palette.length; i++){
+			float interval = (float) i / FRACTAL_STEPS;
+
+			if(gradient != null){
+				int rgb = gradient.colorAt(interval);
+				palette[i] = brighten((rgb >> 16) & 0xff, (rgb >> 8) & 0xff, rgb & 0xff, brightnessLevel);
+			}else{
+				//calulate RGB value for red, green and blue parts. Limited to 255 as some calculations create numbers greater than 255
+				int calcRed = Math.min((int)(interval * red), 255);
+				int calcGreen = Math.min((int)(interval * green), 255);
+				int calcBlue = Math.min((int)(interval * blue), 255);
+
+				//brightens the color depending on brightness level selected
+				palette[i] = brighten(calcRed, calcGreen, calcBlue, brightnessLevel);
+			}
+		}
+		return palette;
+	}
+
+	/*works out the colors of the Orbit Traps. Uses region splits to color three groups of traps three specific colors*/
+	private static int[] createTrapPalette(){
+		int[] palette = new int[6 * TRAP_STEPS * 2];
+
+		for(int count = 0; count < 6; count++){
+			for(int i = 0; i < TRAP_STEPS * 2; i++){
+				double ratio = (double) i / TRAP_STEPS;
+				int oRed = Math.min((int)(ratio*255), 255);
+				int oGreen = 0;
+				int oBlue = 0;
+
+				if(count%3 == 0){
+					//color with the third color if the number of iterations taken is a multiple of 3
+					oGreen = Math.min((int)(ratio*204), 255);
+					oBlue = Math.min((int)(ratio*184), 255);
+				}else if(count%2 == 1){
+					//color with the second color if the number of iterations taken is odd
+					oGreen = Math.min((int)(ratio*153), 255);
+				}
+
+				palette[count * TRAP_STEPS * 2 + i] = 0xff000000 | (oRed << 16) | (oGreen << 8) | oBlue;
+			}
+		}
+		return palette;
+	}
+
+	/*returns the color brightened the given number of times in the same way as Color.brighter, as an RGB value*/
+	private static int brighten(int red, int green, int blue, int times){
+		for(int i = 0; i < times; i++){
+			if(red == 0 && green == 0 && blue == 0){
+				red = BRIGHTER_MINIMUM;
+				green = BRIGHTER_MINIMUM;
+				blue = BRIGHTER_MINIMUM;
+				continue;
+			}
+			red = brighten(red);
+			green = brighten(green);
+			blue = brighten(blue);
+		}
+		return 0xff000000 | (red << 16) | (green << 8) | blue;
+	}
+
+	/*brightens one part of a color that is not black*/
+	private static int brighten(int part){
+		if(part > 0 && part < BRIGHTER_MINIMUM){
+			part = BRIGHTER_MINIMUM;
+		}
+		return Math.min((int)(part / BRIGHTER_FACTOR), 255);
+	}
+
+	/*color the current pixel depending on the smooth value calculated from the number of iterations taken*/
+	public int colorFractal(float interval, int maxIterations){
+		int index = (int) (interval / maxIterations * FRACTAL_STEPS);
+		return fractalPalette[Math.max(0, Math.min(index, fractalPalette.length - 1))];
+	}
+
+	/*color the current pixel by its place in the histogram of the frame, so that the colors are spread evenly over the
+	 * pixels instead of the iterations. start and width are the share of the escaped pixels below each whole smooth value
+	 * and with that value. The pixel is placed inside its share by the fraction of its smooth value*/
+	public int colorHistogram(float interval, float[] start, float[] width){
+		int bin = Math.max(0, Math.min((int) interval, start.length - 1));
+		int index = (int) ((start[bin] + (interval - bin) * width[bin]) * FRACTAL_STEPS);
+		return fractalPalette[Math.max(0, Math.min(index, fractalPalette.length - 1))];
+	}
+
+	/*Color the current pixel depending on the result of the Orbit Trap.
+	 * Uses region splits to color three groups of traps three specific colors.
+	 */
+	public int colorOrbitTrap(int count, double dist, double trapSize){
+		int index = (int) Math.min(dist / trapSize * TRAP_STEPS, TRAP_STEPS * 2 - 1);
+		return trapPalette[(count % 6) * TRAP_STEPS * 2 + Math.max(index, 0)];
+	}
+}
@@ -0,0 +1,273 @@
+/*Double-double iteration kernels for zooms too deep for a double but not deep enough to need perturbation.
+ * Each number is held as the unevaluated sum of two doubles, a high part and a much smaller low part, which gives
+ * about 32 significant digits (106 bits). The arithmetic is built on the error free TwoSum and TwoProduct steps,
+ * using Math.fma to get the exact rounding error of each product.
+ * The numbers are held in slots of a work array that is created once per tile, so no objects are created per pixel or
+ * per iteration. Like IterationKernel, z and c are both passed in so that the main fractal and the Julia can be calculated*/
+public class DoubleDoubleKernel {
+	//pixels spaced closer than this are calculated in double-double, the same limit where a double starts to fail
+	public static final double DOUBLE_DOUBLE_SPACING = 1e-13;
+
+	//size of the work array that has to be passed to each kernel
+	public static final int WORK_SIZE = 20;
+
+	/*orbits are checked for cycles in the same way as IterationKernel (Brent's method), but the difference from the saved
+	 * point is worked out in double-double and has to be far smaller, as the pixels themselves are this close together*/
+	private static final double PERIOD_TOLERANCE = 1e-60;
+	private static final int PERIOD_CHECK_START = 8;
+
+	//positions of the numbers in the work array. Each number takes two places, the high part and then the low part
+	private static final int ZR = 0;
+	private static final int ZI = 2;
+	private static final int CR = 4;
+	private static final int CI = 6;
+	private static final int ZR2 = 8;
+	private static final int ZI2 = 10;
+	private static final int T = 12;
+	private static final int U = 14;
+	private static final int SAVED_R = 16;
+	private static final int SAVED_I = 18;
+
+	/*iterates the selected fractal type from z until the point escapes or maxIterations is reached. Each number is given
+	 * as its high and low parts. The high parts of the last point of the orbit are stored in state for the smooth coloring.
+	 * Returns the number of iterations taken*/
+	public static int escape(int fractalType, double zrHigh, double zrLow, double ziHigh, double ziLow, double crHigh, double crLow,
+			double ciHigh, double ciLow, int maxIterations, double[] work, double[] state){
+		load(work, zrHigh, zrLow, ziHigh, ziLow, crHigh, crLow, ciHigh, ciLow);
+		int saveAt = PERIOD_CHECK_START;
+		int iterations = 0;
+
+		while(modulusSquared(work) < 4 && iterations < maxIterations){
+			step(fractalType, work);
+			iterations++;
+
+			//stop once the orbit has come back to the saved point
+			if(returned(work)){
+				state[IterationKernel.REAL] = work[ZR];
+				state[IterationKernel.IMAG] = work[ZI];
+				state[IterationKernel.SKIPPED] = maxIterations - iterations;
+				return maxIterations;
+			}
+			if(iterations == saveAt){
+				save(work);
+				saveAt <<= 1;
+			}
+		}
+
+		state[IterationKernel.REAL] = work[ZR];
+		state[IterationKernel.IMAG] = work[ZI];
+		state[IterationKernel.SKIPPED] = 0;
+		return iterations;
+	}
+
+	/*iterates the selected fractal type from z until the point escapes, maxIterations is reached or the point is trapped by
+	 * the selected Orbit Trap. The traps are only checked with the high parts, which are far more precise than the traps
+	 * need. The distance returned by the Orbit Trap is stored in state. Returns the number of iterations taken*/
+	public static int trap(int fractalType, int orbitOption, double zrHigh, double zrLow, double ziHigh, double ziLow, double crHigh,
+			double crLow, double ciHigh, double ciLow, int maxIterations, double[] work, double[] state){
+		load(work, zrHigh, zrLow, ziHigh, ziLow, crHigh, crLow, ciHigh, ciLow);
+		double dist = 0;
+		int saveAt = PERIOD_CHECK_START;
+		int iterations = 0;
+
+		while(modulusSquared(work) < 4 && iterations < maxIterations && dist == 0){
+			step(fractalType, work);
+
+			//Check if complex point is trapped by the Orbit Trap
+			dist = IterationKernel.orbitTrap(orbitOption, work[ZR], work[ZI], dist);
+			iterations++;
+
+			//an untrapped orbit that has come back to the saved point will never be trapped or escape
+			if(dist == 0 && returned(work)){
+				state[IterationKernel.REAL] = work[ZR];
+				state[IterationKernel.IMAG] = work[ZI];
+				state[IterationKernel.DIST] = 0;
+				state[IterationKernel.SKIPPED] = maxIterations - iterations;
+				return maxIterations;
+			}
+			if(iterations == saveAt){
+				save(work);
+				saveAt <<= 1;
+			}
+		}
+
+		state[IterationKernel.REAL] = work[ZR];
+		state[IterationKernel.IMAG] = work[ZI];
+		state[IterationKernel.DIST] = dist;
+		state[IterationKernel.SKIPPED] = 0;
+		return iterations;
+	}
+
+	/*returns the rounding error of sum = a + b (TwoSum), so that a + b is exactly sum plus the error. Used to turn the
+	 * centre of the view plus the offset of a pixel into a double-double*/
+	public static double sumError(double a, double b, double sum){
+		double virtual = sum - a;
+		return (a - (sum - virtual)) + (b - virtual);
+	}
+
+	/*stores the starting point of an orbit in the work array*/
+	private static void load(double[] work, double zrHigh, double zrLow, double ziHigh, double ziLow, double crHigh, double crLow,
+			double ciHigh, double ciLow){
+		work[ZR] = zrHigh;
+		work[ZR + 1] = zrLow;
+		work[ZI] = ziHigh;
+		work[ZI + 1] = ziLow;
+		work[CR] = crHigh;
+		work[CR + 1] = crLow;
+		work[CI] = ciHigh;
+		work[CI + 1] = ciLow;
+		save(work);
+	}
+
+	/*saves z as the point that the orbit is checked against for cycles*/
+	private static void save(double[] work){
+		work[SAVED_R] = work[ZR];
+		work[SAVED_R + 1] = work[ZR + 1];
+		work[SAVED_I] = work[ZI];
+		work[SAVED_I + 1] = work[ZI + 1];
+	}
+
+	/*returns true if z is within the cycle tolerance of the saved point*/
+	private static boolean returned(double[] work){
+		double dr = (work[ZR] - work[SAVED_R]) + (work[ZR + 1] - work[SAVED_R + 1]);
+		double di = (work[ZI] - work[SAVED_I]) + (work[ZI + 1] - work[SAVED_I + 1]);
+		return (dr * dr) + (di * di) < PERIOD_TOLERANCE;
+	}
+
+	/*returns the squared distance of z from the origin, from the high parts only*/
+	private static double modulusSquared(double[] work){
+		return (work[ZR] * work[ZR]) + (work[ZI] * work[ZI]);
+	}
+
+	/*moves z one step along the orbit of the selected fractal type. Uses the same formulas as IterationKernel*/
+	private static void step(int fractalType, double[] work){
+		square(work, ZR, ZR2);
+		square(work, ZI, ZI2);
+
+		switch (fractalType) {
+		case 1:
+			//square twice
+			multiply(work, ZR, ZI, T);
+			scale(work, T, 2, ZI);
+			subtract(work, ZR2, ZI2, ZR);
+			square(work, ZR, ZR2);
+			square(work, ZI, ZI2);
+			multiply(work, ZR, ZI, T);
+			scale(work, T, 2, T);
+			add(work, T, CI, ZI);
+			subtract(work, ZR2, ZI2, T);
+			add(work, T, CR, ZR);
+			break;
+
+		case 2:
+			multiply(work, ZR, ZI, T);
+			abs(work, T);
+			scale(work, T, 2, T);
+			subtract(work, T, CI, ZI);
+			subtract(work, ZR2, ZI2, T);
+			add(work, T, CR, ZR);
+			break;
+
+		case 3:
+			//real part (zr^2 - 3 zi^2)|zr| + cr, worked out in U until the imaginary part has used zr
+			scale(work, ZI2, 3, T);
+			subtract(work, ZR2, T, T);
+			abs(work, ZR);
+			multiply(work, T, ZR, T);
+			add(work, T, CR, U);
+			//imaginary part (3 zr^2 - zi^2)|zi| + ci
+			scale(work, ZR2, 3, T);
+			subtract(work, T, ZI2, T);
+			abs(work, ZI);
+			multiply(work, T, ZI, T);
+			add(work, T, CI, ZI);
+			work[ZR] = work[U];
+			work[ZR + 1] = work[U + 1];
+			break;
+
+		default:
+			multiply(work, ZR, ZI, T);
+			scale(work, T, 2, T);
+			add(work, T, CI, ZI);
+			subtract(work, ZR2, ZI2, T);
+			add(work, T, CR, ZR);
+			break;
+		}
+	}
+
+	/*work[out] = work[a] + work[b]*/
+	private static void add(double[] work, int a, int b, int out){
+		sum(work, a, work[b], work[b + 1], out);
+	}
+
+	/*work[out] = work[a] - work[b]*/
+	private static void subtract(double[] work, int a, int b, int out){
+		sum(work, a, -work[b], -work[b + 1], out);
+	}
+
+	/*work[out] = work[a] + b. Adds the high parts and the low parts separately with TwoSum so that no precision is
+	 * lost when the two numbers nearly cancel*/
+	private static void sum(double[] work, int a, double bHigh, double bLow, int out){
+		double aHigh = work[a];
+		double aLow = work[a + 1];
+
+		double high = aHigh + bHigh;
+		double highError = sumError(aHigh, bHigh, high);
+		double low = aLow + bLow;
+		double lowError = sumError(aLow, bLow, low);
+
+		//renormalise twice so the low part is less than half a unit in the last place of the high part
+		highError += low;
+		double next = high + highError;
+		highError -= next - high;
+		highError += lowError;
+		work[out] = next + highError;
+		work[out + 1] = highError - (work[out] - next);
+	}
+
+	/*work[out] = work[a] * work[b]. The exact error of the product of the high parts comes from a fused multiply add*/
+	private static void multiply(double[] work, int a, int b, int out){
+		double aHigh = work[a];
+		double aLow = work[a + 1];
+		double bHigh = work[b];
+		double bLow = work[b + 1];
+
+		double product = aHigh * bHigh;
+		double error = Math.fma(aHigh, bHigh, -product);
+		error += (aHigh * bLow) + (aLow * bHigh);
+		work[out] = product + error;
+		work[out + 1] = error - (work[out] - product);
+	}
+
+	/*work[out] = work[a]^2*/
+	private static void square(double[] work, int a, int out){
+		double high = work[a];
+		double low = work[a + 1];
+
+		double product = high * high;
+		double error = Math.fma(high, high, -product);
+		error += 2 * (high * low);
+		work[out] = product + error;
+		work[out + 1] = error - (work[out] - product);
+	}
+
+	/*work[out] = work[a] * factor for a small whole number factor*/
+	private static void scale(double[] work, int a, double factor, int out){
+		double high = work[a];
+		double low = work[a + 1];
+
+		double product = high * factor;
+		double error = Math.fma(high, factor, -product);
+		error += low * factor;
+		work[out] = product + error;
+		work[out + 1] = error - (work[out] - product);
+	}
+
+	/*work[a] = |work[a]|*/
+	private static void abs(double[] work, int a){
+		if(work[a] < 0 || (work[a] == 0 && work[a + 1] < 0)){
+			work[a] = -work[a];
+			work[a + 1] = -work[a + 1];
+		}
+	}
+}
@@ -0,0 +1,194 @@
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+
+/*A number held as a double mantissa and a separate int exponent (mantissa * 2^exponent), so that it can be far smaller
+ * (or larger) than a double allows while keeping the 53 bits of precision of a double. Used for the size of the view
+ * and the offsets of pixels at zooms deeper than about 1e-308, where a double underflows to 0.
+ * The mantissa is kept between 0.5 and 1 (or is 0), so comparing magnitudes only needs the exponent in most cases.
+ * FloatExp is immutable, every operation returns a new number*/
+public final class FloatExp implements Comparable<FloatExp> {
+	public static final FloatExp ZERO = new FloatExp(0, 0);
+
+	private static final double LOG10_2 = Math.log10(2);
+	private static final double LOG2_10 = Math.log(10) / Math.log(2);
+
+	//mantissas whose exponents differ by more than this do not overlap, so adding the smaller one changes nothing
+	private static final int PRECISION = 64;
+
+	private final double mantissa;
+	private final int exponent;
+
+	/*constructor. The mantissa must already be between 0.5 and 1 in size, or 0*/
+	private FloatExp(double mantissa, int exponent){
+		this.mantissa = mantissa;
+		this.exponent = exponent;
+	}
+
+	/*returns the number mantissa * 2^exponent with the mantissa moved back between 0.5 and 1*/
+	private static FloatExp normalise(double mantissa, int exponent){
+		if(mantissa == 0){
+			return ZERO;
+		}
+		int shift = Math.getExponent(mantissa) + 1;
+		return new FloatExp(Math.scalb(mantissa, -shift), exponent + shift);
+	}
+
+	/*returns the given double as a FloatExp*/
+	public static FloatExp valueOf(double value){
+		//subnormal doubles are scaled up first so that the mantissa keeps all of its bits
+		if(value != 0 && Math.abs(value) < Double.MIN_NORMAL){
+			return normalise(Math.scalb(value, PRECISION), -PRECISION);
+		}
+		return normalise(value, 0);
+	}
+
+	/*returns the given number as a FloatExp, rounded to the 53 bits of the mantissa. Works for numbers of any size*/
+	public static FloatExp valueOf(BigDecimal value){
+		double rounded = value.doubleValue();
+		if(rounded == 0 || Math.abs(rounded) < Double.MIN_NORMAL || Double.isInfinite(rounded)){
+			if(value.signum() == 0){
+				return ZERO;
+			}
+			//scale the number by a power of two to near 1 first, the number of digits gives its size to within a few bits
+			int shift = (int) Math.ceil((value.scale() - value.precision()) * LOG2_10);
+			return normalise(scaleByPowerOfTwo(value, shift).doubleValue(), -shift);
+		}
+		return valueOf(rounded);
+	}
+
+	/*returns value * 2^power exactly*/
+	private static BigDecimal scaleByPowerOfTwo(BigDecimal value, int power){
+		if(power >= 0){
+			return value.multiply(new BigDecimal(BigInteger.ONE.shiftLeft(power)));
+		}
+		//2^-n is 5^n / 10^n, which is exact in decimal
+		return value.multiply(new BigDecimal(BigInteger.valueOf(5).pow(-power))).movePointLeft(-power);
+	}
+
+	/*returns this + other*/
+	public FloatExp add(FloatExp other){
+		if(mantissa == 0){
+			return other;
+		}
+		if(other.mantissa == 0){
+			return this;
+		}
+		int difference = exponent - other.exponent;
+		if(difference > PRECISION){
+			return this;
+		}
+		if(difference < -PRECISION){
+			return other;
+		}
+		if(difference >= 0){
+			return normalise(mantissa + Math.scalb(other.mantissa, -difference), exponent);
+		}
+		return normalise(Math.scalb(mantissa, difference) + other.mantissa, other.exponent);
+	}
+
+	/*returns this - other*/
+	public FloatExp subtract(FloatExp other){
+		return add(other.negate());
+	}
+
+	/*returns this * other*/
+	public FloatExp multiply(FloatExp other){
+		return normalise(mantissa * other.mantissa, exponent + other.exponent);
+	}
+
+	/*returns this * factor. The factor has to be a normal double*/
+	public FloatExp multiply(double factor){
+		return normalise(mantissa * factor, exponent);
+	}
+
+	/*returns this / other*/
+	public FloatExp divide(FloatExp other){
+		return normalise(mantissa / other.mantissa, exponent - other.exponent);
+	}
+
+	/*returns this / divisor. The divisor has to be a normal double*/
+	public FloatExp divide(double divisor){
+		return normalise(mantissa / divisor, exponent);
+	}
+
+	/*returns -this*/
+	public FloatExp negate(){
+		if(mantissa == 0){
+			return this;
+		}
+		return new FloatExp(-mantissa, exponent);
+	}
+
+	/*returns |this|*/
+	public FloatExp abs(){
+		return mantissa < 0 ? negate() : this;
+	}
+
+	/*returns -1, 0 or 1 as this number is negative, 0 or positive*/
+	public int signum(){
+		return (int) Math.signum(mantissa);
+	}
+
+	/*returns the exponent of the number, which is between 0.5 * 2^exponent and 2^exponent in size. Very quick way to
+	 * compare the size of a number with a power of two*/
+	public int getExponent(){
+		return exponent;
+	}
+
+	/*returns this number as a double. Numbers too small for a double give 0*/
+	public double toDouble(){
+		return Math.scalb(mantissa, exponent);
+	}
+
+	/*returns this * 2^power as a double. Used to bring a number that is too small for a double into range*/
+	public double scaledValue(int power){
+		return Math.scalb(mantissa, exponent + power);
+	}
+
+	/*returns this number exactly as a BigDecimal*/
+	public BigDecimal toBigDecimal(){
+		//the mantissa has 53 bits, so as a whole number it fits in a long
+		long whole = (long) Math.scalb(mantissa, 53);
+		return scaleByPowerOfTwo(BigDecimal.valueOf(whole), exponent - 53);
+	}
+
+	/*returns the base 10 logarithm of the size of this number*/
+	public double log10(){
+		return Math.log10(Math.abs(mantissa)) + (exponent * LOG10_2);
+	}
+
+	/*returns the smaller of two numbers*/
+	public static FloatExp min(FloatExp a, FloatExp b){
+		return a.compareTo(b) <= 0 ? a : b;
+	}
+
+	@Override
+	public int compareTo(FloatExp other){
+		int sign = signum();
+		if(sign != other.signum()){
+			return Integer.compare(sign, other.signum());
+		}
+		if(sign == 0){
+			return 0;
+		}
+		int size = exponent != other.exponent ? Integer.compare(exponent, other.exponent)
+				: Double.compare(Math.abs(mantissa), Math.abs(other.mantissa));
+		return sign > 0 ? size : -size;
+	}
+
+	@Override
+	public boolean equals(Object other){
+		return other instanceof FloatExp && compareTo((FloatExp) other) == 0;
+	}
+
+	@Override
+	public int hashCode(){
+		return Double.hashCode(mantissa) * 31 + exponent;
+	}
+
+	@Override
+	public String toString(){
+		return toBigDecimal().round(new MathContext(17)).toString();
+	}
+}
@@ -0,0 +1,243 @@
+import java.util.Locale;
+
+/*A fractal typed in by the user as the formula for the next value of z, such as "z^3 + c*z + c". The formula is parsed
+ * and compiled to bytecode straight away (see FormulaCompiler), once as an escape time kernel and once as an Orbit
+ * Trap kernel, so rendering a custom fractal runs the same kind of code as the built in ones.
+ * Formulas are made of z, c, i, numbers (2i is imaginary), + - * / and ^ with a whole number power, brackets and the
+ * functions abs (the absolute value of each part, as in the Burning Ship), conj, re and im*/
+public class Formula {
+	//position of the custom fractal in the list of fractal types
+	public static final int FRACTAL_TYPE = 4;
+
+	//largest power allowed after ^, higher powers overflow a double within a couple of iterations anyway
+	private static final int MAX_POWER = 64;
+
+	private final String text;
+	private final Class<?> escapeKernel;
+	private final Class<?> trapKernel;
+
+	/*constructor*/
+	private Formula(String text, Class<?> escapeKernel, Class<?> trapKernel){
+		this.text = text;
+		this.escapeKernel = escapeKernel;
+		this.trapKernel = trapKernel;
+	}
+
+	/*parses and compiles a formula. Throws IllegalArgumentException with a description of the problem if the formula
+	 * cannot be understood*/
+	public static Formula compile(String text){
+		String formula = text.trim();
+		return new Formula(formula, new Parser(formula, new FormulaCompiler(false)).compile(),
+				new Parser(formula, new FormulaCompiler(true)).compile());
+	}
+
+	/*returns the formula as it was typed*/
+	public String getText(){
+		return text;
+	}
+
+	/*returns a new kernel for the formula, using the given Orbit Trap style if orbitTrap is set*/
+	public FractalKernel createKernel(boolean orbitTrap, int orbitOption){
+		try{
+			if(orbitTrap){
+				return (FractalKernel) trapKernel.getDeclaredConstructor(int.class).newInstance(orbitOption);
+			}
+			return (FractalKernel) escapeKernel.getDeclaredConstructor().newInstance();
+		}catch(ReflectiveOperationException e){
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/*Recursive descent parser that compiles the formula as it reads it.
+	 * expression = term {("+" | "-") term}
+	 * term = unary {("*" | "/") unary}
+	 * unary = "-" unary | power
+	 * power = primary ["^" unary]
+	 * primary = number ["i"] | "z" | "c" | "i" | function "(" expression ")" | "(" expression ")"*/
+	static class Parser {
+		private final String text;
+		private final FormulaCompiler compiler;
+		private int position;
+
+		Parser(String text, FormulaCompiler compiler){
+			this.text = text;
+			this.compiler = compiler;
+		}
+
+		/*compiles the whole formula and returns the kernel class*/
+		Class<?> compile(){
+			if(text.isEmpty()){
+				throw new IllegalArgumentException("the formula is empty");
+			}
+			FormulaCompiler.Value next = expression();
+			skipSpaces();
+			if(position < text.length()){
+				throw error("unexpected \"" + text.charAt(position) + "\"");
+			}
+			return compiler.define(next);
+		}
+
+		private FormulaCompiler.Value expression(){
+			FormulaCompiler.Value value = term();
+			while(true){
+				if(accept('+')){
+					value = compiler.add(value, term());
+				}else if(accept('-')){
+					value = compiler.subtract(value, term());
+				}else{
+					return value;
+				}
+			}
+		}
+
+		private FormulaCompiler.Value term(){
+			FormulaCompiler.Value value = unary();
+			while(true){
+				if(accept('*')){
+					value = compiler.multiply(value, unary());
+				}else if(accept('/')){
+					value = compiler.divide(value, unary());
+				}else{
+					return value;
+				}
+			}
+		}
+
+		private FormulaCompiler.Value unary(){
+			if(accept('-')){
+				return compiler.negate(unary());
+			}
+			return power();
+		}
+
+		private FormulaCompiler.Value power(){
+			FormulaCompiler.Value value = primary();
+			if(accept('^')){
+				int start = position;
+				FormulaCompiler.Value exponent = unary();
+				//the power has to be known while compiling so that it can be unrolled into multiplications
+				if(!exponent.isConstant() || !exponent.imag.is(0) || exponent.real.value != Math.rint(exponent.real.value)
+						|| exponent.real.value < 0 || exponent.real.value > MAX_POWER){
+					position = start;
+					throw error("powers must be whole numbers from 0 to " + MAX_POWER);
+				}
+				value = compiler.power(value, (int) exponent.real.value);
+			}
+			return value;
+		}
+
+		private FormulaCompiler.Value primary(){
+			skipSpaces();
+			if(position >= text.length()){
+				throw error("the formula ends too soon");
+			}
+
+			char next = text.charAt(position);
+			if(Character.isDigit(next) || next == '.'){
+				double number = number();
+				//a number written straight before i, such as 2i, is imaginary
+				if(position < text.length() && text.charAt(position) == 'i'
+						&& (position + 1 == text.length() || !Character.isLetter(text.charAt(position + 1)))){
+					position++;
+					return compiler.constant(0, number);
+				}
+				return compiler.constant(number, 0);
+			}
+			if(accept('(')){
+				FormulaCompiler.Value value = expression();
+				expect(')');
+				return value;
+			}
+			if(Character.isLetter(next)){
+				int start = position;
+				while(position < text.length() && Character.isLetter(text.charAt(position))){
+					position++;
+				}
+				String name = text.substring(start, position).toLowerCase(Locale.ROOT);
+				switch (name) {
+				case "z":    return compiler.variableZ();
+
+				case "c":    return compiler.variableC();
+
+				case "i":    return compiler.constant(0, 1);
+
+				case "abs":  return compiler.abs(argument());
+
+				case "conj": return compiler.conjugate(argument());
+
+				case "re":   return compiler.real(argument());
+
+				case "im":   return compiler.imag(argument());
+
+				default:
+					position = start;
+					throw error("unknown name \"" + name + "\"");
+				}
+			}
+			throw error("unexpected \"" + next + "\"");
+		}
+
+		/*reads the bracketed argument of a function*/
+		private FormulaCompiler.Value argument(){
+			expect('(');
+			FormulaCompiler.Value value = expression();
+			expect(')');
+			return value;
+		}
+
+		/*reads a number such as 2, 0.5 or 1e-3*/
+		private double number(){
+			int start = position;
+			while(position < text.length() && (Character.isDigit(text.charAt(position)) || text.charAt(position) == '.')){
+				position++;
+			}
+			//exponent
+			if(position < text.length() && (text.charAt(position) == 'e' || text.charAt(position) == 'E')){
+				int mark = position++;
+				if(position < text.length() && (text.charAt(position) == '+' || text.charAt(position) == '-')){
+					position++;
+				}
+				if(position < text.length() && Character.isDigit(text.charAt(position))){
+					while(position < text.length() && Character.isDigit(text.charAt(position))){
+						position++;
+					}
+				}else{
+					position = mark;
+				}
+			}
+			try{
+				return Double.parseDouble(text.substring(start, position));
+			}catch(NumberFormatException e){
+				position = start;
+				throw error("invalid number");
+			}
+		}
+
+		/*skips the given character and any spaces before it if it is next. Returns true if it was skipped*/
+		private boolean accept(char symbol){
+			skipSpaces();
+			if(position < text.length() && text.charAt(position) == symbol){
+				position++;
+				return true;
+			}
+			return false;
+		}
+
+		private void expect(char symbol){
+			if(!accept(symbol)){
+				throw error("\"" + symbol + "\" expected");
+			}
+		}
+
+		private void skipSpaces(){
+			while(position < text.length() && Character.isWhitespace(text.charAt(position))){
+				position++;
+			}
+		}
+
+		/*returns an exception describing a problem at the current position*/
+		private IllegalArgumentException error(String problem){
+			return new IllegalArgumentException(problem + " at character " + (position + 1));
+		}
+	}
+}
@@ -0,0 +1,643 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/*Turns a parsed formula into the bytecode of a FractalKernel, so that a custom fractal runs as fast as one written by
+ * hand. The parser in Formula calls one method here for each part of the formula, and each complex value is worked out
+ * into a pair of local variables, the real and imaginary parts. Parts that are known while compiling (numbers, and the
+ * imaginary part of real numbers) are kept as constants and folded, so "z^2 + c" gives exactly the same instructions as
+ * IterationKernel.mandelbrot.
+ * The formula is put inside the same loop as the IterationKernel kernels (escape test, cycle check and Orbit Trap) and
+ * the class is defined as a hidden class. The class file is version 49 (Java 5), which does not need stack map frames,
+ * so the branches of the loop can be written without working out the types on the stack*/
+public class FormulaCompiler {
+	//instruction set opcodes that are used
+	private static final int ICONST_0 = 0x03;
+	private static final int ICONST_1 = 0x04;
+	private static final int DCONST_0 = 0x0e;
+	private static final int DCONST_1 = 0x0f;
+	private static final int BIPUSH = 0x10;
+	private static final int LDC2_W = 0x14;
+	private static final int ILOAD = 0x15;
+	private static final int DLOAD = 0x18;
+	private static final int ALOAD = 0x19;
+	private static final int ILOAD_1 = 0x1b;
+	private static final int ALOAD_0 = 0x2a;
+	private static final int ISTORE = 0x36;
+	private static final int DSTORE = 0x39;
+	private static final int DASTORE = 0x52;
+	private static final int DADD = 0x63;
+	private static final int ISUB = 0x64;
+	private static final int DSUB = 0x67;
+	private static final int DMUL = 0x6b;
+	private static final int DDIV = 0x6f;
+	private static final int DNEG = 0x77;
+	private static final int ISHL = 0x78;
+	private static final int IINC = 0x84;
+	private static final int I2D = 0x87;
+	private static final int DCMPL = 0x97;
+	private static final int DCMPG = 0x98;
+	private static final int IFNE = 0x9a;
+	private static final int IFGE = 0x9c;
+	private static final int IF_ICMPNE = 0xa0;
+	private static final int IF_ICMPGE = 0xa2;
+	private static final int GOTO = 0xa7;
+	private static final int IRETURN = 0xac;
+	private static final int RETURN = 0xb1;
+	private static final int GETFIELD = 0xb4;
+	private static final int INVOKESPECIAL = 0xb7;
+	private static final int INVOKESTATIC = 0xb8;
+	private static final int WIDE = 0xc4;
+
+	//local variables of iterate(zr, zi, cr, ci, maxIterations, state). Doubles take two places
+	private static final int ZR = 1;
+	private static final int ZI = 3;
+	private static final int CR = 5;
+	private static final int CI = 7;
+	private static final int MAX_ITERATIONS = 9;
+	private static final int STATE = 10;
+	private static final int ZR2 = 11;
+	private static final int ZI2 = 13;
+	private static final int SAVED_R = 15;
+	private static final int SAVED_I = 17;
+	private static final int DR = 19;
+	private static final int DI = 21;
+	private static final int SAVE_AT = 23;
+	private static final int ITERATIONS = 24;
+	private static final int DIST = 25;
+	private static final int FIRST_TEMPORARY = 27;
+
+	//longest method the branches can span, the offsets of branches are 16 bits
+	private static final int MAX_CODE_LENGTH = 30000;
+
+	private static final String ESCAPE_KERNEL = "FractalKernel$EscapeKernel";
+	private static final String TRAP_KERNEL = "FractalKernel$TrapKernel";
+
+	/*One part (real or imaginary) of a value of the formula. Either a number known while compiling or a local variable*/
+	static class Part {
+		final boolean constant;
+		final double value;
+		final int slot;
+
+		private Part(boolean constant, double value, int slot){
+			this.constant = constant;
+			this.value = value;
+			this.slot = slot;
+		}
+
+		/*returns true if both parts are the same local variable or the same number*/
+		boolean sameAs(Part other){
+			return constant ? other.constant && Double.compare(value, other.value) == 0 : !other.constant && slot == other.slot;
+		}
+
+		/*returns true if the part is known to be exactly the given number*/
+		boolean is(double number){
+			return constant && value == number;
+		}
+	}
+
+	/*A complex value of the formula*/
+	static class Value {
+		final Part real;
+		final Part imag;
+
+		Value(Part real, Part imag){
+			this.real = real;
+			this.imag = imag;
+		}
+
+		/*returns true if the value is a number known while compiling*/
+		boolean isConstant(){
+			return real.constant && imag.constant;
+		}
+	}
+
+	private final boolean orbitTrap;
+	private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+	private final ConstantPool pool = new ConstantPool();
+	//positions of the branches to fill in and the labels they jump to
+	private final ArrayList<int[]> branches = new ArrayList<int[]>();
+	private final ArrayList<Integer> labels = new ArrayList<Integer>();
+	private int nextSlot = FIRST_TEMPORARY;
+
+	/*constructor. Compiles an escape time kernel, or an Orbit Trap kernel if orbitTrap is set*/
+	FormulaCompiler(boolean orbitTrap){
+		this.orbitTrap = orbitTrap;
+	}
+
+	/*returns z*/
+	Value variableZ(){
+		return new Value(slot(ZR), slot(ZI));
+	}
+
+	/*returns c*/
+	Value variableC(){
+		return new Value(slot(CR), slot(CI));
+	}
+
+	/*returns the number real + imag*i*/
+	Value constant(double real, double imag){
+		return new Value(constant(real), constant(imag));
+	}
+
+	/*returns a + b*/
+	Value add(Value a, Value b){
+		return new Value(add(a.real, b.real), add(a.imag, b.imag));
+	}
+
+	/*returns a - b*/
+	Value subtract(Value a, Value b){
+		return new Value(subtract(a.real, b.real), subtract(a.imag, b.imag));
+	}
+
+	/*returns -a*/
+	Value negate(Value a){
+		return new Value(negate(a.real), negate(a.imag));
+	}
+
+	/*returns a * b*/
+	Value multiply(Value a, Value b){
+		if(a.real.sameAs(b.real) && a.imag.sameAs(b.imag)){
+			return square(a);
+		}
+		Part real = subtract(multiply(a.real, b.real), multiply(a.imag, b.imag));
+		Part imag = add(multiply(a.real, b.imag), multiply(a.imag, b.real));
+		return new Value(real, imag);
+	}
+
+	/*returns a / b*/
+	Value divide(Value a, Value b){
+		if(b.imag.is(0)){
+			return new Value(divide(a.real, b.real), divide(a.imag, b.real));
+		}
+		Part denominator = add(multiply(b.real, b.real), multiply(b.imag, b.imag));
+		Part real = add(multiply(a.real, b.real), multiply(a.imag, b.imag));
+		Part imag = subtract(multiply(a.imag, b.real), multiply(a.real, b.imag));
+		return new Value(divide(real, denominator), divide(imag, denominator));
+	}
+
+	/*returns a^2, using the same three products as the Mandelbrot kernel*/
+	Value square(Value a){
+		Part real = subtract(multiply(a.real, a.real), multiply(a.imag, a.imag));
+		Part imag = multiply(constant(2), multiply(a.real, a.imag));
+		return new Value(real, imag);
+	}
+
+	/*returns a^power for a whole number power, by repeated squaring*/
+	Value power(Value a, int power){
+		if(power == 0){
+			return constant(1, 0);
+		}
+		if(power == 1){
+			return a;
+		}
+		Value half = square(power(a, power / 2));
+		return power % 2 == 0 ? half : multiply(half, a);
+	}
+
+	/*returns |re(a)| + |im(a)|i, as used by the Burning Ship*/
+	Value abs(Value a){
+		return new Value(abs(a.real), abs(a.imag));
+	}
+
+	/*returns the complex conjugate of a*/
+	Value conjugate(Value a){
+		return new Value(a.real, negate(a.imag));
+	}
+
+	/*returns the real part of a*/
+	Value real(Value a){
+		return new Value(a.real, constant(0));
+	}
+
+	/*returns the imaginary part of a, as a real number*/
+	Value imag(Value a){
+		return new Value(a.imag, constant(0));
+	}
+
+	private Part constant(double value){
+		return new Part(true, value, -1);
+	}
+
+	private Part slot(int slot){
+		return new Part(false, 0, slot);
+	}
+
+	private Part add(Part a, Part b){
+		if(a.constant && b.constant){
+			return constant(a.value + b.value);
+		}
+		if(a.is(0)){
+			return b;
+		}
+		if(b.is(0)){
+			return a;
+		}
+		return operation(a, b, DADD);
+	}
+
+	private Part subtract(Part a, Part b){
+		if(a.constant && b.constant){
+			return constant(a.value - b.value);
+		}
+		if(b.is(0)){
+			return a;
+		}
+		if(a.is(0)){
+			return negate(b);
+		}
+		return operation(a, b, DSUB);
+	}
+
+	private Part multiply(Part a, Part b){
+		if(a.constant && b.constant){
+			return constant(a.value * b.value);
+		}
+		//0 * x is folded to 0 even though 0 * infinity is not 0, as z has escaped long before it is infinite
+		if(a.is(0) || b.is(0)){
+			return constant(0);
+		}
+		if(a.is(1)){
+			return b;
+		}
+		if(b.is(1)){
+			return a;
+		}
+		return operation(a, b, DMUL);
+	}
+
+	private Part divide(Part a, Part b){
+		if(a.constant && b.constant){
+			return constant(a.value / b.value);
+		}
+		if(b.is(1)){
+			return a;
+		}
+		return operation(a, b, DDIV);
+	}
+
+	private Part negate(Part a){
+		if(a.constant){
+			return constant(-a.value);
+		}
+		load(a);
+		code.write(DNEG);
+		return store();
+	}
+
+	private Part abs(Part a){
+		if(a.constant){
+			return constant(Math.abs(a.value));
+		}
+		load(a);
+		code.write(INVOKESTATIC);
+		writeShort(pool.method("java/lang/Math", "abs", "(D)D"));
+		return store();
+	}
+
+	/*emits a op b into a new local variable*/
+	private Part operation(Part a, Part b, int opcode){
+		load(a);
+		load(b);
+		code.write(opcode);
+		return store();
+	}
+
+	/*pushes a part onto the stack*/
+	private void load(Part part){
+		if(!part.constant){
+			local(DLOAD, part.slot);
+		}else if(Double.doubleToRawLongBits(part.value) == 0){
+			code.write(DCONST_0);
+		}else if(part.value == 1){
+			code.write(DCONST_1);
+		}else{
+			code.write(LDC2_W);
+			writeShort(pool.constant(part.value));
+		}
+	}
+
+	/*stores the double on top of the stack in a new local variable*/
+	private Part store(){
+		Part part = slot(nextSlot);
+		local(DSTORE, nextSlot);
+		nextSlot += 2;
+		return part;
+	}
+
+	/*emits a load or store of a local variable, with the wide prefix for variables past 255*/
+	private void local(int opcode, int slot){
+		if(slot > 255){
+			code.write(WIDE);
+			code.write(opcode);
+			writeShort(slot);
+		}else{
+			code.write(opcode);
+			code.write(slot);
+		}
+	}
+
+	private void writeShort(int value){
+		code.write(value >>> 8);
+		code.write(value);
+	}
+
+	/*returns a new label, placed later with place()*/
+	private int label(){
+		labels.add(-1);
+		return labels.size() - 1;
+	}
+
+	/*places a label at the current position*/
+	private void place(int label){
+		labels.set(label, code.size());
+	}
+
+	/*emits a branch to a label*/
+	private void branch(int opcode, int label){
+		branches.add(new int[] {code.size(), label});
+		code.write(opcode);
+		writeShort(0);
+	}
+
+	/*emits state[index] = the double on top of the stack, which is pushed by the given part*/
+	private void storeState(int index, Part part){
+		local(ALOAD, STATE);
+		code.write(ICONST_0 + index);
+		load(part);
+		code.write(DASTORE);
+	}
+
+	/*returns the code of iterate: the iteration loop with the formula inside it. The formula has already been compiled
+	 * by the parser calling the methods above, and is copied into the loop. It has no branches, so it can be moved*/
+	private byte[] method(byte[] formula, Value next){
+		code.reset();
+		int loop = label();
+		int end = label();
+		int notCycle = label();
+		int notSave = label();
+
+		//zr2 = zr*zr; zi2 = zi*zi; the saved point starts at z
+		load(slot(ZR)); load(slot(ZR)); code.write(DMUL); local(DSTORE, ZR2);
+		load(slot(ZI)); load(slot(ZI)); code.write(DMUL); local(DSTORE, ZI2);
+		load(slot(ZR)); local(DSTORE, SAVED_R);
+		load(slot(ZI)); local(DSTORE, SAVED_I);
+		code.write(BIPUSH); code.write(IterationKernel.PERIOD_CHECK_START); local(ISTORE, SAVE_AT);
+		code.write(ICONST_0); local(ISTORE, ITERATIONS);
+		if(orbitTrap){
+			code.write(DCONST_0); local(DSTORE, DIST);
+		}
+
+		//while(zr2 + zi2 < 4 && iterations < maxIterations && dist == 0)
+		place(loop);
+		load(slot(ZR2)); load(slot(ZI2)); code.write(DADD); load(constant(4)); code.write(DCMPG); branch(IFGE, end);
+		local(ILOAD, ITERATIONS); local(ILOAD, MAX_ITERATIONS); branch(IF_ICMPGE, end);
+		if(orbitTrap){
+			load(slot(DIST)); code.write(DCONST_0); code.write(DCMPL); branch(IFNE, end);
+		}
+
+		//the formula, then z = the new value. Both parts are pushed first in case one of them is a part of z
+		code.write(formula, 0, formula.length);
+		load(next.real); load(next.imag); local(DSTORE, ZI); local(DSTORE, ZR);
+		load(slot(ZR)); load(slot(ZR)); code.write(DMUL); local(DSTORE, ZR2);
+		load(slot(ZI)); load(slot(ZI)); code.write(DMUL); local(DSTORE, ZI2);
+
+		//dist = IterationKernel.orbitTrap(orbitOption, zr, zi, dist)
+		if(orbitTrap){
+			local(ALOAD, 0);
+			code.write(GETFIELD);
+			writeShort(pool.field(TRAP_KERNEL, "orbitOption", "I"));
+			load(slot(ZR)); load(slot(ZI)); load(slot(DIST));
+			code.write(INVOKESTATIC);
+			writeShort(pool.method("IterationKernel", "orbitTrap", "(IDDD)D"));
+			local(DSTORE, DIST);
+		}
+		code.write(IINC); code.write(ITERATIONS); code.write(1);
+
+		//stop once the orbit has come back to the saved point
+		load(slot(ZR)); load(slot(SAVED_R)); code.write(DSUB); local(DSTORE, DR);
+		load(slot(ZI)); load(slot(SAVED_I)); code.write(DSUB); local(DSTORE, DI);
+		if(orbitTrap){
+			load(slot(DIST)); code.write(DCONST_0); code.write(DCMPL); branch(IFNE, notCycle);
+		}
+		load(slot(DR)); load(slot(DR)); code.write(DMUL); load(slot(DI)); load(slot(DI)); code.write(DMUL); code.write(DADD);
+		load(constant(IterationKernel.PERIOD_TOLERANCE)); code.write(DCMPG); branch(IFGE, notCycle);
+		if(orbitTrap){
+			storeState(IterationKernel.DIST, constant(0));
+		}
+		storeState(IterationKernel.REAL, slot(ZR));
+		storeState(IterationKernel.IMAG, slot(ZI));
+		local(ALOAD, STATE); code.write(ICONST_0 + IterationKernel.SKIPPED);
+		local(ILOAD, MAX_ITERATIONS); local(ILOAD, ITERATIONS); code.write(ISUB); code.write(I2D); code.write(DASTORE);
+		local(ILOAD, MAX_ITERATIONS); code.write(IRETURN);
+		place(notCycle);
+
+		//move the saved point along at powers of two
+		local(ILOAD, ITERATIONS); local(ILOAD, SAVE_AT); branch(IF_ICMPNE, notSave);
+		load(slot(ZR)); local(DSTORE, SAVED_R);
+		load(slot(ZI)); local(DSTORE, SAVED_I);
+		local(ILOAD, SAVE_AT); code.write(ICONST_1); code.write(ISHL); local(ISTORE, SAVE_AT);
+		place(notSave);
+		branch(GOTO, loop);
+
+		//the point escaped or reached maxIterations
+		place(end);
+		storeState(IterationKernel.REAL, slot(ZR));
+		storeState(IterationKernel.IMAG, slot(ZI));
+		if(orbitTrap){
+			storeState(IterationKernel.DIST, slot(DIST));
+		}
+		storeState(IterationKernel.SKIPPED, constant(0));
+		local(ILOAD, ITERATIONS); code.write(IRETURN);
+
+		byte[] bytes = code.toByteArray();
+		for(int[] branch : branches){
+			int jump = labels.get(branch[1]) - branch[0];
+			bytes[branch[0] + 1] = (byte) (jump >>> 8);
+			bytes[branch[0] + 2] = (byte) jump;
+		}
+		return bytes;
+	}
+
+	/*finishes compiling a formula whose new value of z is next, and defines the kernel as a hidden class.
+	 * Throws IllegalArgumentException if the formula is too long to compile*/
+	Class<?> define(Value next){
+		byte[] formula = code.toByteArray();
+		byte[] iterate = method(formula, next);
+		if(iterate.length > MAX_CODE_LENGTH){
+			throw new IllegalArgumentException("the formula is too long");
+		}
+
+		try{
+			return MethodHandles.lookup().defineHiddenClass(classFile(iterate), true).lookupClass();
+		}catch(IllegalAccessException e){
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/*writes the class file of the kernel, a subclass of EscapeKernel or TrapKernel with a constructor and iterate*/
+	private byte[] classFile(byte[] iterate){
+		String superclass = orbitTrap ? TRAP_KERNEL : ESCAPE_KERNEL;
+		String constructorType = orbitTrap ? "(I)V" : "()V";
+		int thisClass = pool.classReference("CompiledFormula");
+		int superClass = pool.classReference(superclass);
+		int superConstructor = pool.method(superclass, "<init>", constructorType);
+		int codeName = pool.utf8("Code");
+		int constructorName = pool.utf8("<init>");
+		int constructorDescriptor = pool.utf8(constructorType);
+		int iterateName = pool.utf8("iterate");
+		int iterateDescriptor = pool.utf8("(DDDDI[D)I");
+
+		//constructor: super(orbitOption) or super()
+		ByteArrayOutputStream constructor = new ByteArrayOutputStream();
+		constructor.write(ALOAD_0);
+		if(orbitTrap){
+			constructor.write(ILOAD_1);
+		}
+		constructor.write(INVOKESPECIAL);
+		constructor.write(superConstructor >>> 8);
+		constructor.write(superConstructor);
+		constructor.write(RETURN);
+
+		try{
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			out.writeInt(0xcafebabe);
+			out.writeShort(0);
+			out.writeShort(49);
+			pool.write(out);
+			//public final super
+			out.writeShort(0x0031);
+			out.writeShort(thisClass);
+			out.writeShort(superClass);
+			out.writeShort(0);
+			out.writeShort(0);
+			out.writeShort(2);
+			writeMethod(out, constructorName, constructorDescriptor, codeName, 2, 2, constructor.toByteArray());
+			writeMethod(out, iterateName, iterateDescriptor, codeName, 8, nextSlot, iterate);
+			out.writeShort(0);
+			return bytes.toByteArray();
+		}catch(IOException e){
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/*writes a public method with a Code attribute*/
+	private static void writeMethod(DataOutputStream out, int name, int descriptor, int codeName, int maxStack, int maxLocals,
+			byte[] code) throws IOException{
+		out.writeShort(0x0001);
+		out.writeShort(name);
+		out.writeShort(descriptor);
+		out.writeShort(1);
+		out.writeShort(codeName);
+		out.writeInt(12 + code.length);
+		out.writeShort(maxStack);
+		out.writeShort(maxLocals);
+		out.writeInt(code.length);
+		out.write(code);
+		out.writeShort(0);
+		out.writeShort(0);
+	}
+
+	/*The constant pool of the class file. Each entry is only added once*/
+	static class ConstantPool {
+		private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		private final DataOutputStream out = new DataOutputStream(bytes);
+		private final HashMap<String, Integer> entries = new HashMap<String, Integer>();
+		private int count = 1;
+
+		int utf8(String text){
+			Integer index = entries.get("U" + text);
+			if(index == null){
+				index = add(1, "U" + text);
+				write(text);
+			}
+			return index;
+		}
+
+		int classReference(String name){
+			int nameIndex = utf8(name);
+			Integer index = entries.get("C" + name);
+			if(index == null){
+				index = add(7, "C" + name);
+				writeShort(nameIndex);
+			}
+			return index;
+		}
+
+		int method(String owner, String name, String descriptor){
+			return member(10, owner, name, descriptor);
+		}
+
+		int field(String owner, String name, String descriptor){
+			return member(9, owner, name, descriptor);
+		}
+
+		int constant(double value){
+			String key = "D" + Double.doubleToRawLongBits(value);
+			Integer index = entries.get(key);
+			if(index == null){
+				index = add(6, key);
+				try{
+					out.writeDouble(value);
+				}catch(IOException e){
+					throw new IllegalStateException(e);
+				}
+				//doubles take two entries
+				count++;
+			}
+			return index;
+		}
+
+		private int member(int tag, String owner, String name, String descriptor){
+			int ownerIndex = classReference(owner);
+			int nameIndex = utf8(name);
+			int descriptorIndex = utf8(descriptor);
+			String typeKey = "T" + name + " " + descriptor;
+			Integer type = entries.get(typeKey);
+			if(type == null){
+				type = add(12, typeKey);
+				writeShort(nameIndex);
+				writeShort(descriptorIndex);
+			}
+			String key = tag + owner + "." + name + " " + descriptor;
+			Integer index = entries.get(key);
+			if(index == null){
+				index = add(tag, key);
+				writeShort(ownerIndex);
+				writeShort(type);
+			}
+			return index;
+		}
+
+		private int add(int tag, String key){
+			if(count >= 0xffff){
+				throw new IllegalArgumentException("the formula is too long");
+			}
+			bytes.write(tag);
+			entries.put(key, count);
+			return count++;
+		}
+
+		private void writeShort(int value){
+			bytes.write(value >>> 8);
+			bytes.write(value);
+		}
+
+		private void write(String text){
+			try{
+				out.writeUTF(text);
+			}catch(IOException e){
+				throw new IllegalStateException(e);
+			}
+		}
+
+		void write(DataOutputStream file) throws IOException{
+			file.writeShort(count);
+			file.write(bytes.toByteArray());
+		}
+	}
+}
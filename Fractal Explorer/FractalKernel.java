@@ -0,0 +1,179 @@
+/*The calculation of one pixel for a fractal type and coloring mode, shared by the main fractal and the Julia panel.
+ * There is one small final class per fractal type and mode, each calling a single IterationKernel loop, so the choice
+ * of fractal and mode is made once per render by create() instead of on every iteration or every pixel. Each call site
+ * then only ever sees one class during a render, and the JIT can inline the whole loop into it*/
+public abstract class FractalKernel {
+
+	/*returns the kernel for the selected fractal type, using the given Orbit Trap style if orbitTrap is set and the
+	 * smooth escape time coloring otherwise*/
+	public static FractalKernel create(int fractalType, boolean orbitTrap, int orbitOption){
+		if(orbitTrap){
+			switch (fractalType) {
+			case 1:  return new TriplebrotTrap(orbitOption);
+
+			case 2:  return new BurningShipTrap(orbitOption);
+
+			case 3:  return new BirdOfPreyTrap(orbitOption);
+
+			default: return new MandelbrotTrap(orbitOption);
+			}
+		}
+
+		switch (fractalType) {
+		case 1:  return new Triplebrot();
+
+		case 2:  return new BurningShip();
+
+		case 3:  return new BirdOfPrey();
+
+		default: return new Mandelbrot();
+		}
+	}
+
+	/*returns the kernel for the selected fractal type, or the compiled kernel of the formula if the custom fractal type
+	 * is selected*/
+	public static FractalKernel create(int fractalType, Formula formula, boolean orbitTrap, int orbitOption){
+		if(fractalType == Formula.FRACTAL_TYPE && formula != null){
+			return formula.createKernel(orbitTrap, orbitOption);
+		}
+		return create(fractalType, orbitTrap, orbitOption);
+	}
+
+	/*returns the kernel for the selected fractal type that checks every Orbit Trap style in one pass. The state array
+	 * passed to it must be IterationKernel.ALL_TRAPS_STATE_SIZE long*/
+	public static FractalKernel createAllTraps(int fractalType){
+		return new AllTraps(fractalType);
+	}
+
+	/*iterates from z with the point c until the point escapes or maxIterations is reached (or it is trapped, for the
+	 * Orbit Trap kernels). The results are stored in state in the layout used by IterationKernel. Returns the number of
+	 * iterations taken*/
+	public abstract int iterate(double zr, double zi, double cr, double ci, int maxIterations, double[] state);
+
+	/*stores the result of a pixel, worked out from the iterations taken and the state left by iterate, in results at
+	 * the given index. The pixel can then be colored by the results*/
+	public abstract void store(int iterations, int maxIterations, double[] state, IterationBuffer results, int index);
+
+	/*kernels colored by the smooth escape time*/
+	public static abstract class EscapeKernel extends FractalKernel {
+
+		@Override
+		public void store(int iterations, int maxIterations, double[] state, IterationBuffer results, int index) {
+			results.setSmooth(index, IterationKernel.smoothValue(iterations, maxIterations, state));
+		}
+	}
+
+	/*kernels colored by the Orbit Trap that stopped the orbit*/
+	public static abstract class TrapKernel extends FractalKernel {
+		protected final int orbitOption;
+
+		TrapKernel(int orbitOption){
+			this.orbitOption = orbitOption;
+		}
+
+		@Override
+		public void store(int iterations, int maxIterations, double[] state, IterationBuffer results, int index) {
+			results.setTrap(index, iterations, state[IterationKernel.DIST]);
+		}
+	}
+
+	static final class Mandelbrot extends EscapeKernel {
+
+		@Override
+		public int iterate(double zr, double zi, double cr, double ci, int maxIterations, double[] state) {
+			return IterationKernel.mandelbrot(zr, zi, cr, ci, maxIterations, state);
+		}
+	}
+
+	static final class Triplebrot extends EscapeKernel {
+
+		@Override
+		public int iterate(double zr, double zi, double cr, double ci, int maxIterations, double[] state) {
+			return IterationKernel.triplebrot(zr, zi, cr, ci, maxIterations, state);
+		}
+	}
+
+	static final class BurningShip extends EscapeKernel {
+
+		@Override
+		public int iterate(double zr, double zi, double cr, double ci, int maxIterations, double[] state) {
+			return IterationKernel.burningShip(zr, zi, cr, ci, maxIterations, state);
+		}
+	}
+
+	static final class BirdOfPrey extends EscapeKernel {
+
+		@Override
+		public int iterate(double zr, double zi, double cr, double ci, int maxIterations, double[] state) {
+			return IterationKernel.birdOfPrey(zr, zi, cr, ci, maxIterations, state);
+		}
+	}
+
+	static final class MandelbrotTrap extends TrapKernel {
+
+		MandelbrotTrap(int orbitOption){
+			super(orbitOption);
+		}
+
+		@Override
+		public int iterate(double zr, double zi, double cr, double ci, int maxIterations, double[] state) {
+			return IterationKernel.mandelbrotTrap(orbitOption, zr, zi, cr, ci, maxIterations, state);
+		}
+	}
+
+	static final class TriplebrotTrap extends TrapKernel {
+
+		TriplebrotTrap(int orbitOption){
+			super(orbitOption);
+		}
+
+		@Override
+		public int iterate(double zr, double zi, double cr, double ci, int maxIterations, double[] state) {
+			return IterationKernel.triplebrotTrap(orbitOption, zr, zi, cr, ci, maxIterations, state);
+		}
+	}
+
+	static final class BurningShipTrap extends TrapKernel {
+
+		BurningShipTrap(int orbitOption){
+			super(orbitOption);
+		}
+
+		@Override
+		public int iterate(double zr, double zi, double cr, double ci, int maxIterations, double[] state) {
+			return IterationKernel.burningShipTrap(orbitOption, zr, zi, cr, ci, maxIterations, state);
+		}
+	}
+
+	static final class BirdOfPreyTrap extends TrapKernel {
+
+		BirdOfPreyTrap(int orbitOption){
+			super(orbitOption);
+		}
+
+		@Override
+		public int iterate(double zr, double zi, double cr, double ci, int maxIterations, double[] state) {
+			return IterationKernel.birdOfPreyTrap(orbitOption, zr, zi, cr, ci, maxIterations, state);
+		}
+	}
+
+	/*kernel that stores the result of every Orbit Trap style, so that the style can be changed by coloring the results
+	 * again. Checking ten traps costs far more than the fractal itself so one class covers every fractal type*/
+	static final class AllTraps extends FractalKernel {
+		private final int fractalType;
+
+		AllTraps(int fractalType){
+			this.fractalType = fractalType;
+		}
+
+		@Override
+		public int iterate(double zr, double zi, double cr, double ci, int maxIterations, double[] state) {
+			return IterationKernel.allTraps(fractalType, zr, zi, cr, ci, maxIterations, state);
+		}
+
+		@Override
+		public void store(int iterations, int maxIterations, double[] state, IterationBuffer results, int index) {
+			results.setAllTraps(index, state);
+		}
+	}
+}
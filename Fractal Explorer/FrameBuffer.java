@@ -0,0 +1,123 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*Holds the images a panel renders into. Renders write straight into the int array backing the back image, and the
+ * uncolored result of each pixel into the IterationBuffer that goes with it, and publish both when the whole frame is
+ * finished. Three images are used so that neither side ever has to wait:
+ * the render thread owns the back image, paintComponent owns the front image and the third image holds the
+ * latest finished frame until it is painted. Only one thread may render into a FrameBuffer at a time*/
+public class FrameBuffer {
+	private final int width;
+	private final int height;
+	private final BufferedImage[] images;
+	private final int[][] pixels;
+	private final IterationBuffer[] results;
+
+	//index of the latest finished frame shifted left by one. The lowest bit is set while it has not been painted yet
+	private final AtomicInteger ready;
+
+	//only used by the render thread
+	private int back;
+	private int published;
+	//number of frames published, written by the render thread only
+	private volatile int publishedCount;
+	//only used by the painting thread
+	private int front;
+
+	/*constructor*/
+	public FrameBuffer(int width, int height){
+		this.width = Math.max(width, 1);
+		this.height = Math.max(height, 1);
+		images = new BufferedImage[3];
+		pixels = new int[3][];
+		results = new IterationBuffer[3];
+
+		for(int i = 0; i < images.length; i++){
+			images[i] = new BufferedImage(this.width, this.height, BufferedImage.TYPE_INT_RGB);
+			pixels[i] = ((DataBufferInt) images[i].getRaster().getDataBuffer()).getData();
+			results[i] = new IterationBuffer(this.width * this.height);
+		}
+
+		front = 0;
+		ready = new AtomicInteger(1 << 1);
+		back = 2;
+		published = 1;
+	}
+
+	/*returns the width of each frame*/
+	public int getWidth() {
+		return width;
+	}
+
+	/*returns the height of each frame*/
+	public int getHeight() {
+		return height;
+	}
+
+	/*returns the pixels of the frame being rendered. Pixel (x, y) is stored at y * width + x*/
+	public int[] getBackPixels(){
+		return pixels[back];
+	}
+
+	/*returns the results of the pixels of the frame being rendered*/
+	public IterationBuffer getBackResults(){
+		return results[back];
+	}
+
+	/*copies the frame that was published last, and its results, into the frame being rendered so that a render can
+	 * start from it*/
+	public void copyPublishedToBack(){
+		System.arraycopy(pixels[published], 0, pixels[back], 0, width * height);
+		results[back].copyFrom(results[published]);
+	}
+
+	/*makes the frame that has just been rendered the next one to be painted and swaps in a free image to render into*/
+	public void publish(){
+		published = back;
+		publishedCount++;
+		int previous = ready.getAndSet((back << 1) | 1);
+		back = previous >> 1;
+	}
+
+	/*returns the frame that was published last. Only to be used by the render thread, the image is never written to
+	 * until the render thread publishes another frame*/
+	public BufferedImage getPublishedImage(){
+		return images[published];
+	}
+
+	/*returns the pixels of the frame that was published last. Only to be used by the render thread*/
+	public int[] getPublishedPixels(){
+		return pixels[published];
+	}
+
+	/*returns the number of frames that have been published, so that other threads can tell when there is a new one*/
+	public int getPublishedCount(){
+		return publishedCount;
+	}
+
+	/*returns the results of the frame that was published last. Only to be used by the render thread*/
+	public IterationBuffer getPublishedResults(){
+		return results[published];
+	}
+
+	/*returns the memory in bytes taken up by the results of every Orbit Trap style in the buffers of this frame buffer.
+	 * Only to be used by the render thread*/
+	public long getAllTrapsMemory(){
+		long memory = 0;
+		for(IterationBuffer buffer : results){
+			memory += buffer.getAllTrapsMemory();
+		}
+		return memory;
+	}
+
+	/*returns the latest finished frame. Only to be used by the thread that paints the panel*/
+	public BufferedImage getFrontImage(){
+		//swap in the finished frame if there is one that has not been painted yet
+		if((ready.get() & 1) != 0){
+			int previous = ready.getAndSet(front << 1);
+			front = previous >> 1;
+		}
+		return images[front];
+	}
+}
@@ -0,0 +1,134 @@
+import java.math.BigDecimal;
+
+/*A copy of the results of the last frame that was fully calculated along with the part of the complex plane it shows.
+ * Used to show an instant preview of a new view by resampling the old pixels, and to reuse the pixels that land
+ * exactly on a point that has already been calculated. The results are kept rather than the colors so that pixels can
+ * be reused after the colors have been changed*/
+public class FrameSnapshot {
+	//how close, as a fraction of a pixel, a new pixel has to be to an old one for the old one to be reused
+	private static final double SAMPLE_TOLERANCE = 1e-6;
+
+	private final IterationBuffer results;
+	private final int width;
+	private final int height;
+	private final BigDecimal centerR;
+	private final BigDecimal centerI;
+	private final FloatExp spanR;
+	private final FloatExp spanI;
+	private final String settings;
+
+	/*constructor. Takes a copy of the results so that the frame buffer can reuse its buffers. The frame shows the area of
+	 * the given width (spanR) and height (spanI) around the centre*/
+	public FrameSnapshot(IterationBuffer results, int width, int height, BigDecimal centerR, BigDecimal centerI, FloatExp spanR, FloatExp spanI, String settings){
+		this.results = new IterationBuffer(results);
+		this.width = width;
+		this.height = height;
+		this.centerR = centerR;
+		this.centerI = centerI;
+		this.spanR = spanR;
+		this.spanI = spanI;
+		this.settings = settings;
+	}
+
+	/*fills target with this frame resampled into the given view, using the nearest old pixel for each new pixel, and
+	 * colors it with the given color settings. The results are copied into targetResults. Pixels outside this frame are
+	 * left black. If the frame was calculated with the same settings, every pixel that maps
+	 * exactly onto an old pixel is marked in known so that it does not have to be calculated again*/
+	public void resample(final int[] target, final IterationBuffer targetResults, final Coloring coloring, final int targetWidth, final int targetHeight, BigDecimal targetCenterR, BigDecimal targetCenterI,
+			FloatExp targetSpanR, FloatExp targetSpanI, String targetSettings, final boolean[] known, RenderScheduler.Ticket ticket){
+		final boolean reuse = settings.equals(targetSettings);
+		targetResults.setMode(results);
+
+		/*work in pixels of this frame, relative to its centre, so that the resampling works however deep the zoom is.
+		 * The offset is where the new centre is and the scale is the size of a new pixel*/
+		FloatExp spacingR = spanR.divide(width);
+		FloatExp spacingI = spanI.divide(height);
+		final double offsetR = FloatExp.valueOf(targetCenterR.subtract(centerR)).divide(spacingR).toDouble();
+		final double offsetI = FloatExp.valueOf(targetCenterI.subtract(centerI)).divide(spacingI).toDouble();
+		final double scaleR = targetSpanR.divide(targetWidth).divide(spacingR).toDouble();
+		final double scaleI = targetSpanI.divide(targetHeight).divide(spacingI).toDouble();
+
+		//a view that has only been moved by a whole number of pixels, such as by panning, is made by copying the rows of
+		//this frame across instead of finding where every pixel comes from
+		long moveX = Math.round(offsetR);
+		long moveY = Math.round(offsetI);
+		if(targetWidth == width && targetHeight == height && Math.abs(scaleR - 1) * width < SAMPLE_TOLERANCE
+				&& Math.abs(scaleI - 1) * height < SAMPLE_TOLERANCE && Math.abs(offsetR - moveX) < SAMPLE_TOLERANCE
+				&& Math.abs(offsetI - moveY) < SAMPLE_TOLERANCE && Math.abs(moveX) < width && Math.abs(moveY) < height){
+			shift(target, targetResults, coloring, (int) moveX, (int) moveY, reuse, known, ticket);
+			return;
+		}
+
+		RenderEngine.render(targetWidth, targetHeight, ticket, new RenderEngine.TileRenderer() {
+
+			@Override
+			public void renderTile(int startX, int startY, int endX, int endY) {
+				for(int i = startY; i < endY; i++){
+					//convert the row to the complex plane, then to a row of the old frame
+					double sourceY = (height * 0.5) - offsetI - ((targetHeight * 0.5) - i) * scaleI;
+					long row = Math.round(sourceY);
+					boolean exactRow = Math.abs(sourceY - row) < SAMPLE_TOLERANCE;
+
+					for(int j = startX; j < endX; j++){
+						double sourceX = (width * 0.5) + offsetR + (j - (targetWidth * 0.5)) * scaleR;
+						long column = Math.round(sourceX);
+						int index = i*targetWidth + j;
+
+						if(row < 0 || row >= height || column < 0 || column >= width){
+							target[index] = 0;
+							targetResults.clear(index);
+							known[index] = false;
+							continue;
+						}
+
+						targetResults.copyPixel(index, results, (int) row * width + (int) column);
+						target[index] = targetResults.color(index, coloring);
+						known[index] = reuse && exactRow && Math.abs(sourceX - column) < SAMPLE_TOLERANCE;
+					}
+				}
+			}
+		});
+	}
+
+	/*fills target with this frame moved by a whole number of pixels, so that pixel (x, y) of the target is pixel
+	 * (x + moveX, y - moveY) of this frame. Only the pixels that have been moved in from outside this frame are left
+	 * black and unknown, which are the strips along the edges that have to be calculated*/
+	private void shift(final int[] target, final IterationBuffer targetResults, final Coloring coloring, final int moveX, final int moveY,
+			final boolean reuse, final boolean[] known, RenderScheduler.Ticket ticket){
+		RenderEngine.render(width, height, ticket, new RenderEngine.TileRenderer() {
+
+			@Override
+			public void renderTile(int startX, int startY, int endX, int endY) {
+				//the columns of the tile that are inside this frame
+				int fromX = Math.max(startX, -moveX);
+				int toX = Math.min(endX, width - moveX);
+
+				for(int i = startY; i < endY; i++){
+					int row = i - moveY;
+					if(row < 0 || row >= height || fromX >= toX){
+						clear(i, startX, endX);
+						continue;
+					}
+
+					//the results of the row are copied in one go and then colored
+					targetResults.copyPixels(i*width + fromX, results, row*width + fromX + moveX, toX - fromX);
+					for(int j = fromX; j < toX; j++){
+						target[i*width + j] = targetResults.color(i*width + j, coloring);
+						known[i*width + j] = reuse;
+					}
+					clear(i, startX, fromX);
+					clear(i, toX, endX);
+				}
+			}
+
+			/*leaves the pixels of a row from startX to endX black and unknown*/
+			private void clear(int row, int startX, int endX){
+				for(int j = startX; j < endX; j++){
+					target[row*width + j] = 0;
+					targetResults.clear(row*width + j);
+					known[row*width + j] = false;
+				}
+			}
+		});
+	}
+}
@@ -0,0 +1,98 @@
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+
+/*A color gradient loaded from a text file, used instead of the RGB sliders to color the escape time fractals.
+ * Each line of the file is one color, either as hex (#ff8800) or as red, green and blue from 0 to 255 separated by
+ * spaces (so Fractint .map files can be used). Anything after the color on a line, and lines starting with ; or //,
+ * are ignored. The colors are spread evenly from the inside of the set (first color) to the points that take the most
+ * iterations to escape (last color)*/
+public class Gradient {
+	private final String name;
+	private final int[] colors;
+
+	/*constructor*/
+	private Gradient(String name, int[] colors){
+		this.name = name;
+		this.colors = colors;
+	}
+
+	/*reads a gradient from a file. Throws IOException if the file cannot be read or a line is not a color*/
+	public static Gradient load(File file) throws IOException{
+		ArrayList<Integer> colors = new ArrayList<Integer>();
+
+		try(BufferedReader reader = new BufferedReader(new FileReader(file))){
+			String line;
+			int lineNumber = 0;
+			while((line = reader.readLine()) != null){
+				lineNumber++;
+				line = line.trim();
+				if(line.isEmpty() || line.startsWith(";") || line.startsWith("//")){
+					continue;
+				}
+
+				try{
+					colors.add(parseColor(line.split("\\s+")));
+				}catch(IllegalArgumentException e){
+					throw new IOException("line " + lineNumber + " is not a color");
+				}
+			}
+		}
+
+		if(colors.size() < 2){
+			throw new IOException("a gradient needs at least two colors");
+		}
+		int[] stops = new int[colors.size()];
+		for(int i = 0; i < stops.length; i++){
+			stops[i] = colors.get(i);
+		}
+		return new Gradient(file.getName(), stops);
+	}
+
+	/*returns the RGB value of a color written as hex or as three numbers. Throws IllegalArgumentException if it is neither*/
+	private static int parseColor(String[] parts){
+		String first = parts[0];
+		if(first.startsWith("#")){
+			if(first.length() != 7){
+				throw new IllegalArgumentException();
+			}
+			return Integer.parseInt(first.substring(1), 16);
+		}
+
+		if(parts.length < 3){
+			throw new IllegalArgumentException();
+		}
+		int rgb = 0;
+		for(int i = 0; i < 3; i++){
+			int part = Integer.parseInt(parts[i]);
+			if(part < 0 || part > 255){
+				throw new IllegalArgumentException();
+			}
+			rgb = (rgb << 8) | part;
+		}
+		return rgb;
+	}
+
+	/*returns the name of the file the gradient was loaded from*/
+	public String getName(){
+		return name;
+	}
+
+	/*returns the RGB value of the gradient at the given position from 0 (first color) to 1 (last color), blending
+	 * the two nearest colors*/
+	public int colorAt(double position){
+		double place = Math.max(0, Math.min(position, 1)) * (colors.length - 1);
+		int first = Math.min((int) place, colors.length - 2);
+		double blend = place - first;
+
+		int rgb = 0;
+		for(int shift = 16; shift >= 0; shift -= 8){
+			int from = (colors[first] >> shift) & 0xff;
+			int to = (colors[first + 1] >> shift) & 0xff;
+			rgb |= ((int) Math.round(from + (to - from) * blend)) << shift;
+		}
+		return rgb;
+	}
+}
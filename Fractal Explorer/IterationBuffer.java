@@ -0,0 +1,395 @@
+import java.util.Arrays;
+import java.util.function.IntBinaryOperator;
+
+/*The result of every pixel of a frame before it is colored: the smooth iteration value for the escape time coloring, or
+ * the iterations taken and the distance to the trap for Orbit Traps. Keeping the results means a change of color or
+ * brightness only has to color the buffer again instead of calculating the whole fractal again.
+ * Pixel (x, y) is stored at y * width + x, the same as the pixels of a FrameBuffer*/
+public class IterationBuffer {
+	//most memory the results of every Orbit Trap style may take up in one buffer. A panel keeps up to four buffers,
+	//three for its frames and one for the zoom preview. Larger frames are calculated for the selected style only
+	public static final long ALL_TRAPS_MEMORY_LIMIT = 64L * 1024 * 1024;
+	//steps the distance to the trap is stored in for each trap size when every style is kept, the same steps as the
+	//Orbit Trap palette so that the colors do not change
+	private static final int DISTANCE_STEPS = 4096;
+	//the iterations taken are stored as the remainder of this, which keeps the remainder of 6 used by the Orbit Trap colors
+	//and the place in the loop of a palette cycle
+	private static final int COUNT_WRAP = 65280;
+	//most bins of the histogram for histogram coloring. A frame whose whole smooth values span more than this puts several
+	//whole values in each bin, so the memory the histogram takes up does not grow with the iteration limit
+	private static final int HISTOGRAM_BINS = 65536;
+
+	private final int size;
+	private final float[] values;
+	//only created once the buffer is first used for Orbit Traps
+	private int[] counts;
+	private double[] distances;
+	//only created once the buffer is first used for every Orbit Trap style. Each pixel has one int per style holding
+	//the iterations taken in the upper 16 bits and the distance in DISTANCE_STEPS in the lower 16 bits
+	private int[] styleResults;
+
+	//how the results of the frame are colored
+	private boolean orbitTrap;
+	private boolean allTraps;
+	private int trapStyle;
+	private int maxIterations;
+	private double trapSize;
+	//share of the escaped pixels below each bin of whole smooth values and in it, for histogram coloring. Null until the
+	//histogram of the frame has been built, after which it is kept for every recolor of the frame. Bin 0 holds the
+	//lowest whole value of the escaped pixels and each bin holds histogramStep whole values
+	private float[] histogramStart;
+	private float[] histogramWidth;
+	private int histogramLowest;
+	private int histogramStep;
+
+	/*constructor. The buffer is empty until setMode is called*/
+	public IterationBuffer(int size){
+		this.size = size;
+		values = new float[size];
+	}
+
+	/*constructor. Takes a copy of another buffer*/
+	public IterationBuffer(IterationBuffer source){
+		this(source.size);
+		copyFrom(source);
+	}
+
+	/*sets how the results stored from now on are colored. Must be called before a frame is rendered into the buffer*/
+	public void setMode(boolean orbitTrap, int maxIterations, double trapSize){
+		if(orbitTrap && counts == null){
+			counts = new int[size];
+			distances = new double[size];
+		}
+		this.orbitTrap = orbitTrap;
+		this.maxIterations = maxIterations;
+		this.trapSize = trapSize;
+		allTraps = false;
+		histogramStart = null;
+		histogramWidth = null;
+	}
+
+	/*sets the buffer to keep the result of every Orbit Trap style, colored with the given style. Must be called before a
+	 * frame is rendered into the buffer with the kernel from FractalKernel.createAllTraps*/
+	public void setAllTrapsMode(int maxIterations, int style){
+		if(styleResults == null){
+			styleResults = new int[size * IterationKernel.TRAP_STYLES];
+		}
+		setMode(true, maxIterations, 0);
+		allTraps = true;
+		setTrapStyle(style);
+	}
+
+	/*colors the buffer with another Orbit Trap style. Returns false, leaving the buffer as it is, if the buffer does not
+	 * keep the result of every style*/
+	public boolean setTrapStyle(int style){
+		if(!allTraps){
+			return false;
+		}
+		trapStyle = style;
+		trapSize = IterationKernel.getTrapSize(style);
+		return true;
+	}
+
+	/*returns true if the results of every Orbit Trap style of a frame of the given number of pixels fit in
+	 * ALL_TRAPS_MEMORY_LIMIT*/
+	public static boolean canKeepAllTraps(int size){
+		return getAllTrapsMemory(size) <= ALL_TRAPS_MEMORY_LIMIT;
+	}
+
+	/*returns the memory in bytes the results of every Orbit Trap style take up for the given number of pixels*/
+	public static long getAllTrapsMemory(int size){
+		return (long) size * IterationKernel.TRAP_STYLES * 4;
+	}
+
+	/*returns the memory in bytes taken up by the results of every Orbit Trap style in this buffer, 0 if it has never
+	 * kept them*/
+	public long getAllTrapsMemory(){
+		return styleResults == null ? 0 : (long) styleResults.length * 4;
+	}
+
+	/*colors the results stored from now on the same way as another buffer, including its histogram*/
+	public void setMode(IterationBuffer source){
+		if(source.allTraps){
+			setAllTrapsMode(source.maxIterations, source.trapStyle);
+		}else{
+			setMode(source.orbitTrap, source.maxIterations, source.trapSize);
+		}
+		histogramLowest = source.histogramLowest;
+		histogramStep = source.histogramStep;
+		histogramStart = source.histogramStart;
+		histogramWidth = source.histogramWidth;
+	}
+
+	/*returns true until the buffer has been given a mode, when there is nothing in it to color*/
+	public boolean isEmpty(){
+		return maxIterations == 0;
+	}
+
+	/*stores the smooth iteration value of a pixel colored by escape time*/
+	public void setSmooth(int index, float value){
+		values[index] = value;
+	}
+
+	/*stores the smooth values of a tile of a frame of the given width from tile, which holds them row by row, such as
+	 * the values of a tile found in the TileCache*/
+	public void setSmoothTile(int startX, int startY, int endX, int endY, int width, float[] tile){
+		int tileWidth = endX - startX;
+		for(int i = startY; i < endY; i++){
+			System.arraycopy(tile, (i - startY) * tileWidth, values, i*width + startX, tileWidth);
+		}
+	}
+
+	/*returns a copy of the smooth values of a tile of a frame of the given width, row by row*/
+	public float[] getSmoothTile(int startX, int startY, int endX, int endY, int width){
+		int tileWidth = endX - startX;
+		float[] tile = new float[tileWidth * (endY - startY)];
+		for(int i = startY; i < endY; i++){
+			System.arraycopy(values, i*width + startX, tile, (i - startY) * tileWidth, tileWidth);
+		}
+		return tile;
+	}
+
+	/*stores the iterations taken and distance to the trap of a pixel colored by Orbit Traps*/
+	public void setTrap(int index, int count, double distance){
+		counts[index] = count;
+		distances[index] = distance;
+	}
+
+	/*stores the result of every Orbit Trap style of a pixel from the state left by IterationKernel.allTraps*/
+	public void setAllTraps(int index, double[] state){
+		for(int style = 0; style < IterationKernel.TRAP_STYLES; style++){
+			int count = (int) state[IterationKernel.TRAP_COUNT + style] % COUNT_WRAP;
+			double steps = state[IterationKernel.TRAP_DIST + style] / IterationKernel.getTrapSize(style) * DISTANCE_STEPS;
+			int distance = (int) Math.max(0, Math.min(steps, 0xffff));
+			styleResults[index * IterationKernel.TRAP_STYLES + style] = (count << 16) | distance;
+		}
+	}
+
+	/*stores the result of a pixel that is not known yet, which is colored black*/
+	public void clear(int index){
+		values[index] = 0;
+		if(counts != null){
+			counts[index] = 0;
+			distances[index] = 0;
+		}
+		if(allTraps){
+			Arrays.fill(styleResults, index * IterationKernel.TRAP_STYLES, (index + 1) * IterationKernel.TRAP_STYLES, 0);
+		}
+	}
+
+	/*copies the result of a pixel from another buffer with the same mode*/
+	public void copyPixel(int index, IterationBuffer source, int sourceIndex){
+		if(allTraps){
+			System.arraycopy(source.styleResults, sourceIndex * IterationKernel.TRAP_STYLES, styleResults,
+					index * IterationKernel.TRAP_STYLES, IterationKernel.TRAP_STYLES);
+		}else if(orbitTrap){
+			counts[index] = source.counts[sourceIndex];
+			distances[index] = source.distances[sourceIndex];
+		}else{
+			values[index] = source.values[sourceIndex];
+		}
+	}
+
+	/*copies the results of a run of neighbouring pixels from another buffer with the same mode, such as part of a row of
+	 * a frame that has been moved by a whole number of pixels*/
+	public void copyPixels(int index, IterationBuffer source, int sourceIndex, int length){
+		if(allTraps){
+			System.arraycopy(source.styleResults, sourceIndex * IterationKernel.TRAP_STYLES, styleResults,
+					index * IterationKernel.TRAP_STYLES, length * IterationKernel.TRAP_STYLES);
+		}else if(orbitTrap){
+			System.arraycopy(source.counts, sourceIndex, counts, index, length);
+			System.arraycopy(source.distances, sourceIndex, distances, index, length);
+		}else{
+			System.arraycopy(source.values, sourceIndex, values, index, length);
+		}
+	}
+
+	/*copies the mode and every result of another buffer of the same size*/
+	public void copyFrom(IterationBuffer source){
+		setMode(source);
+		if(allTraps){
+			System.arraycopy(source.styleResults, 0, styleResults, 0, styleResults.length);
+		}else if(orbitTrap){
+			System.arraycopy(source.counts, 0, counts, 0, size);
+			System.arraycopy(source.distances, 0, distances, 0, size);
+		}else{
+			System.arraycopy(source.values, 0, values, 0, size);
+		}
+	}
+
+	/*returns the color of a pixel with the given color settings*/
+	public int color(int index, Coloring coloring){
+		if(allTraps){
+			int result = styleResults[index * IterationKernel.TRAP_STYLES + trapStyle];
+			return coloring.colorOrbitTrap(result >>> 16, result & 0xffff, DISTANCE_STEPS);
+		}
+		if(orbitTrap){
+			return coloring.colorOrbitTrap(counts[index], distances[index], trapSize);
+		}
+		if(coloring.isHistogram() && histogramStart != null){
+			return coloring.colorHistogram((values[index] - histogramLowest) / histogramStep, histogramStart, histogramWidth);
+		}
+		return coloring.colorFractal(values[index], maxIterations);
+	}
+
+	/*returns where a pixel is in the loop of colors of a palette cycle, in iterations: the smooth value, or the
+	 * iterations taken plus the distance to the trap for Orbit Traps. 0 is the inside of the set*/
+	public float getCyclePosition(int index){
+		if(allTraps){
+			int result = styleResults[index * IterationKernel.TRAP_STYLES + trapStyle];
+			return (result >>> 16) + (float) (result & 0xffff) / DISTANCE_STEPS;
+		}
+		if(orbitTrap){
+			return (float) (counts[index] + distances[index] / trapSize);
+		}
+		return values[index];
+	}
+
+	/*colors every pixel of the buffer into pixels with the given color settings. The frame is split into tiles which are
+	 * colored in parallel, so a frame is colored again in a few milliseconds. Returns once every tile has been colored or
+	 * the ticket has been cancelled*/
+	public void recolor(final int[] pixels, final int width, int height, final Coloring coloring, RenderScheduler.Ticket ticket){
+		if(!orbitTrap && coloring.isHistogram() && histogramStart == null){
+			buildHistogram(ticket);
+			if(ticket.isCancelled()){
+				return;
+			}
+		}
+
+		RenderEngine.render(width, height, ticket, new RenderEngine.TileRenderer() {
+
+			@Override
+			public void renderTile(int startX, int startY, int endX, int endY) {
+				for(int i = startY; i < endY; i++){
+					for(int j = startX; j < endX; j++){
+						pixels[i*width + j] = color(i*width + j, coloring);
+					}
+				}
+			}
+		});
+	}
+
+	/*colors the frame again with histogram coloring once every pixel has been calculated, as the colors depend on the
+	 * results of the whole frame. Other colorings color each pixel as it is calculated so there is nothing to do*/
+	public void finish(int[] pixels, int width, int height, Coloring coloring, RenderScheduler.Ticket ticket){
+		if(!orbitTrap && coloring.isHistogram() && !ticket.isCancelled()){
+			recolor(pixels, width, height, coloring, ticket);
+		}
+	}
+
+	/*counts how many escaped pixels have each whole smooth value and works out the share of the pixels below each value.
+	 * The histogram only covers the whole values the escaped pixels of the frame have, in at most HISTOGRAM_BINS bins.
+	 * The buffer is split into one part per thread and each part counts into its own histogram, so no counts are shared
+	 * between threads. The histograms are then merged in parallel with each thread adding up a range of values, and the
+	 * cumulative counts are found with a parallel prefix sum*/
+	private void buildHistogram(RenderScheduler.Ticket ticket){
+		final int parts = RenderEngine.getParallelism();
+		final int[] lowest = new int[parts];
+		final int[] highest = new int[parts];
+
+		RenderEngine.renderParts(parts, ticket, new RenderEngine.PartRenderer() {
+
+			@Override
+			public void renderPart(int part) {
+				int low = Integer.MAX_VALUE;
+				int high = -1;
+				int end = (int) ((long) size * (part + 1) / parts);
+				for(int i = (int) ((long) size * part / parts); i < end; i++){
+					float value = values[i];
+					if(value > 0){
+						low = Math.min(low, (int) value);
+						high = Math.max(high, (int) value);
+					}
+				}
+				lowest[part] = low;
+				highest[part] = high;
+			}
+		});
+		if(ticket.isCancelled()){
+			return;
+		}
+
+		int low = Integer.MAX_VALUE;
+		int high = -1;
+		for(int part = 0; part < parts; part++){
+			low = Math.min(low, lowest[part]);
+			high = Math.max(high, highest[part]);
+		}
+		//nothing escaped, so the frame is colored the normal way
+		if(high < 0){
+			return;
+		}
+		final int first = low;
+		final int step = (high - low) / HISTOGRAM_BINS + 1;
+		final int bins = (high - low) / step + 1;
+		final int[][] histograms = new int[parts][bins];
+
+		RenderEngine.renderParts(parts, ticket, new RenderEngine.PartRenderer() {
+
+			@Override
+			public void renderPart(int part) {
+				int[] histogram = histograms[part];
+				int end = (int) ((long) size * (part + 1) / parts);
+				//neighbouring pixels mostly have the same whole value, so runs of the same value are counted before they are
+				//added to the histogram instead of adding to the same count for every pixel
+				int runBin = 0;
+				int runLength = 0;
+				for(int i = (int) ((long) size * part / parts); i < end; i++){
+					float value = values[i];
+					//the inside of the set is left out so it does not take up any of the colors
+					if(value > 0){
+						int bin = ((int) value - first) / step;
+						if(bin != runBin){
+							histogram[runBin] += runLength;
+							runBin = bin;
+							runLength = 0;
+						}
+						runLength++;
+					}
+				}
+				histogram[runBin] += runLength;
+			}
+		});
+
+		final int[] counts = new int[bins];
+		RenderEngine.renderParts(parts, ticket, new RenderEngine.PartRenderer() {
+
+			@Override
+			public void renderPart(int part) {
+				int end = (int) ((long) bins * (part + 1) / parts);
+				for(int bin = (int) ((long) bins * part / parts); bin < end; bin++){
+					int count = 0;
+					for(int[] histogram : histograms){
+						count += histogram[bin];
+					}
+					counts[bin] = count;
+				}
+			}
+		});
+		if(ticket.isCancelled()){
+			return;
+		}
+
+		Arrays.parallelPrefix(counts, new IntBinaryOperator() {
+
+			@Override
+			public int applyAsInt(int left, int right) {
+				return left + right;
+			}
+		});
+
+		int total = counts[bins - 1];
+
+		//the counts are now the number of pixels up to and including each value
+		float[] start = new float[bins];
+		float[] width = new float[bins];
+		for(int bin = 0; bin < bins; bin++){
+			start[bin] = bin == 0 ? 0 : (float) counts[bin - 1] / total;
+			width[bin] = (float) counts[bin] / total - start[bin];
+		}
+		histogramLowest = first;
+		histogramStep = step;
+		histogramWidth = width;
+		histogramStart = start;
+	}
+}
@@ -0,0 +1,735 @@
+/*Iteration kernels shared by the main fractal and the Julia panel. Every kernel works on plain double
+ * local variables so no objects are created per pixel or per iteration. The arithmetic is done in exactly the same
+ * order as the Complex class so that the escape counts are identical to the Complex based calculations.
+ * The main fractal starts each pixel at z = 0 with c set to the pixel, the Julia panel starts at z = pixel with a fixed c*/
+public class IterationKernel {
+	//positions of the results in the state array passed to each kernel
+	public static final int REAL = 0;
+	public static final int IMAG = 1;
+	public static final int DIST = 2;
+	public static final int SKIPPED = 3;
+
+	//size of the state array that has to be passed to each kernel
+	public static final int STATE_SIZE = 4;
+
+	//number of Orbit Trap styles, numbered from 0 in the order of the style list
+	public static final int TRAP_STYLES = 10;
+	//positions of the iterations taken and the distance for each style in the state array passed to allTraps
+	public static final int TRAP_COUNT = STATE_SIZE;
+	public static final int TRAP_DIST = TRAP_COUNT + TRAP_STYLES;
+	//size of the state array that has to be passed to allTraps
+	public static final int ALL_TRAPS_STATE_SIZE = TRAP_DIST + TRAP_STYLES;
+
+	/*orbits are checked for cycles by comparing each point with a saved point that is moved along the orbit at
+	 * iterations which are powers of two (Brent's method). A point within this squared distance of the saved point is
+	 * treated as part of a cycle, so the point is inside the set and the remaining iterations are skipped*/
+	static final double PERIOD_TOLERANCE = 1e-24;
+	static final int PERIOD_CHECK_START = 8;
+
+	//most quickSin can be away from the exact sine, with room for rounding
+	private static final double QUICK_SIN_ERROR = 2e-4;
+
+	/*iterates the selected fractal type from z until the point escapes or maxIterations is reached.
+	 * The last point of the orbit is stored in state so that the smooth coloring can be calculated. Returns the number
+	 * of iterations taken*/
+	public static int escape(int fractalType, double zr, double zi, double cr, double ci, int maxIterations, double[] state){
+		//the fractal type is checked once per pixel rather than once per iteration
+		switch (fractalType) {
+		case 1:  return triplebrot(zr, zi, cr, ci, maxIterations, state);
+
+		case 2:  return burningShip(zr, zi, cr, ci, maxIterations, state);
+
+		case 3:  return birdOfPrey(zr, zi, cr, ci, maxIterations, state);
+
+		default: return mandelbrot(zr, zi, cr, ci, maxIterations, state);
+		}
+	}
+
+	/*iterates the selected fractal type from z until the point escapes, maxIterations is reached or the point is
+	 * trapped by the selected Orbit Trap. The distance returned by the Orbit Trap is stored in state. Returns the number
+	 * of iterations taken*/
+	public static int trap(int fractalType, int orbitOption, double zr, double zi, double cr, double ci, int maxIterations, double[] state){
+		//the fractal type is checked once per pixel rather than once per iteration
+		switch (fractalType) {
+		case 1:  return triplebrotTrap(orbitOption, zr, zi, cr, ci, maxIterations, state);
+
+		case 2:  return burningShipTrap(orbitOption, zr, zi, cr, ci, maxIterations, state);
+
+		case 3:  return birdOfPreyTrap(orbitOption, zr, zi, cr, ci, maxIterations, state);
+
+		default: return mandelbrotTrap(orbitOption, zr, zi, cr, ci, maxIterations, state);
+		}
+	}
+
+	/*calculates Mandelbrot fractal, z = z^2 + c*/
+	public static int mandelbrot(double zr, double zi, double cr, double ci, int maxIterations, double[] state){
+		double zr2 = zr * zr;
+		double zi2 = zi * zi;
+		double savedR = zr;
+		double savedI = zi;
+		double dr;
+		double di;
+		int saveAt = PERIOD_CHECK_START;
+		int iterations = 0;
+
+		while(zr2 + zi2 < 4 && iterations < maxIterations){
+			zi = 2 * (zr * zi) + ci;
+			zr = zr2 - zi2 + cr;
+			zr2 = zr * zr;
+			zi2 = zi * zi;
+			iterations++;
+
+			//stop once the orbit has come back to the saved point
+			dr = zr - savedR;
+			di = zi - savedI;
+			if((dr * dr) + (di * di) < PERIOD_TOLERANCE){
+				return interior(zr, zi, iterations, maxIterations, state);
+			}
+			if(iterations == saveAt){
+				savedR = zr;
+				savedI = zi;
+				saveAt <<= 1;
+			}
+		}
+
+		state[REAL] = zr;
+		state[IMAG] = zi;
+		state[SKIPPED] = 0;
+		return iterations;
+	}
+
+	/*calculates Triplebrot fractal, z = (z^2)^2 + c*/
+	public static int triplebrot(double zr, double zi, double cr, double ci, int maxIterations, double[] state){
+		double zr2 = zr * zr;
+		double zi2 = zi * zi;
+		double sr;
+		double si;
+		double savedR = zr;
+		double savedI = zi;
+		double dr;
+		double di;
+		int saveAt = PERIOD_CHECK_START;
+		int iterations = 0;
+
+		while(zr2 + zi2 < 4 && iterations < maxIterations){
+			sr = zr2 - zi2;
+			si = 2 * (zr * zi);
+			zr = (sr * sr) - (si * si) + cr;
+			zi = 2 * (sr * si) + ci;
+			zr2 = zr * zr;
+			zi2 = zi * zi;
+			iterations++;
+
+			//stop once the orbit has come back to the saved point
+			dr = zr - savedR;
+			di = zi - savedI;
+			if((dr * dr) + (di * di) < PERIOD_TOLERANCE){
+				return interior(zr, zi, iterations, maxIterations, state);
+			}
+			if(iterations == saveAt){
+				savedR = zr;
+				savedI = zi;
+				saveAt <<= 1;
+			}
+		}
+
+		state[REAL] = zr;
+		state[IMAG] = zi;
+		state[SKIPPED] = 0;
+		return iterations;
+	}
+
+	/*calculates Burning Ship fractal. The imaginary part of c is subtracted so that the burning ship is "upright"*/
+	public static int burningShip(double zr, double zi, double cr, double ci, int maxIterations, double[] state){
+		double zr2 = zr * zr;
+		double zi2 = zi * zi;
+		double savedR = zr;
+		double savedI = zi;
+		double dr;
+		double di;
+		int saveAt = PERIOD_CHECK_START;
+		int iterations = 0;
+
+		while(zr2 + zi2 < 4 && iterations < maxIterations){
+			zi = 2 * Math.abs(zr * zi) - ci;
+			zr = zr2 - zi2 + cr;
+			zr2 = zr * zr;
+			zi2 = zi * zi;
+			iterations++;
+
+			//stop once the orbit has come back to the saved point
+			dr = zr - savedR;
+			di = zi - savedI;
+			if((dr * dr) + (di * di) < PERIOD_TOLERANCE){
+				return interior(zr, zi, iterations, maxIterations, state);
+			}
+			if(iterations == saveAt){
+				savedR = zr;
+				savedI = zi;
+				saveAt <<= 1;
+			}
+		}
+
+		state[REAL] = zr;
+		state[IMAG] = zi;
+		state[SKIPPED] = 0;
+		return iterations;
+	}
+
+	/*calculates Bird Of Prey fractal*/
+	public static int birdOfPrey(double zr, double zi, double cr, double ci, int maxIterations, double[] state){
+		double zr2 = zr * zr;
+		double zi2 = zi * zi;
+		double next;
+		double savedR = zr;
+		double savedI = zi;
+		double dr;
+		double di;
+		int saveAt = PERIOD_CHECK_START;
+		int iterations = 0;
+
+		while(zr2 + zi2 < 4 && iterations < maxIterations){
+			next = (zr2 - (zi2 * 3)) * Math.abs(zr) + cr;
+			zi = ((zr2 * 3) - zi2) * Math.abs(zi) + ci;
+			zr = next;
+			zr2 = zr * zr;
+			zi2 = zi * zi;
+			iterations++;
+
+			//stop once the orbit has come back to the saved point
+			dr = zr - savedR;
+			di = zi - savedI;
+			if((dr * dr) + (di * di) < PERIOD_TOLERANCE){
+				return interior(zr, zi, iterations, maxIterations, state);
+			}
+			if(iterations == saveAt){
+				savedR = zr;
+				savedI = zi;
+				saveAt <<= 1;
+			}
+		}
+
+		state[REAL] = zr;
+		state[IMAG] = zi;
+		state[SKIPPED] = 0;
+		return iterations;
+	}
+
+	/*calculates Mandelbrot fractal, z = z^2 + c, until the point escapes, maxIterations is reached or the point is trapped by the selected Orbit Trap*/
+	public static int mandelbrotTrap(int orbitOption, double zr, double zi, double cr, double ci, int maxIterations, double[] state){
+		double zr2 = zr * zr;
+		double zi2 = zi * zi;
+		double dist = 0;
+		double savedR = zr;
+		double savedI = zi;
+		double dr;
+		double di;
+		int saveAt = PERIOD_CHECK_START;
+		int iterations = 0;
+
+		while(zr2 + zi2 < 4 && iterations < maxIterations && dist == 0){
+			zi = 2 * (zr * zi) + ci;
+			zr = zr2 - zi2 + cr;
+			zr2 = zr * zr;
+			zi2 = zi * zi;
+
+			//Check if complex point is trapped by the Orbit Trap
+			dist = orbitTrap(orbitOption, zr, zi, dist);
+			iterations++;
+
+			//an untrapped orbit that has come back to the saved point will never be trapped or escape
+			dr = zr - savedR;
+			di = zi - savedI;
+			if(dist == 0 && (dr * dr) + (di * di) < PERIOD_TOLERANCE){
+				state[DIST] = 0;
+				return interior(zr, zi, iterations, maxIterations, state);
+			}
+			if(iterations == saveAt){
+				savedR = zr;
+				savedI = zi;
+				saveAt <<= 1;
+			}
+		}
+
+		state[REAL] = zr;
+		state[IMAG] = zi;
+		state[DIST] = dist;
+		state[SKIPPED] = 0;
+		return iterations;
+	}
+
+	/*calculates Triplebrot fractal, z = (z^2)^2 + c, until the point escapes, maxIterations is reached or the point is trapped by the selected Orbit Trap*/
+	public static int triplebrotTrap(int orbitOption, double zr, double zi, double cr, double ci, int maxIterations, double[] state){
+		double zr2 = zr * zr;
+		double zi2 = zi * zi;
+		double sr;
+		double si;
+		double dist = 0;
+		double savedR = zr;
+		double savedI = zi;
+		double dr;
+		double di;
+		int saveAt = PERIOD_CHECK_START;
+		int iterations = 0;
+
+		while(zr2 + zi2 < 4 && iterations < maxIterations && dist == 0){
+			sr = zr2 - zi2;
+			si = 2 * (zr * zi);
+			zr = (sr * sr) - (si * si) + cr;
+			zi = 2 * (sr * si) + ci;
+			zr2 = zr * zr;
+			zi2 = zi * zi;
+
+			//Check if complex point is trapped by the Orbit Trap
+			dist = orbitTrap(orbitOption, zr, zi, dist);
+			iterations++;
+
+			//an untrapped orbit that has come back to the saved point will never be trapped or escape
+			dr = zr - savedR;
+			di = zi - savedI;
+			if(dist == 0 && (dr * dr) + (di * di) < PERIOD_TOLERANCE){
+				state[DIST] = 0;
+				return interior(zr, zi, iterations, maxIterations, state);
+			}
+			if(iterations == saveAt){
+				savedR = zr;
+				savedI = zi;
+				saveAt <<= 1;
+			}
+		}
+
+		state[REAL] = zr;
+		state[IMAG] = zi;
+		state[DIST] = dist;
+		state[SKIPPED] = 0;
+		return iterations;
+	}
+
+	/*calculates Burning Ship fractal until the point escapes, maxIterations is reached or the point is trapped by the selected Orbit Trap*/
+	public static int burningShipTrap(int orbitOption, double zr, double zi, double cr, double ci, int maxIterations, double[] state){
+		double zr2 = zr * zr;
+		double zi2 = zi * zi;
+		double dist = 0;
+		double savedR = zr;
+		double savedI = zi;
+		double dr;
+		double di;
+		int saveAt = PERIOD_CHECK_START;
+		int iterations = 0;
+
+		while(zr2 + zi2 < 4 && iterations < maxIterations && dist == 0){
+			zi = 2 * Math.abs(zr * zi) - ci;
+			zr = zr2 - zi2 + cr;
+			zr2 = zr * zr;
+			zi2 = zi * zi;
+
+			//Check if complex point is trapped by the Orbit Trap
+			dist = orbitTrap(orbitOption, zr, zi, dist);
+			iterations++;
+
+			//an untrapped orbit that has come back to the saved point will never be trapped or escape
+			dr = zr - savedR;
+			di = zi - savedI;
+			if(dist == 0 && (dr * dr) + (di * di) < PERIOD_TOLERANCE){
+				state[DIST] = 0;
+				return interior(zr, zi, iterations, maxIterations, state);
+			}
+			if(iterations == saveAt){
+				savedR = zr;
+				savedI = zi;
+				saveAt <<= 1;
+			}
+		}
+
+		state[REAL] = zr;
+		state[IMAG] = zi;
+		state[DIST] = dist;
+		state[SKIPPED] = 0;
+		return iterations;
+	}
+
+	/*calculates Bird Of Prey fractal until the point escapes, maxIterations is reached or the point is trapped by the selected Orbit Trap*/
+	public static int birdOfPreyTrap(int orbitOption, double zr, double zi, double cr, double ci, int maxIterations, double[] state){
+		double zr2 = zr * zr;
+		double zi2 = zi * zi;
+		double next;
+		double dist = 0;
+		double savedR = zr;
+		double savedI = zi;
+		double dr;
+		double di;
+		int saveAt = PERIOD_CHECK_START;
+		int iterations = 0;
+
+		while(zr2 + zi2 < 4 && iterations < maxIterations && dist == 0){
+			next = (zr2 - (zi2 * 3)) * Math.abs(zr) + cr;
+			zi = ((zr2 * 3) - zi2) * Math.abs(zi) + ci;
+			zr = next;
+			zr2 = zr * zr;
+			zi2 = zi * zi;
+
+			//Check if complex point is trapped by the Orbit Trap
+			dist = orbitTrap(orbitOption, zr, zi, dist);
+			iterations++;
+
+			//an untrapped orbit that has come back to the saved point will never be trapped or escape
+			dr = zr - savedR;
+			di = zi - savedI;
+			if(dist == 0 && (dr * dr) + (di * di) < PERIOD_TOLERANCE){
+				state[DIST] = 0;
+				return interior(zr, zi, iterations, maxIterations, state);
+			}
+			if(iterations == saveAt){
+				savedR = zr;
+				savedI = zi;
+				saveAt <<= 1;
+			}
+		}
+
+		state[REAL] = zr;
+		state[IMAG] = zi;
+		state[DIST] = dist;
+		state[SKIPPED] = 0;
+		return iterations;
+	}
+
+	/*iterates the selected fractal type from z and checks every Orbit Trap style at each point of the orbit, until the
+	 * point escapes, maxIterations is reached or every style has trapped the point. For each style the iterations taken
+	 * and the distance are stored in state at TRAP_COUNT + style and TRAP_DIST + style, the same as the Orbit Trap
+	 * kernel of that style would have returned. Returns the number of iterations taken*/
+	public static int allTraps(int fractalType, double zr, double zi, double cr, double ci, int maxIterations, double[] state){
+		double zr2 = zr * zr;
+		double zi2 = zi * zi;
+		double sr;
+		double si;
+		double dist;
+		double savedR = zr;
+		double savedI = zi;
+		double dr;
+		double di;
+		int saveAt = PERIOD_CHECK_START;
+		int iterations = 0;
+		int untrapped = TRAP_STYLES;
+
+		//a count below 0 marks a style that has not trapped the point yet
+		for(int style = 0; style < TRAP_STYLES; style++){
+			state[TRAP_COUNT + style] = -1;
+			state[TRAP_DIST + style] = 0;
+		}
+
+		while(zr2 + zi2 < 4 && iterations < maxIterations && untrapped > 0){
+			//the fractal type is checked on every iteration here as it costs little next to checking ten Orbit Traps
+			switch (fractalType) {
+			case 1:
+				sr = zr2 - zi2;
+				si = 2 * (zr * zi);
+				zr = (sr * sr) - (si * si) + cr;
+				zi = 2 * (sr * si) + ci;
+				break;
+
+			case 2:
+				zi = 2 * Math.abs(zr * zi) - ci;
+				zr = zr2 - zi2 + cr;
+				break;
+
+			case 3:
+				sr = (zr2 - (zi2 * 3)) * Math.abs(zr) + cr;
+				zi = ((zr2 * 3) - zi2) * Math.abs(zi) + ci;
+				zr = sr;
+				break;
+
+			default:
+				zi = 2 * (zr * zi) + ci;
+				zr = zr2 - zi2 + cr;
+				break;
+			}
+			zr2 = zr * zr;
+			zi2 = zi * zi;
+			iterations++;
+
+			//Check if complex point is trapped by each Orbit Trap that has not trapped it yet
+			for(int style = 0; style < TRAP_STYLES; style++){
+				if(state[TRAP_COUNT + style] < 0){
+					dist = orbitTrap(style, zr, zi, 0);
+					if(dist != 0){
+						state[TRAP_COUNT + style] = iterations;
+						state[TRAP_DIST + style] = dist;
+						untrapped--;
+					}
+				}
+			}
+
+			//an orbit that has come back to the saved point will never be trapped by the remaining styles or escape
+			dr = zr - savedR;
+			di = zi - savedI;
+			if(untrapped > 0 && (dr * dr) + (di * di) < PERIOD_TOLERANCE){
+				untrapped(maxIterations, state);
+				return interior(zr, zi, iterations, maxIterations, state);
+			}
+			if(iterations == saveAt){
+				savedR = zr;
+				savedI = zi;
+				saveAt <<= 1;
+			}
+		}
+
+		untrapped(iterations, state);
+		state[REAL] = zr;
+		state[IMAG] = zi;
+		state[SKIPPED] = 0;
+		return iterations;
+	}
+
+	/*stores the result of every style that did not trap the point, which is the iterations taken with no distance*/
+	private static void untrapped(int iterations, double[] state){
+		for(int style = 0; style < TRAP_STYLES; style++){
+			if(state[TRAP_COUNT + style] < 0){
+				state[TRAP_COUNT + style] = iterations;
+			}
+		}
+	}
+
+	/*records a point found to be inside the set after the given number of iterations. Returns maxIterations as the point
+	 * would never have escaped*/
+	private static int interior(double zr, double zi, int iterations, int maxIterations, double[] state){
+		state[REAL] = zr;
+		state[IMAG] = zi;
+		state[SKIPPED] = maxIterations - iterations;
+		return maxIterations;
+	}
+
+	/*returns true if c is inside the main cardioid or the period 2 bulb of the Mandelbrot set. Every point in these
+	 * never escapes so they can be skipped without iterating. Only valid for the Mandelbrot fractal starting at z = 0*/
+	public static boolean inCardioidOrBulb(double cr, double ci){
+		double shifted = cr - 0.25;
+		double ci2 = ci * ci;
+		double q = (shifted * shifted) + ci2;
+		if(q * (q + shifted) <= 0.25 * ci2){
+			return true;
+		}
+		return ((cr + 1) * (cr + 1)) + ci2 <= 0.0625;
+	}
+
+	/*returns the smooth iteration value used for coloring, or 0 for points that did not escape*/
+	public static float smoothValue(int iterations, int maxIterations, double[] state){
+		if(iterations < maxIterations){
+			double modulusSquared = (state[REAL] * state[REAL]) + (state[IMAG] * state[IMAG]);
+			return (float) (iterations + 1 - Math.log(Math.log(Math.sqrt(modulusSquared)))/Math.log(2));
+		}
+		return 0;
+	}
+
+	/*returns the size of the given Orbit Trap style. Used to scale the distance when coloring trapped points*/
+	public static double getTrapSize(int option){
+		switch (option) {
+		case 0:  return 0.64;
+		case 1:  return 0.25;
+		case 2:  return 0.05;
+		case 3:  return 0.195;
+		case 4:  return 0.01;
+		case 5:  return 0.01;
+		case 6:  return 1.9;
+		case 7:  return 2.1;
+		case 8:  return 1.0;
+		case 9:  return 5.5;
+		default: return 0;
+		}
+	}
+
+	/*Checks whether the complex point is trapped within the orbit trap method that is being used and returns
+	 * the distance of the point from the origin. The distance from the origin is calculated so that a color gradient
+	 *  can be created. Returns dist unchanged if the point is not trapped.
+	 * Each style has its own check, chosen by a single switch. The checks rule most points out with cheap tests on the
+	 * squared modulus or the bounds of the trap before working out a square root or a sine, and then use the exact
+	 * tests of the style so that the points trapped are the same
+	 */
+	public static double orbitTrap(int option, double zr, double zi, double dist){
+		switch (option) {
+		case 0:  return ellipseTrap(zr, zi, dist);
+
+		case 1:  return circleTrap(zr, zi, dist);
+
+		case 2:  return dotsTrap(zr, zi, dist);
+
+		case 3:  return ringsTrap(zr, zi, dist);
+
+		case 4:  return linesTrap(zr, zi, dist);
+
+		case 5:  return gaussianIntegerTrap(zr, zi, dist);
+
+		case 6:  return sineTrap(zr, zi, dist);
+
+		case 7:  return cosineTrap(zr, zi, dist);
+
+		case 8:  return flowerTrap(zr, zi, dist);
+
+		case 9:  return petalTrap(zr, zi, dist);
+
+		default: return dist;
+		}
+	}
+
+	//elipse Orbit Trap. Creates large ring in the Complex Plane which is centered on origin
+	private static double ellipseTrap(double zr, double zi, double dist){
+		//the ring lies between squared moduli of 0.3844 and 0.4225
+		double modulusSquared = (zr * zr) + (zi * zi);
+		if(modulusSquared > 0.38 && modulusSquared < 0.43){
+			double modulus = Math.sqrt(modulusSquared);
+			if(modulus < 0.65 && modulus > 0.62){
+				return Math.abs(0.64 - modulus + 0.4);
+			}
+		}
+		return dist;
+	}
+
+	//circle Orbit Trap. Creates large circle in the Complex Plane which is centered on origin
+	private static double circleTrap(double zr, double zi, double dist){
+		double modulusSquared = (zr * zr) + (zi * zi);
+		if(modulusSquared < 0.0626){
+			double modulus = Math.sqrt(modulusSquared);
+			if(modulus < 0.25){
+				return 0.25 - modulus;
+			}
+		}
+		return dist;
+	}
+
+	//dots Orbit Trap. Creates small circle in the Complex Plane which is centered on the origin
+	private static double dotsTrap(double zr, double zi, double dist){
+		double modulusSquared = (zr * zr) + (zi * zi);
+		if(modulusSquared < 0.00251){
+			double modulus = Math.sqrt(modulusSquared);
+			if(modulus < 0.05){
+				return 0.05 - modulus;
+			}
+		}
+		return dist;
+	}
+
+	//rings Orbit Trap. creates a small ring in the Complex Plane which is cenetered on the origin
+	private static double ringsTrap(double zr, double zi, double dist){
+		//the ring lies between squared moduli of 0.0361 and 0.04
+		double modulusSquared = (zr * zr) + (zi * zi);
+		if(modulusSquared > 0.036 && modulusSquared < 0.0401){
+			double modulus = Math.sqrt(modulusSquared);
+			if(modulus < 0.20 && modulus > 0.19){
+				return Math.abs(0.195 - modulus + 0.2);
+			}
+		}
+		return dist;
+	}
+
+	//lines Orbit Trap. Creates a vertical and horizontal line of the Complex Plane, through the origin
+	private static double linesTrap(double zr, double zi, double dist){
+		if(Math.abs(zr) < 0.01){
+			return 0.01 - Math.abs(zr);
+		}
+		if(Math.abs(zi) < 0.01){
+			return 0.01 - Math.abs(zi);
+		}
+		return dist;
+	}
+
+	/*Gaussian Integer algorithim. Calculates the distance of the Complex point from the nearest Guassian Integer and uses
+	 * this value to color the point.
+	 */
+	private static double gaussianIntegerTrap(double zr, double zi, double dist){
+		//a squared distance below 0.01 needs both parts within 0.1 of a whole number
+		if(Math.abs(zr - Math.rint(zr)) >= 0.1 || Math.abs(zi - Math.rint(zi)) >= 0.1){
+			return dist;
+		}
+
+		double lowR = zr - Math.floor(zr);
+		double lowI = zi - Math.floor(zi);
+		double highR = Math.abs(zr - Math.ceil(zr));
+		double highI = Math.abs(zi - Math.ceil(zi));
+
+		double nearestDistance = Math.min((lowR * lowR) + (lowI * lowI), (highR * highR) + (highI * highI));
+
+		if(nearestDistance < 0.01 && nearestDistance > 0.0025){
+			return Math.abs(0.01 - nearestDistance);
+		}
+		return dist;
+	}
+
+	//sine wave Orbit Trap. Creates a sine wave on the Complex Plane. Transformed to be half as wide.
+	private static double sineTrap(double zr, double zi, double dist){
+		//limit domain between -1.8 and 1.8, then rule out points away from the wave with the quick sine
+		if(zr < 1.8 && zr > -1.8 && nearWave(zi, quickSin(zr*2))){
+			double wave = Math.sin(zr*2);
+			if(zi < wave && zi > wave - 0.015){
+				return Math.abs(1.9 - Math.sqrt((zr * zr) + (zi * zi)));
+			}
+		}
+		return dist;
+	}
+
+	//cos wave Orbit Trap. Creates a cos wave on the Complex Plane. Transformed to be half as wide.
+	private static double cosineTrap(double zr, double zi, double dist){
+		//limit domain between -1.8 and 1.8, then rule out points away from the wave with the quick cosine
+		if(zr < 1.8 && zr > -1.8 && nearWave(zi, quickSin(zr*2 + (Math.PI / 2)))){
+			double wave = Math.cos(zr*2);
+			if(zi < wave && zi > wave - 0.015){
+				return Math.abs(2.1 - Math.sqrt((zr * zr) + (zi * zi)));
+			}
+		}
+		return dist;
+	}
+
+	/*Flower Orbit Trap. Creates four parabolas in opposing directions and limits the range/domain so that the parabolas
+	 *  stop when they intersect. Uses Quadratic Equations.
+	 */
+	private static double flowerTrap(double zr, double zi, double dist){
+		//limit range to -1.0 and 1.0
+		if(zi < 1.0 && zi > -1.0){
+			double parabola = zr*zr;
+			if((zi < parabola && zi > parabola - 0.015) || (zi < -parabola && zi > -parabola - 0.015)){
+				return Math.abs(1.0 - Math.sqrt((zr * zr) + (zi * zi)));
+			}
+		}
+
+		//limit domain to -1.0 and 1.0
+		if(zr < 1.0 && zr > -1.0){
+			double parabola = zi*zi;
+			if((zr < parabola && zr > parabola - 0.015) || (zr < -parabola && zr > -parabola - 0.015)){
+				return Math.abs(1.0 - Math.sqrt((zr * zr) + (zi * zi)));
+			}
+		}
+		return dist;
+	}
+
+	//Petal Orbit Trap. Uses both sin and cos waves to creates images on the complex plane which vaguely resemble petals of a flower
+	private static double petalTrap(double zr, double zi, double dist){
+		/*both waves lie between -1 and 1, and sin(zr) is only above cos(zr - 0.5) for zr between 1.035 and 4.177 (and
+		 * the same plus or minus 2 pi), so points from -2.1 to 1.03 are never between the waves*/
+		if(zi < 1 && zi > -1 && (zr < -2.1 || zr > 1.03)){
+			if(zi < Math.sin(zr) && zi > Math.cos(zr - 0.5)){
+				return Math.abs(5.5 - Math.sqrt((zr * zr) + (zi * zi)));
+			}
+		}
+		return dist;
+	}
+
+	/*returns false if zi is certainly not between the wave at the given quick sine and 0.015 below it*/
+	private static boolean nearWave(double zi, double quickWave){
+		return zi < quickWave + QUICK_SIN_ERROR && zi > quickWave - 0.015 - QUICK_SIN_ERROR;
+	}
+
+	/*returns sin(x) to within QUICK_SIN_ERROR for x from -3 pi to 3 pi, far quicker than Math.sin. Only used to rule
+	 * points out of the wave traps, the exact sine is used for points near a wave. x is moved to between -pi/2 and pi/2
+	 * where the series up to x^7 is within (pi/2)^9 / 9! = 1.6e-4*/
+	private static double quickSin(double x){
+		if(x > Math.PI){
+			x -= 2 * Math.PI;
+		}else if(x < -Math.PI){
+			x += 2 * Math.PI;
+		}
+		if(x > Math.PI / 2){
+			x = Math.PI - x;
+		}else if(x < -Math.PI / 2){
+			x = -Math.PI - x;
+		}
+		double x2 = x * x;
+		return x * (1 - x2 / 6 * (1 - x2 / 20 * (1 - x2 / 42)));
+	}
+}
@@ -1,4 +1,3 @@
-import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
 import java.awt.image.BufferedImage;
@@ -25,11 +24,20 @@ public class JuliaPanel extends JPanel{
 	private int green;
 	private int blue;
 	private int brightnessLevel;
+	private Gradient gradient;
+	private boolean histogramColoring;
 	private int fractalType;
+	private Formula formula;
 	private int orbitOption;
 	private Complex c;
 	private boolean orbitTrapEnabled;
-	private BufferedImage offScreenJulia;
+	private boolean allTrapStyles;
+	private volatile FrameBuffer frameBuffer;
+	private volatile RenderStatistics lastStatistics;
+	private PaletteCycle paletteCycle;
+	//points of the last frame that had not escaped, so that a higher iteration limit carries them on. Only used by the
+	//render thread
+	private ResumeState resumeState;
 	private ArrayList<Complex> savedJulias;
 
 	/*set the value of each color in RGB model*/
@@ -39,6 +47,28 @@ public class JuliaPanel extends JPanel{
 		this.blue = blue;
 	}
 
+	/*set the gradient to color the fractal with instead of the RGB color, or null to use the RGB color*/
+	public void setGradient(Gradient gradient){
+		this.gradient = gradient;
+	}
+
+	/*set whether the colors are spread evenly over the pixels of the frame instead of over the iterations*/
+	public void setHistogramColoring(boolean option){
+		histogramColoring = option;
+	}
+
+	/*returns the color settings for a render to use*/
+	private Coloring getColoring(){
+		return Coloring.create(red, green, blue, brightnessLevel, gradient, histogramColoring);
+	}
+
+	/*returns the settings that change the result of a pixel, so that tiles are only taken from the tile cache for the
+	 * same Julia set. The colors are left out as the cached results are colored again*/
+	private String getSettingsKey(){
+		boolean custom = fractalType == Formula.FRACTAL_TYPE && formula != null;
+		return "julia," + fractalType + "," + (custom ? formula.getText() + "," : "") + maxIterations + "," + c.getReal() + "," + c.getImag();
+	}
+
 	/*set maximum number of iterations*/
 	public void setMaxIterations(int maxIterations) {
 		this.maxIterations = maxIterations;
@@ -53,6 +83,16 @@ public class JuliaPanel extends JPanel{
 	public void setFractalType(int fractalType) {
 		this.fractalType = fractalType;
 	}
+
+	/*set the formula calculated when the custom fractal type is selected*/
+	public void setFormula(Formula formula) {
+		this.formula = formula;
+	}
+
+	/*returns the formula calculated when the custom fractal type is selected, or null if none has been set*/
+	public Formula getFormula() {
+		return formula;
+	}
 	
 	/*set whether to use Orbit Traps or not*/
 	public void setOrbitTrapEnabled(boolean option){
@@ -63,6 +103,11 @@ public class JuliaPanel extends JPanel{
 	public void setOrbitOption(int option){
 		orbitOption = option;
 	}
+
+	/*set whether Orbit Trap frames keep the result of every style, so that changing the style only recolors the frame*/
+	public void setAllTrapStyles(boolean option){
+		allTrapStyles = option;
+	}
 	
 	/*save the Julia for the user selected point as a favourite in an ArrayList*/
 	public void saveJulia(int index){
@@ -75,21 +120,28 @@ public class JuliaPanel extends JPanel{
 		if(orbitTrapEnabled){
 			//generate with Orbit Trap
 			setOrbitOption(SidePanel.orbitTrapList.getSelectedIndex());
-			calculateOrbitTrapFractal();
-		}else{
-			//generate without Orbit Trap
-			calculateJulia();
 		}
+		render();
 	}
 
-	/*save the selected favorite julia as an image file (.PNG)*/
+	/*save the selected favorite julia as an image file (.PNG). The Julia is rendered into its own frame with the
+	 * current settings so that the image saved does not depend on which render is on screen*/
 	public void saveAsImage(String fileName){
-		File outputfile = new File(fileName + ".png");
-		
-		//save the BufferedImage as a .PNG file
-		try {
-			ImageIO.write(offScreenJulia, "png", outputfile);
-		} catch (IOException e) {}
+		final File outputfile = new File(fileName + ".png");
+		final FrameBuffer frame = new FrameBuffer(width, height);
+
+		RenderScheduler.submitUncancellable(new RenderScheduler.RenderJob() {
+
+			@Override
+			public void render(RenderScheduler.Ticket ticket) {
+				renderFrame(frame, ticket);
+
+				//save the rendered image as a .PNG file
+				try {
+					ImageIO.write(frame.getPublishedImage(), "png", outputfile);
+				} catch (IOException e) {}
+			}
+		});
 	}
 
 	/*set the value of the complex c*/
@@ -109,394 +161,386 @@ public class JuliaPanel extends JPanel{
 		orbitOption = 0;
 		orbitTrapEnabled = false;
 		savedJulias = new ArrayList<Complex>();
+		paletteCycle = new PaletteCycle(this) {
+
+			@Override
+			protected FrameBuffer getFrame() {
+				return frameBuffer;
+			}
+
+			@Override
+			protected Coloring getColoring() {
+				return JuliaPanel.this.getColoring();
+			}
+		};
 		this.setPreferredSize(new Dimension(520,520));
 	}
 
-	/*Get the size of this panel and create a BufferedImage which these dimensions (needed as borderLayout is used)*/
+	/*Get the size of this panel and create the frame buffer with these dimensions (needed as borderLayout is used)*/
 	public void setDimensions(){
 		width = this.getWidth();
 		height = this.getHeight();
-		offScreenJulia = new BufferedImage(width, height,BufferedImage.TYPE_INT_RGB);
+		frameBuffer = new FrameBuffer(width, height);
 	}
 
-	private Complex z = new Complex(0,0);
-
-	/*calculates the Fractal display for each pixel on the BufferedImage for the Julia fractal using
-	 * the same algorithm as the main fractal. Creates Image of fractal on BufferedImage*/
-	public void calculateJulia(){
-		double x;
-		double y;
-		int iterations;
-
-		//Calculates row by row
-		for(int i = 0; i < height; i++){
-			//for each pixel in the row
-			for(int j = 0; j < width; j++){
-				iterations = 0;
-				
-				//convert pixel's position to point on complex plane
-				x = minR + j*(maxR - minR)/width;
-				y = maxI - i*(maxI - minI)/height;
-				z = new Complex(x,y);
-
-				/*count iterations until the distance of this complex point from the origin exceeds 2 or the number of iterations
-				 *  reaches the max iterations limit.
-				 */
-				while(z.modulusSquared() < 4 && iterations < maxIterations){
-					//Use method to calculate selected fractal type
-					switch (fractalType) {
-					case 0:  mandelbrotJulia();
-					break;
-					
-					case 1:  triplebrotJulia();
-					break;
-					
-					case 2:  burningShipJulia();
-					break;
-
-					case 3:  birdOfPreyJulia();
-					break;
-					}
-
-					iterations++;
-				}
+	/*returns the statistics of the last frame that was shown, or null if nothing has been rendered yet*/
+	public RenderStatistics getLastStatistics(){
+		return lastStatistics;
+	}
 
-				float interval = 0;
+	/*requests a render of the Julia fractal with the current settings. The render runs on the render scheduler and
+	 * replaces any render of this panel that has not finished yet*/
+	public void render(){
+		RenderScheduler.submit(this, new RenderScheduler.RenderJob() {
 
-				/*converts the number of iterations taken to a smooth value, allowing for a smoother gradient with more colors
-				to be used*/
-				if(iterations < maxIterations){
-					interval = (float) (iterations + 1 - Math.log(Math.log(Math.sqrt(z.modulusSquared())))/Math.log(2));
+			@Override
+			public void render(RenderScheduler.Ticket ticket) {
+				FrameBuffer frame = frameBuffer;
+				if(frame != null){
+					renderFrame(frame, ticket);
 				}
-				
-				//draw the 	pixel to the bufferedImage in the correct position and color
-				offScreenJulia.setRGB(j, i, colorFractal(interval));
 			}
-		}
-		repaint();
+		});
 	}
 
-	/*calculates the Fractal display for each pixel on the BufferedImage for the selected fractal.
-	 * Creates Image of fractal on BufferedImage. Uses Orbit Trap Coloring method instead of Smooth Coloring*/
-	public void calculateOrbitTrapFractal(){
-		double x;
-		double y;
-		int iterations;
-
-		//Calculates row by row
-		for(int i = 0; i < height; i++){
-			//for each pixel in the row
-			for(int j = 0; j < width; j++){
-				iterations = 0;
-				
-				//convert pixel's position to point on complex plane
-				x = minR + j*(maxR - minR)/width;
-				y = maxI - i*(maxI - minI)/height;
-				z = new Complex(x,y);
-
-				double dist = 0;
-
-				/*count iterations until the distance of this complex point from the origin exceeds 2, the number of iterations
-				 *  reaches the max iterations limit or until the complex point is trapped by the Orbit Trap
-				 */
-				while(z.modulusSquared() < 4 && iterations < maxIterations && dist == 0){
-					//Use method to calculate selected fractal type
-					switch (fractalType) {
-					case 0:  mandelbrotJulia();
-					break;
-
-					case 1:  triplebrotJulia();
-					break;
-
-					case 2:  burningShipJulia();
-					break;
-
-					case 3:  birdOfPreyJulia();
-					break;
-					}
-					
-					//Check if complex point is trapped by the Orbit Trap
-					dist = orbitTrap(orbitOption, iterations, dist);
+	//colors the last frame again, a single job so that it is only queued once however often the colors change
+	private final RenderScheduler.RenderJob recolorJob = new RenderScheduler.RenderJob() {
 
-					iterations++;
-				}
-				//draw the 	pixel to the bufferedImage in the correct position with the correct color
-				offScreenJulia.setRGB(j, i, colorOrbitTrap(iterations, dist));
+		@Override
+		public void render(RenderScheduler.Ticket ticket) {
+			FrameBuffer frame = frameBuffer;
+			if(frame == null || frame.getPublishedResults().isEmpty()){
+				return;
 			}
-		}
-		repaint();
-	}
 
-	double trapSize;
-
-	/*Checks whether the complex point is trapped within the orbit trap method that is being used and returns
-	 * the distance of the point from the origin
-	 */
-	public double orbitTrap(int option, int count, double dist){
-		//elipse Orbit Trap. Creates large ring in the Complex Plane which is centered on origin
-		if(option == 0){
-			trapSize = 0.64;
-			if(Math.sqrt(z.modulusSquared()) < 0.65 && Math.sqrt(z.modulusSquared()) > 0.62){
-				dist = trapSize - Math.sqrt(z.modulusSquared()) + 0.4;
-				return Math.abs(dist);
+			//frames that keep every Orbit Trap style change to the style selected now
+			frame.getPublishedResults().setTrapStyle(orbitOption);
+			frame.getPublishedResults().recolor(frame.getBackPixels(), frame.getWidth(), frame.getHeight(), getColoring(), ticket);
+			if(!ticket.isCancelled()){
+				frame.getBackResults().copyFrom(frame.getPublishedResults());
+				frame.publish();
+				repaint();
 			}
 		}
+	};
 
-		//circle Orbit Trap. Creates large circle in the Complex Plane which is centered on origin
-		if(option == 1){
-			trapSize = 0.25;
-			if(Math.sqrt(z.modulusSquared()) < 0.25){
-				dist = trapSize - Math.sqrt(z.modulusSquared());
-				return dist;
-			}
-		}
+	/*set whether to animate the colors of the frame shown by cycling the palette*/
+	public void setPaletteCycling(boolean option){
+		paletteCycle.setRunning(option);
+	}
 
-		//dots Orbit Trap. Creates small circle in the Complex Plane which is centered on the origin
-		if(option == 2){
-			trapSize = 0.05;
-			if(Math.sqrt(z.modulusSquared()) < 0.05){
-				dist = trapSize - Math.sqrt(z.modulusSquared());
-				return dist;
-			}
-		}
+	/*requests the last frame to be colored again with the current colors and brightness, without calculating it again.
+	 * A render in progress is left to finish and is colored again afterwards*/
+	public void recolor(){
+		RenderScheduler.submitAfter(this, recolorJob);
+	}
 
-		//rings Orbit Trap. creates a small ring in the Complex Plane which is cenetered on the origin
-		if(option == 3){
-			trapSize = 0.195;
-			if(Math.sqrt(z.modulusSquared()) < 0.20 && Math.sqrt(z.modulusSquared()) > 0.19){
-				dist = trapSize - Math.sqrt(z.modulusSquared()) + 0.2;
-				return Math.abs(dist);
-			}
+	/*renders one frame using the coloring method that is selected*/
+	private void renderFrame(FrameBuffer frame, RenderScheduler.Ticket ticket){
+		//the points of the last frame are only kept until the next render, which releases them if it cannot carry them on.
+		//Images being saved are rendered into their own frame and leave them alone
+		ResumeState resume = null;
+		if(frame == frameBuffer){
+			resume = resumeState;
+			resumeState = null;
 		}
-
-		//lines Orbit Trap. Creates a vertical and horizontal line of the Complex Plane, through the origin
-		if(option == 4){
-			trapSize = 0.01;
-			if(Math.abs(z.getReal()) < 0.01){
-				dist = trapSize - Math.abs(z.getReal());
-				return dist;
-			}
-			if(Math.abs(z.getImag()) < 0.01){
-				dist = trapSize - Math.abs(z.getImag());
-				return dist;
-			}
+		if(orbitTrapEnabled){
+			calculateOrbitTrapFractal(frame, ticket);
+		}else{
+			calculateJulia(frame, resume, ticket);
 		}
+	}
 
-		/*Gaussian Integer algorithim. Calculates the distance of the Complex point from the nearest Guassian Integer and uses
-		 * this value to color the point.
-		 * NOTE: This algorithm is quite slow. I don't recommend zooming in too much.
-		 */
-		if(option == 5){
-			double downR = Math.floor(z.getReal());
-			double downI = Math.floor(z.getImag());
-			double upR = Math.ceil(z.getReal());
-			double upI = Math.ceil(z.getImag());
-
-			Complex low = new Complex(Math.abs(z.getReal() - downR), Math.abs(z.getImag() - downI));
-			Complex high = new Complex(Math.abs(z.getReal() - upR), Math.abs(z.getImag() - upI));
-
-			double nearestDistance = Math.min(low.modulusSquared(), high.modulusSquared());
-
-			trapSize = 0.01;
-			if(nearestDistance < 0.01 && nearestDistance > 0.0025){
-				dist = trapSize - nearestDistance;
-				//System.out.println(nearestDistance);
-				return Math.abs(dist);
-			}
+	/*calculates the Fractal display for each pixel of the frame buffer for the Julia fractal using
+	 * the same algorithm as the main fractal. Creates Image of fractal in the frame buffer and shows it once finished.
+	 * The image is split into tiles which are calculated in parallel.
+	 * The frame is only shown if the ticket has not been cancelled*/
+	public void calculateJulia(FrameBuffer frame, ResumeState resume, RenderScheduler.Ticket ticket){
+		//take a copy of the settings so that every tile renders the same frame
+		final int[] pixels = frame.getBackPixels();
+		final int width = frame.getWidth();
+		final int height = frame.getHeight();
+		final int maxIterations = this.maxIterations;
+		final int fractalType = this.fractalType;
+		final Complex c = this.c;
+		final String settings = getSettingsKey();
+		final Coloring coloring = getColoring();
+		final IterationBuffer results = frame.getBackResults();
+
+		/*when only the iteration limit has been raised for the same Julia set, the frame starts from the results of the
+		 * last frame and only the points that had not escaped are carried on*/
+		boolean custom = fractalType == Formula.FRACTAL_TYPE && formula != null;
+		String resumeSettings = fractalType + "," + (custom ? formula.getText() + "," : "") + c.getReal() + "," + c.getImag();
+		final ResumeState previous = resume != null && resume.canResume(resumeSettings, minR, maxR, minI, maxI, width, height, maxIterations) ? resume : null;
+		final ResumeState next = new ResumeState(resumeSettings, minR, maxR, minI, maxI, width, height, maxIterations);
+		if(previous != null){
+			previous.copyResultsTo(results);
 		}
-
-		//sine wave Orbit Trap. Creates a sine wave on the Complex Plane. Transformed to be half as wide.
-		if(option == 6){
-			trapSize = 1.9;
-			//limit domain between -1.8 and 1.8
-			if(z.getReal() < 1.8 && z.getReal() > -1.8){
-				if(z.getImag() < Math.sin(z.getReal()*2) && z.getImag() > Math.sin(z.getReal()*2) - 0.015){
-					dist = trapSize - Math.sqrt(z.modulusSquared());
-					return Math.abs(dist);
-				}
-			}
+		results.setMode(false, maxIterations, 0);
+		//the Julia view is shallow enough to be calculated with floats unless the panel is very large
+		final boolean useFloat = FloatKernel.useFloat(minR, maxR, minI, maxI, width, height);
+		final RowKernel kernel = fractalType == Formula.FRACTAL_TYPE && formula != null
+				? RowKernel.forKernel(formula.createKernel(false, 0)) : RowKernel.getInstance();
+		//pixels that are the mirror image of another pixel are copied from it once the rest of the frame is calculated
+		final Symmetry symmetry = custom ? Symmetry.NONE : Symmetry.forJulia(fractalType, minR, maxR, minI, maxI, width, height);
+		//tiles with mirrored pixels are only cached once they have been copied
+		final int tilesX = (width + RenderEngine.TILE_SIZE - 1) / RenderEngine.TILE_SIZE;
+		final boolean[] unfinished = new boolean[tilesX * ((height + RenderEngine.TILE_SIZE - 1) / RenderEngine.TILE_SIZE)];
+
+		final RenderStatistics statistics = new RenderStatistics();
+		statistics.setKernel(kernel.describe(fractalType, useFloat));
+		if(previous != null){
+			statistics.setResumedIterations(previous.getMaxIterations());
 		}
 
-		//cos wave Orbit Trap. Creates a cos wave on the Complex Plane. Transformed to be half as wide.
-		if(option == 7){
-			trapSize = 2.1;
-			//limit domain between -1.8 and 1.8
-			if(z.getReal() < 1.8 && z.getReal() > -1.8){
-				if(z.getImag() < Math.cos(z.getReal()*2) && z.getImag() > Math.cos(z.getReal()*2) - 0.015){
-					dist = trapSize - Math.sqrt(z.modulusSquared());
-					//System.out.println(Math.abs(Math.sqrt(z.modulusSquared())));
-					return Math.abs(dist);
+		RenderEngine.render(width, height, ticket, new RenderEngine.TileRenderer() {
+
+			@Override
+			public void renderTile(int startX, int startY, int endX, int endY) {
+				double x;
+				double y;
+				int iterations;
+				double[] state = new double[IterationKernel.STATE_SIZE];
+				RowKernel.Row row = kernel.createRow(endX - startX);
+				long calculated = 0;
+				long skipped = 0;
+				long pixelsCalculated = 0;
+
+				//tiles of a view that has been seen before are colored from the tile cache instead of being calculated again
+				TileCache.Tile place = TileCache.locate(settings, minR + startX*(maxR - minR)/width, maxI - startY*(maxI - minI)/height,
+						(maxR - minR)/width, (maxI - minI)/height, endX - startX, endY - startY);
+				float[] cached = TileCache.get(place);
+				if(cached != null){
+					results.setSmoothTile(startX, startY, endX, endY, width, cached);
+					for(int i = startY; i < endY; i++){
+						for(int j = startX; j < endX; j++){
+							pixels[i*width + j] = results.color(i*width + j, coloring);
+						}
+					}
+					statistics.addTile(true);
+					statistics.addPixels(0, (endX - startX) * (endY - startY));
+					return;
 				}
-			}
-		}
-
-		/*Flower Orbit Trap. Creates four parabolas in opposing directions and limits the range/domain so that the parabolas
-		 *  stop when they intersect. Uses Quadratic Equations.
-		 */
-		if(option == 8){
-			//limit range to -1.0 and 1.0
-			if(z.getImag() < 1.0 && z.getImag() > -1.0){
-				trapSize = 1.0;
-				if(z.getImag() < (z.getReal()*z.getReal()) && z.getImag() > (z.getReal()*z.getReal()) - 0.015){
-					dist = trapSize - Math.sqrt(z.modulusSquared());
-					return Math.abs(dist);
+				boolean complete = true;
+				boolean mirrored = false;
+				ResumeState.Points unescaped = new ResumeState.Points();
+
+				//a tile carried on from the last frame keeps the results of the pixels that escaped, which only need
+				//coloring again for the new iteration limit
+				ResumeState.Points points = previous != null ? previous.getPoints(startX, startY) : null;
+				int start = 0;
+				int nextPoint = 0;
+				if(points != null){
+					start = previous.getMaxIterations();
+					for(int i = startY; i < endY; i++){
+						for(int j = startX; j < endX; j++){
+							pixels[i*width + j] = results.color(i*width + j, coloring);
+						}
+					}
 				}
 
-				if(z.getImag() < -(z.getReal()*z.getReal()) && z.getImag() > -(z.getReal()*z.getReal()) - 0.015){
-					dist = trapSize - Math.sqrt(z.modulusSquared());
-					return Math.abs(dist);
+				//Calculates row by row
+				for(int i = startY; i < endY; i++){
+					//stop as soon as a newer render has been requested
+					if(ticket.isCancelled()){
+						complete = false;
+						break;
+					}
+
+					row.clear();
+					if(points != null){
+						//only the points that had not escaped are carried on, from the last z they reached
+						for(; nextPoint < points.getCount() && points.getPosition(nextPoint) < (i + 1)*width; nextPoint++){
+							pixelsCalculated++;
+							row.add(points.getPosition(nextPoint), points.getReal(nextPoint), points.getImag(nextPoint), c.getReal(), c.getImag());
+						}
+					}else{
+						//for each pixel in the row
+						for(int j = startX; j < endX; j++){
+							//skip pixels that are copied from their mirror image afterwards
+							if(symmetry.getSource(j, i) >= 0){
+								mirrored = true;
+								continue;
+							}
+							pixelsCalculated++;
+
+							//convert pixel's position to point on complex plane
+							x = minR + j*(maxR - minR)/width;
+							y = maxI - i*(maxI - minI)/height;
+							row.add(i*width + j, x, y, c.getReal(), c.getImag());
+						}
+					}
+
+					/*count iterations until the distance of each complex point from the origin exceeds 2 or the number of iterations
+					 *  reaches the max iterations limit. The whole row is iterated at once so that the kernel can use SIMD lanes
+					 */
+					kernel.escape(fractalType, useFloat, row, maxIterations - start);
+
+					for(int k = 0; k < row.getCount(); k++){
+						iterations = start + row.getResult(k, state);
+						skipped += (long) state[IterationKernel.SKIPPED];
+						calculated += iterations - start - (long) state[IterationKernel.SKIPPED];
+
+						/*converts the number of iterations taken to a smooth value, allowing for a smoother gradient with more colors
+						to be used. The value is kept so that the frame can be colored again without calculating it*/
+						results.setSmooth(row.positions[k], IterationKernel.smoothValue(iterations, maxIterations, state));
+
+						//write the pixel straight into the frame being rendered in the correct position and color
+						pixels[row.positions[k]] = results.color(row.positions[k], coloring);
+
+						//points that reached the limit without being found inside the set can be carried on later
+						if(iterations == maxIterations && state[IterationKernel.SKIPPED] == 0){
+							unescaped.add(row.positions[k], state[IterationKernel.REAL], state[IterationKernel.IMAG]);
+						}
+					}
+				}
+				statistics.addIterations(calculated, skipped);
+				statistics.addPixels(pixelsCalculated, (endX - startX) * (endY - startY));
+				statistics.addTile(false);
+
+				//only tiles that were calculated to the end are cached. The last points of mirrored pixels are not known,
+				//so their tile is calculated again in full when the iteration limit is raised
+				if(complete && mirrored){
+					unfinished[(startY / RenderEngine.TILE_SIZE) * tilesX + startX / RenderEngine.TILE_SIZE] = true;
+				}else if(complete){
+					TileCache.put(place, results.getSmoothTile(startX, startY, endX, endY, width));
+					next.setPoints(startX, startY, unescaped);
 				}
 			}
+		});
 
-			//limit domain to -1.0 and 1.0
-			if(z.getReal() < 1.0 && z.getReal() > -1.0){
-				trapSize = 1.0;
-				if(z.getReal() < (z.getImag()*z.getImag()) && z.getReal() > (z.getImag()*z.getImag()) - 0.015){
-					dist = trapSize - Math.sqrt(z.modulusSquared());
-					return Math.abs(dist);
-				}
+		statistics.setMirroredPixels(symmetry.mirror(pixels, results, coloring, ticket, new RenderEngine.TileRenderer() {
 
-				if(z.getReal() < -(z.getImag()*z.getImag()) && z.getReal() > -(z.getImag()*z.getImag()) - 0.015){
-					dist = trapSize - Math.sqrt(z.modulusSquared());
-					return Math.abs(dist);
+			@Override
+			public void renderTile(int startX, int startY, int endX, int endY) {
+				if(unfinished[(startY / RenderEngine.TILE_SIZE) * tilesX + startX / RenderEngine.TILE_SIZE]){
+					TileCache.put(TileCache.locate(settings, minR + startX*(maxR - minR)/width, maxI - startY*(maxI - minI)/height,
+							(maxR - minR)/width, (maxI - minI)/height, endX - startX, endY - startY),
+							results.getSmoothTile(startX, startY, endX, endY, width));
 				}
 			}
-		}
+		}));
 
-		//Petal Orbit Trap. Uses both sin and cos waves to creates images on the complex plane which vaguely resemble petals of a flower
-		if(option == 9){
-			trapSize = 5.5;
-			if(z.getImag() < Math.sin(z.getReal()) && z.getImag() > Math.cos(z.getReal() - 0.5)){
-				dist = trapSize - Math.sqrt(z.modulusSquared());
-				return Math.abs(dist);
+		//histogram coloring needs the result of every pixel before it can color any of them
+		results.finish(pixels, width, height, coloring, ticket);
+
+		//show the finished frame unless it has been replaced by a newer render
+		if(!ticket.isCancelled()){
+			frame.publish();
+			lastStatistics = statistics;
+			repaint();
+
+			//keep the points that did not escape unless they take up too much memory
+			if(frame == frameBuffer && next.setResults(frame.getPublishedResults())){
+				resumeState = next;
 			}
+		}else if(frame == frameBuffer){
+			//nothing new has been shown so the last frame can still be carried on
+			resumeState = resume;
 		}
-
-		return dist;
 	}
 
-	/*color the current pixel depending on the smooth value calculated from the number of iterations taken*/
-	public int colorFractal(float interval){		
-		Color color = new Color(0,0,0);
-
-		//calulate RGB value for red, green and blue parts. Limited to 255 as some calculations create numbers greater than 255
-		int calcRed = Math.min((int)(interval/maxIterations * red), 255);
-		int calcGreen = Math.min((int)(interval/maxIterations * green), 255);
-		int calcBlue = Math.min((int)(interval/maxIterations * blue), 255);
-
-		//construct RGB Color with calculated red, green and blue values
-		color = new Color(calcRed, calcGreen, calcBlue);
-
-		//brightens the color depending on brightness level selected.
-		for(int i = 0; i < brightnessLevel; i++){
-			color = color.brighter();
+	/*calculates the Fractal display for each pixel of the frame buffer for the selected fractal.
+	 * Creates Image of fractal in the frame buffer and shows it once finished. Uses Orbit Trap Coloring method instead of Smooth Coloring.
+	 * The frame is only shown if the ticket has not been cancelled*/
+	public void calculateOrbitTrapFractal(FrameBuffer frame, RenderScheduler.Ticket ticket){
+		//take a copy of the settings so that every tile renders the same frame
+		final int[] pixels = frame.getBackPixels();
+		final int width = frame.getWidth();
+		final int height = frame.getHeight();
+		final int maxIterations = this.maxIterations;
+		final int fractalType = this.fractalType;
+		final Complex c = this.c;
+		final Coloring coloring = getColoring();
+		final IterationBuffer results = frame.getBackResults();
+		//the fractal type and Orbit Trap are chosen once for the whole render. Every style is kept unless the formula is
+		//custom or the frame is too large for IterationBuffer.ALL_TRAPS_MEMORY_LIMIT
+		final FractalKernel kernel;
+		final int stateSize;
+		//the Julia orbits of mirrored points are the same from the first iteration, so every Orbit Trap style keeps the symmetry
+		final Symmetry symmetry = fractalType == Formula.FRACTAL_TYPE && formula != null ? Symmetry.NONE
+				: Symmetry.forJulia(fractalType, minR, maxR, minI, maxI, width, height);
+		if(allTrapStyles && !(fractalType == Formula.FRACTAL_TYPE && formula != null) && IterationBuffer.canKeepAllTraps(width * height)){
+			results.setAllTrapsMode(maxIterations, orbitOption);
+			kernel = FractalKernel.createAllTraps(fractalType);
+			stateSize = IterationKernel.ALL_TRAPS_STATE_SIZE;
+		}else{
+			results.setMode(true, maxIterations, IterationKernel.getTrapSize(orbitOption));
+			kernel = FractalKernel.create(fractalType, formula, true, orbitOption);
+			stateSize = IterationKernel.STATE_SIZE;
 		}
 
-		int finalColor = color.getRGB();
-		
-		return finalColor;
-	}
+		final RenderStatistics statistics = new RenderStatistics();
+
+		RenderEngine.render(width, height, ticket, new RenderEngine.TileRenderer() {
+
+			@Override
+			public void renderTile(int startX, int startY, int endX, int endY) {
+				double x;
+				double y;
+				int iterations;
+				double[] state = new double[stateSize];
+				long calculated = 0;
+				long skipped = 0;
+				long pixelsCalculated = 0;
+
+				//Calculates row by row
+				for(int i = startY; i < endY; i++){
+					//stop as soon as a newer render has been requested
+					if(ticket.isCancelled()){
+						break;
+					}
 
-	/*Color the current pixel depending on the result of the Orbit Trap.
-	 * Uses region splits to color three groups of traps three specific colors. 
-	 */
-	public int colorOrbitTrap(int count, double dist){
-		Color color = new Color(0,0,0);
-
-		//RGB values for first oolor
-		int oRed = Math.min((int)(dist/trapSize*255), 255);
-		int oGreen = 0;
-		int oBlue = 0;
-
-		//color with this color if the number of iterations taken is even
-		if(count%2 == 0)
-			color = new Color(oRed,oGreen,oBlue);
-
-		//RGB values for second color
-		oRed = Math.min((int)(dist/trapSize*255), 255);
-		oGreen = Math.min((int)(dist/trapSize*153), 255);
-
-		//color with this color if the number of iterations taken is odd
-		if(count%2 == 1)
-			color = new Color(oRed,oGreen,oBlue);
-
-		//RGB values for third color
-		oRed = Math.min((int)(dist/trapSize*255), 255);
-		oGreen = Math.min((int)(dist/trapSize*204), 255);
-		oBlue = Math.min((int)(dist/trapSize*184), 255);
-
-		//color with this color if the number of iterations taken is a multiple of 3
-		if(count%3 == 0)
-			color = new Color(oRed,oGreen,oBlue);
-		
-		int finalColor = color.getRGB();
-
-		return finalColor;
-	}
+					//for each pixel in the row
+					for(int j = startX; j < endX; j++){
+						//skip pixels that are copied from their mirror image afterwards
+						if(symmetry.getSource(j, i) >= 0){
+							continue;
+						}
+						pixelsCalculated++;
+
+						//convert pixel's position to point on complex plane
+						x = minR + j*(maxR - minR)/width;
+						y = maxI - i*(maxI - minI)/height;
+
+						/*count iterations until the distance of this complex point from the origin exceeds 2, the number of iterations
+						 *  reaches the max iterations limit or until the complex point is trapped by the Orbit Trap
+						 */
+						iterations = kernel.iterate(x, y, c.getReal(), c.getImag(), maxIterations, state);
+						skipped += (long) state[IterationKernel.SKIPPED];
+						calculated += iterations - (long) state[IterationKernel.SKIPPED];
+
+						//write the pixel straight into the frame being rendered in the correct position with the correct color
+						kernel.store(iterations, maxIterations, state, results, i*width + j);
+						pixels[i*width + j] = results.color(i*width + j, coloring);
+					}
+				}
+				statistics.addIterations(calculated, skipped);
+				statistics.addPixels(pixelsCalculated, (endX - startX) * (endY - startY));
+			}
+		});
 
-	/*calculates julia for Mandelbrot fractal*/
-	public void mandelbrotJulia(){
-		Complex tmp = new Complex(0,0);
-		double nextReal;
-		double nextImag;
-
-		tmp = z.square();
-		tmp = tmp.add(c);	
-		nextReal = tmp.getReal();
-		nextImag = tmp.getImag();
-		z = new Complex(nextReal,nextImag);
-	}
-	
-	/*While the following are technically not julia sets, I used changed the calculations used
-	 * to reflect the fractal being displayed on the main fractal so that each "Julia"
-	 * set is different for each fractal
-	 */
-	
-	/*calculates julia for triplebrot fractal*/
-	public void triplebrotJulia(){
-		Complex tmp = new Complex(0,0);
-		double nextReal;
-		double nextImag;
-
-		tmp = z.square();
-		tmp = tmp.square();
-		tmp = tmp.add(c);	
-		nextReal = tmp.getReal();
-		nextImag = tmp.getImag();
-		z = new Complex(nextReal,nextImag);
-	}
+		statistics.setMirroredPixels(symmetry.mirror(pixels, results, coloring, ticket, null));
 
-	/*calculates julia for Burning Ship fractal. The Julia set is flipped to reflect
-	 * the flipped burning Ship on the main fractal panel*/
-	public void burningShipJulia(){
-		Complex tmp;
-		double nextReal;
-		double nextImag;
-
-		tmp = z.absSquare();
-		tmp = new Complex(tmp.getReal() + c.getReal(),tmp.getImag() - c.getImag());	
-		nextReal = tmp.getReal();
-		nextImag = tmp.getImag();
-		z = new Complex(nextReal,nextImag);
-	}
-	
-	/*calculates julia for bird of Prey fractal*/
-	public void birdOfPreyJulia(){
-		Complex tmp;
-		double nextReal;
-		double nextImag;
-
-		tmp = z.cube();
-		tmp = tmp.add(c);	
-		nextReal = tmp.getReal();
-		nextImag = tmp.getImag();
-		z = new Complex(nextReal,nextImag);
+		//show the finished frame unless it has been replaced by a newer render
+		if(!ticket.isCancelled()){
+			frame.publish();
+			lastStatistics = statistics;
+			repaint();
+		}
 	}
 
-	/*Draws the BufferedImage*/
+	/*Draws the latest finished frame. Never waits for a render that is in progress*/
 	public void paintComponent(Graphics g){
 		super.paintComponent(g);	
-		g.drawImage(offScreenJulia, 0, 0, this);
+
+		//nothing to draw until the panel has been given its size
+		FrameBuffer frame = frameBuffer;
+		if(frame != null){
+			//draw the palette cycle instead of the frame while the colors are being cycled
+			BufferedImage cycle = paletteCycle.getImage();
+			g.drawImage(cycle != null ? cycle : frame.getFrontImage(), 0, 0, this);
+		}
 	}
 
 }
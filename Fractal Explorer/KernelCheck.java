@@ -0,0 +1,166 @@
+/*Checks the kernels against each other, run by hand with "java KernelCheck" after changing any of them, and with
+ * "java --add-modules jdk.incubator.vector KernelCheck" to check the vector kernel as well. Exits with status 1 if a
+ * check fails.
+ * The float kernels are checked against the double kernels they stand in for. Each fractal type is calculated over the
+ * starting view of the main fractal and of the Julia panel with FloatKernel and with IterationKernel, and the share of
+ * pixels whose iteration counts differ is printed. Floats round differently so some pixels in the chaotic parts of the
+ * boundary are expected to differ, but a view with more than MAX_MISMATCH of its pixels different fails the check.
+ * The vector kernel is checked against the scalar kernels, which it has to match exactly, and both are timed on one
+ * thread over the same rows. The starting views have to be shallow enough for the panels to use floats, and the float
+ * lanes have to give the float results rather than the double ones, to show that floats are used when rendering. Each fractal type the vector kernel iterates in lanes has to be at least MIN_SPEEDUP times
+ * faster than the scalar kernels. The check also fails if the module has been added but the vector kernel could not be
+ * loaded, unless the SIMD registers are too narrow for it*/
+public class KernelCheck {
+	//largest share of the pixels of a view that may differ between the float and double kernels
+	private static final double MAX_MISMATCH = 0.03;
+	private static final int WIDTH = 640;
+	private static final int HEIGHT = 512;
+	private static final int MAX_ITERATIONS = 1000;
+	//c of the Julia sets that are checked
+	private static final double JULIA_R = -0.4;
+	private static final double JULIA_I = 0.6;
+	//times each kernel is run over the view, the fastest of which is kept so that the JIT has warmed up
+	private static final int TIMING_RUNS = 5;
+	//least speedup over the scalar kernels for a fractal type to be iterated in lanes
+	static final double MIN_SPEEDUP = 1.2;
+
+	public static void main(String[] args){
+		boolean passed = true;
+		for(int fractalType = 0; fractalType < 4; fractalType++){
+			passed &= compareFloats("main", fractalType, false);
+			passed &= compareFloats("julia", fractalType, true);
+		}
+
+		//the panels only use floats for views that FloatKernel.useFloat allows
+		if(!FloatKernel.useFloat(-2, 2, -1.6, 1.6, WIDTH, HEIGHT)){
+			System.out.println("the starting view is not calculated with floats");
+			passed = false;
+		}
+
+		RowKernel kernel = RowKernel.getInstance();
+		String problem = RowKernel.getVectorProblem();
+		if(problem != null){
+			System.out.println("vector kernel not loaded: " + problem);
+			if(!ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()){
+				System.out.println("run with --add-modules jdk.incubator.vector to check it");
+			}else if(!problem.equals(RowKernel.NARROW_REGISTERS)){
+				passed = false;
+			}
+		}else{
+			for(int fractalType = 0; fractalType < 4; fractalType++){
+				passed &= compareRows(kernel, fractalType, false);
+				passed &= compareRows(kernel, fractalType, true);
+			}
+		}
+		System.out.println(passed ? "passed" : "FAILED");
+		System.exit(passed ? 0 : 1);
+	}
+
+	/*calculates the starting view of the main fractal, or of the Julia set if julia is set, with the float and double
+	 * kernels and prints how many pixels differ. Returns false if more than MAX_MISMATCH of the pixels differ*/
+	private static boolean compareFloats(String name, int fractalType, boolean julia){
+		double[] state = new double[IterationKernel.STATE_SIZE];
+		int mismatched = 0;
+
+		for(int i = 0; i < HEIGHT; i++){
+			for(int j = 0; j < WIDTH; j++){
+				//the same view as the panels start with, from -2 to 2 and -1.6 to 1.6
+				double x = -2 + j * 4.0 / WIDTH;
+				double y = 1.6 - i * 3.2 / HEIGHT;
+				int doubles;
+				int floats;
+				if(julia){
+					doubles = IterationKernel.escape(fractalType, x, y, JULIA_R, JULIA_I, MAX_ITERATIONS, state);
+					floats = FloatKernel.escape(fractalType, (float) x, (float) y, (float) JULIA_R, (float) JULIA_I, MAX_ITERATIONS, state);
+				}else{
+					doubles = IterationKernel.escape(fractalType, 0, 0, x, y, MAX_ITERATIONS, state);
+					floats = FloatKernel.escape(fractalType, 0, 0, (float) x, (float) y, MAX_ITERATIONS, state);
+				}
+				if(doubles != floats){
+					mismatched++;
+				}
+			}
+		}
+
+		double mismatch = (double) mismatched / (WIDTH * HEIGHT);
+		System.out.printf("%-5s type %d: float and double iteration counts differ in %.3f%% of pixels%n", name, fractalType, mismatch * 100);
+		return mismatch <= MAX_MISMATCH;
+	}
+
+	/*calculates the starting view of the main fractal a row at a time with the given kernel and with the scalar kernels,
+	 * in floats if useFloat is set, and prints how long each took. Returns false if any point has a different result or
+	 * the kernel is less than MIN_SPEEDUP times faster. Nothing is checked if the kernel does not iterate the fractal type
+	 * in lanes, as the scalar kernels are used for it*/
+	private static boolean compareRows(RowKernel kernel, int fractalType, boolean useFloat){
+		String name = useFloat ? "floats" : "doubles";
+		if(!kernel.isVectorized(fractalType, useFloat)){
+			System.out.printf("type %d %-7s: not iterated in lanes, the scalar kernels are used%n", fractalType, name);
+			return true;
+		}
+
+		RowKernel.Row vector = kernel.createRow(WIDTH);
+		RowKernel.Row scalar = new RowKernel.ScalarRowKernel().createRow(WIDTH);
+		double[] state = new double[IterationKernel.STATE_SIZE];
+		long vectorTime = Long.MAX_VALUE;
+		long scalarTime = Long.MAX_VALUE;
+		boolean identical = true;
+		//points whose iteration count differs from the double kernels, which floats give for some points
+		int fromDoubles = 0;
+
+		for(int run = 0; run < TIMING_RUNS; run++){
+			long vectorRun = 0;
+			long scalarRun = 0;
+			for(int i = 0; i < HEIGHT; i++){
+				fillRow(vector, i);
+				fillRow(scalar, i);
+
+				long start = System.nanoTime();
+				kernel.escape(fractalType, useFloat, vector, MAX_ITERATIONS);
+				vectorRun += System.nanoTime() - start;
+
+				//the scalar row kernel always uses doubles, so the float lanes are checked against FloatKernel
+				start = System.nanoTime();
+				if(useFloat){
+					for(int k = 0; k < scalar.getCount(); k++){
+						scalar.iterations[k] = FloatKernel.escape(fractalType, (float) scalar.zr[k], (float) scalar.zi[k],
+								(float) scalar.cr[k], (float) scalar.ci[k], MAX_ITERATIONS, state);
+						scalar.lastR[k] = state[IterationKernel.REAL];
+						scalar.lastI[k] = state[IterationKernel.IMAG];
+						scalar.skipped[k] = (int) state[IterationKernel.SKIPPED];
+					}
+				}else{
+					new RowKernel.ScalarRowKernel().escape(fractalType, false, scalar, MAX_ITERATIONS);
+				}
+				scalarRun += System.nanoTime() - start;
+
+				for(int k = 0; k < WIDTH; k++){
+					identical &= vector.iterations[k] == scalar.iterations[k] && vector.skipped[k] == scalar.skipped[k]
+							&& vector.lastR[k] == scalar.lastR[k] && vector.lastI[k] == scalar.lastI[k];
+					if(run == 0 && vector.iterations[k] != IterationKernel.escape(fractalType, vector.zr[k], vector.zi[k],
+							vector.cr[k], vector.ci[k], MAX_ITERATIONS, state)){
+						fromDoubles++;
+					}
+				}
+			}
+			vectorTime = Math.min(vectorTime, vectorRun);
+			scalarTime = Math.min(scalarTime, scalarRun);
+		}
+
+		double speedup = (double) scalarTime / vectorTime;
+		//float lanes that give exactly the double results have not used floats
+		boolean floatsUsed = !useFloat || fromDoubles > 0;
+		System.out.printf("type %d %-7s: %s %d ms, scalar %d ms, %.2fx faster%s%s%s%n", fractalType, name, kernel.getName(),
+				vectorTime / 1000000, scalarTime / 1000000, speedup, identical ? "" : ", RESULTS DIFFER",
+				speedup >= MIN_SPEEDUP ? "" : ", SLOWER THAN " + MIN_SPEEDUP + "x, turn it off in VectorRowKernel",
+				floatsUsed ? "" : ", FLOATS NOT USED");
+		return identical && speedup >= MIN_SPEEDUP && floatsUsed;
+	}
+
+	/*fills a row with the points of one row of the starting view of the main fractal*/
+	private static void fillRow(RowKernel.Row row, int i){
+		row.clear();
+		for(int j = 0; j < WIDTH; j++){
+			row.add(j, 0, 0, -2 + j * 4.0 / WIDTH, 1.6 - i * 3.2 / HEIGHT);
+		}
+	}
+}
@@ -4,19 +4,25 @@ import java.awt.Graphics;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
 import java.awt.image.BufferedImage;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
 import java.text.DecimalFormat;
+import java.util.Arrays;
 
 import javax.swing.JPanel;
+import javax.swing.SwingUtilities;
 import javax.swing.event.MouseInputAdapter;
 
 public class MainFractalPanel extends JPanel{
 	private static final long serialVersionUID = 1L;
+	//time in milliseconds each preview frame of the animated zoom is shown for
+	private static final int ZOOM_FRAME_DELAY = 20;
+	private static final BigDecimal TWO = BigDecimal.valueOf(2);
 	
-	private double minR;
-	private double maxR;
-	private double minI;
-	private double maxI;
+	//view shown by the panel. Only set on the event thread, a render takes the whole view at once as it is never changed
+	private volatile View view;
 	private int maxIterations;
 	private int width;
 	private int height;
@@ -33,13 +39,25 @@ public class MainFractalPanel extends JPanel{
 	private int blue;
 	private int orbitOption;
 	private int fractalType;
+	private Formula formula;
 	private int brightnessLevel;
+	private Gradient gradient;
+	private boolean histogramColoring;
 	private boolean zoomMode;
 	private boolean orbitTrapEnabled;
+	private boolean allTrapStyles;
+	private boolean subdivisionEnabled;
 	private JuliaPanel juliaPanel;
 	private Rectangle dragBox;
-	private BufferedImage offScreenImage;
+	private volatile FrameBuffer frameBuffer;
+	private volatile RenderStatistics lastStatistics;
+	private PaletteCycle paletteCycle;
 	private MainFractalMouseListener mouseListener;
+	//last frame that was fully calculated, used to preview zooms. Only used by the render thread
+	private FrameSnapshot lastFrame;
+	//points of the last frame that had not escaped, so that a higher iteration limit carries them on. Only used by the
+	//render thread
+	private ResumeState resumeState;
 	public static Complex userSelectedPoint;
 
 	/*set the value of each color in RGB model*/
@@ -49,26 +67,69 @@ public class MainFractalPanel extends JPanel{
 		this.blue = blue;
 	}
 
-	/*set minimum for Real Axis*/
-	public void setMinR(double minR) {
-		this.minR = minR;
+	/*sets the view from the bounds of the complex plane typed into the side panel. The bounds are read in full precision
+	 * so that a deep view shown in the side panel can be typed back in without losing any digits.
+	 * Throws NumberFormatException if a bound is not a number*/
+	public void setPlaneBounds(String minR, String maxR, String minI, String maxI){
+		BigDecimal lowR = new BigDecimal(minR.trim());
+		BigDecimal highR = new BigDecimal(maxR.trim());
+		BigDecimal lowI = new BigDecimal(minI.trim());
+		BigDecimal highI = new BigDecimal(maxI.trim());
+
+		setView(lowR.add(highR).divide(TWO), lowI.add(highI).divide(TWO), FloatExp.valueOf(highR.subtract(lowR)),
+				FloatExp.valueOf(highI.subtract(lowI)));
 	}
-	
-	/*set maximum for Real Axis*/
-	public void setMaxR(double maxR) {
-		this.maxR = maxR;
+
+	/*sets the view to the area of the given width (spanR) and height (spanI) around the centre. The bounds used by the
+	 * double precision calculations are worked out from it. The centre is rounded to the digits needed at this zoom
+	 * so that repeated zooms do not keep adding digits*/
+	private void setView(BigDecimal centerR, BigDecimal centerI, FloatExp spanR, FloatExp spanI){
+		view = createView(centerR, centerI, spanR, spanI);
 	}
-	
-	/*set minimum for Imaginary Axis*/
-	public void setMinI(double minI) {
-		this.minI = minI;
+
+	/*returns the view of the given width (spanR) and height (spanI) around the centre, without showing it*/
+	private View createView(BigDecimal centerR, BigDecimal centerI, FloatExp spanR, FloatExp spanI){
+		int decimalPlaces = PerturbationKernel.getDecimalPlaces(getSpacing(spanR, spanI));
+		return new View(centerR.setScale(decimalPlaces, RoundingMode.HALF_EVEN), centerI.setScale(decimalPlaces, RoundingMode.HALF_EVEN),
+				spanR, spanI);
 	}
 
-	/*set maximum for Imaginary Axis*/
-	public void setMaxI(double maxI) {
-		this.maxI = maxI;
+	/*returns the distance between neighbouring pixels of a view of the given size, the smaller of the two directions*/
+	private FloatExp getSpacing(FloatExp spanR, FloatExp spanI){
+		return FloatExp.min(spanR.divide(Math.max(width, 1)), spanI.divide(Math.max(height, 1)));
 	}
-	
+
+	/*shows the bounds of the given view in the side panel, with every digit needed to type the view back in*/
+	private void showBounds(BigDecimal centerR, BigDecimal centerI, FloatExp spanR, FloatExp spanI){
+		int decimalPlaces = PerturbationKernel.getDecimalPlaces(getSpacing(spanR, spanI));
+		BigDecimal halfR = spanR.divide(2).toBigDecimal();
+		BigDecimal halfI = spanI.divide(2).toBigDecimal();
+
+		SidePanel.rScaleStart.setText(formatBound(centerR.subtract(halfR), decimalPlaces));
+		SidePanel.rScaleEnd.setText(formatBound(centerR.add(halfR), decimalPlaces));
+		SidePanel.iScaleStart.setText(formatBound(centerI.subtract(halfI), decimalPlaces));
+		SidePanel.iScaleEnd.setText(formatBound(centerI.add(halfI), decimalPlaces));
+	}
+
+	/*rounds a bound to the given number of decimal places and writes it without an exponent or trailing zeros*/
+	private static String formatBound(BigDecimal bound, int decimalPlaces){
+		BigDecimal rounded = bound.setScale(decimalPlaces, RoundingMode.HALF_EVEN);
+		if(rounded.signum() == 0){
+			return "0";
+		}
+		return rounded.stripTrailingZeros().toPlainString();
+	}
+
+	/*set the gradient to color the fractal with instead of the RGB color, or null to use the RGB color*/
+	public void setGradient(Gradient gradient){
+		this.gradient = gradient;
+	}
+
+	/*set whether the colors are spread evenly over the pixels of the frame instead of over the iterations*/
+	public void setHistogramColoring(boolean option){
+		histogramColoring = option;
+	}
+
 	/*set maximum number of iterations*/
 	public void setMaxIterations(int maxIterations) {
 		this.maxIterations = maxIterations;
@@ -84,6 +145,16 @@ public class MainFractalPanel extends JPanel{
 		this.fractalType = fractalType;
 	}
 
+	/*set the formula calculated when the custom fractal type is selected*/
+	public void setFormula(Formula formula) {
+		this.formula = formula;
+	}
+
+	/*returns true if the custom formula is selected and compiled*/
+	private boolean isCustomFormula(){
+		return fractalType == Formula.FRACTAL_TYPE && formula != null;
+	}
+
 	/*set which Orbit Trap style to use*/
 	public void setOrbitOption(int option){
 		orbitOption = option;
@@ -94,12 +165,25 @@ public class MainFractalPanel extends JPanel{
 		orbitTrapEnabled = option;
 	}
 
+	/*set whether Orbit Trap frames keep the result of every style, so that changing the style only recolors the frame*/
+	public void setAllTrapStyles(boolean option){
+		allTrapStyles = option;
+	}
+
+	/*returns true if an Orbit Trap frame of the given number of pixels is calculated for every style at once. Custom
+	 * formulas and frames too large for IterationBuffer.ALL_TRAPS_MEMORY_LIMIT are calculated for the selected style*/
+	private boolean useAllTrapStyles(int pixels){
+		return allTrapStyles && !isCustomFormula() && IterationBuffer.canKeepAllTraps(pixels);
+	}
+
+	/*set whether to use rectangle subdivision (Mariani-Silver) instead of calculating every pixel*/
+	public void setSubdivisionEnabled(boolean option){
+		subdivisionEnabled = option;
+	}
+
 	/*constructor*/
 	public MainFractalPanel(JuliaPanel juliaPanel){
-		minR = -2;
-		maxR = 2;
-		minI = -1.6;
-		maxI = 1.6;
+		setPlaneBounds("-2", "2", "-1.6", "1.6");
 		maxIterations = 100;
 		brightnessLevel = 0;
 		fractalType = 0;
@@ -112,445 +196,1060 @@ public class MainFractalPanel extends JPanel{
 		this.addMouseListener(mouseListener);
 		this.addMouseMotionListener(mouseListener);
 		this.addMouseWheelListener(mouseListener);
+		paletteCycle = new PaletteCycle(this) {
+
+			@Override
+			protected FrameBuffer getFrame() {
+				return frameBuffer;
+			}
+
+			@Override
+			protected Coloring getColoring() {
+				return MainFractalPanel.this.getColoring();
+			}
+		};
 	}
 
-	/*Get the size of this panel and create a BufferedImage which these dimensions (needed as borderLayout is used)*/
+	/*Get the size of this panel and create the frame buffer with these dimensions (needed as borderLayout is used)*/
 	public void setDimensions(){
 		width = this.getWidth();
 		height = this.getHeight();
-		offScreenImage = new BufferedImage(width, height,BufferedImage.TYPE_INT_RGB);
-	}
-
-	private Complex c;
-	private Complex z = new Complex(0,0);
-
-	/*calculates the Fractal display for each pixel on the BufferedImage for the selected fractal.
-	 * Creates Image of fractal on BufferedImage*/
-	public void calculateMainFractal(){
-		double x;
-		double y;
-		int iterations;
-
-		//Calculates row by row
-		for(int i = 0; i < height; i++){
-			//for each pixel in the row
-			for(int j = 0; j < width; j++){
-				iterations = 0;
-				
-				//convert pixel's position to point on complex plane
-				x = minR + j*(maxR - minR)/width;
-				y = maxI - i*(maxI - minI)/height;
-				
-				c = new Complex(x,y);
-				z = new Complex(0,0);
-				
-				/*count iterations until the distance of this complex point from the origin exceeds 2 or the number of iterations
-				 *  reaches the max iterations limit.
-				 */
-				while(z.modulusSquared() < 4 && iterations < maxIterations){
-					//Use method to calculate selected fractal type
-					switch (fractalType) {
-					case 0:  mandelbrot();
-					break;
-					
-					case 1:  triplebrot();
-					break;
-					
-					case 2:  burningShip();
-					break;
-
-					case 3:  birdOfPrey();
-					break;
-					}
+		frameBuffer = new FrameBuffer(width, height);
+	}
 
-					iterations++;
-				}
+	/*returns the statistics of the last frame that was shown, or null if nothing has been rendered yet*/
+	public RenderStatistics getLastStatistics(){
+		return lastStatistics;
+	}
 
-				float interval = 0;
+	/*shows the statistics of the frame that has just been shown in the side panel*/
+	private void showStatistics(final RenderStatistics statistics){
+		SwingUtilities.invokeLater(new Runnable() {
 
-				/*converts the number of iterations taken to a smooth value, allowing for a smoother gradient with more colors
-				to be used*/
-				if(iterations < maxIterations){
-					interval = (float) (iterations + 1 - Math.log(Math.log(Math.sqrt(z.modulusSquared())))/Math.log(2));
-				}
-				
-				//draw the 	pixel to the bufferedImage in the correct position and color
-				offScreenImage.setRGB(j, i, colorFractal(interval));
-			}	
+			@Override
+			public void run() {
+				SidePanel.renderStatsL.setText(statistics.getSummary());
+			}
+		});
+	}
+
+	/*requests a render of the main fractal with the current settings. The render runs on the render scheduler and
+	 * replaces any render of this panel that has not finished yet*/
+	public void render(){
+		//the view is taken now so that the render shows the view it was requested for
+		final View view = this.view;
+		RenderScheduler.submit(this, new RenderScheduler.RenderJob() {
+
+			@Override
+			public void render(RenderScheduler.Ticket ticket) {
+				renderFrame(ticket, view, null);
+			}
+		});
+	}
+
+	//colors the last frame again, a single job so that it is only queued once however often the colors change
+	private final RenderScheduler.RenderJob recolorJob = new RenderScheduler.RenderJob() {
+
+		@Override
+		public void render(RenderScheduler.Ticket ticket) {
+			FrameBuffer frame = frameBuffer;
+			if(frame == null || frame.getPublishedResults().isEmpty()){
+				return;
+			}
+
+			//frames that keep every Orbit Trap style change to the style selected now
+			frame.getPublishedResults().setTrapStyle(orbitOption);
+			frame.getPublishedResults().recolor(frame.getBackPixels(), frame.getWidth(), frame.getHeight(), getColoring(), ticket);
+			if(!ticket.isCancelled()){
+				frame.getBackResults().copyFrom(frame.getPublishedResults());
+				frame.publish();
+				repaint();
+			}
 		}
+	};
+
+	/*set whether to animate the colors of the frame shown by cycling the palette*/
+	public void setPaletteCycling(boolean option){
+		paletteCycle.setRunning(option);
+	}
+
+	/*requests the last frame to be colored again with the current colors and brightness, without calculating it again.
+	 * A render in progress is left to finish and is colored again afterwards*/
+	public void recolor(){
+		RenderScheduler.submitAfter(this, recolorJob);
+	}
+
+	/*renders one frame of the given view using the coloring method that is selected. Pixels marked in known are already
+	 * in the frame being rendered and are not calculated again. known may be null*/
+	private void renderFrame(RenderScheduler.Ticket ticket, View view, boolean[] known){
+		FrameBuffer frame = frameBuffer;
+		if(frame == null){
+			return;
+		}
+
+		/*zooms that need more precision than a double has are calculated in double-double, and deeper zooms with perturbation.
+		 * subdivision is only exact for sets that are connected and have no holes, which the Mandelbrot and Triplebrot
+		 * are but the Burning Ship and Bird of Prey are not. Custom formulas are only compiled in doubles*/
+		double spacing = FloatExp.min(view.spanR.divide(frame.getWidth()), view.spanI.divide(frame.getHeight())).toDouble();
+		//the points of the last frame are only kept until the next render, which releases them if it cannot carry them on
+		ResumeState resume = resumeState;
+		resumeState = null;
+		if(isCustomFormula()){
+			if(orbitTrapEnabled){
+				calculateOrbitTrapFractal(frame, view, known, ticket);
+			}else{
+				calculateMainFractal(frame, view, known, resume, ticket);
+			}
+		}else if(spacing < PerturbationKernel.DEEP_ZOOM_SPACING){
+			calculateDeepZoomFractal(frame, view, known, ticket);
+		}else if(spacing < DoubleDoubleKernel.DOUBLE_DOUBLE_SPACING){
+			calculateDoubleDoubleFractal(frame, view, known, ticket);
+		}else if(orbitTrapEnabled){
+			calculateOrbitTrapFractal(frame, view, known, ticket);
+		}else if(subdivisionEnabled && (fractalType == 0 || fractalType == 1)){
+			calculateSubdividedFractal(frame, view, ticket);
+		}else{
+			calculateMainFractal(frame, view, known, resume, ticket);
+		}
+	}
+
+	/*requests a render of the current view that first shows an instant preview made from the last calculated frame and
+	 * then refines it, reusing every pixel that lands exactly on a pixel of the last frame*/
+	public void renderZoom(){
+		final View view = this.view;
+		RenderScheduler.submit(this, new RenderScheduler.RenderJob() {
+
+			@Override
+			public void render(RenderScheduler.Ticket ticket) {
+				renderFrame(ticket, view, previewFrame(ticket, view));
+			}
+		});
+	}
+
+	/*shows a preview of the given view made by resampling the last calculated frame. Returns the pixels that were
+	 * reused exactly, which are copied into the frame that is rendered next. Returns null if there was no preview*/
+	private boolean[] previewFrame(RenderScheduler.Ticket ticket, View view){
+		FrameBuffer frame = frameBuffer;
+		FrameSnapshot source = lastFrame;
+		if(frame == null || source == null){
+			return null;
+		}
+
+		int width = frame.getWidth();
+		int height = frame.getHeight();
+		boolean[] known = new boolean[width * height];
+		source.resample(frame.getBackPixels(), frame.getBackResults(), getColoring(), width, height, view.centerR, view.centerI, view.spanR, view.spanI,
+				getSettingsKey(), known, ticket);
+		if(ticket.isCancelled()){
+			return null;
+		}
+		frame.publish();
 		repaint();
+
+		//start the refined frame from the preview so that the reused pixels are already in place
+		frame.copyPublishedToBack();
+		return known;
+	}
+
+	/*returns the settings that change the result of a pixel, so that pixels are only reused from frames with the same
+	 * settings. The colors are left out as the reused results are colored again, and so is the Orbit Trap style when
+	 * every style is kept*/
+	private String getSettingsKey(){
+		FrameBuffer frame = frameBuffer;
+		String style = frame != null && useAllTrapStyles(frame.getWidth() * frame.getHeight()) ? "all" : String.valueOf(orbitOption);
+		return fractalType + "," + (isCustomFormula() ? formula.getText() + "," : "") + maxIterations + "," + orbitTrapEnabled + "," + style;
 	}
 
-	double trapSize;
-
-	/*calculates the Fractal display for each pixel on the BufferedImage for the selected fractal.
-	 * Creates Image of fractal on BufferedImage. Uses Orbit Trap Coloring method instead of Smooth Coloring*/
-	public void calculateOrbitTrapFractal(){
-		double x;
-		double y;
-		int iterations;
-
-		//Calculates row by row
-		for(int i = 0; i < height; i++){
-			//for each pixel in the row
-			for(int j = 0; j < width; j++){
-				iterations = 0;
-				
-				//convert pixel's position to point on complex plane
-				x = minR + j*(maxR - minR)/width;
-				y = maxI - i*(maxI - minI)/height;
-				
-				c = new Complex(x,y);
-				z = new Complex(0,0);
-
-				double dist = 0;
-				
-				/*count iterations until the distance of this complex point from the origin exceeds 2, the number of iterations
-				 *  reaches the max iterations limit or until the complex point is trapped by the Orbit Trap
-				 */
-				while(z.modulusSquared() < 4 && iterations < maxIterations && dist == 0){				
-					//Use method to calculate selected fractal type
-					switch (fractalType) {
-					case 0:  mandelbrot();
-					break;
-
-					case 1:  triplebrot();
-					break;
-
-					case 2:  burningShip();
-					break;
-
-					case 3:  birdOfPrey();
-					break;
+	/*returns the color settings for a render to use*/
+	private Coloring getColoring(){
+		return Coloring.create(red, green, blue, brightnessLevel, gradient, histogramColoring);
+	}
+
+	/*keeps a copy of a frame that has just been published so that the next zoom can be previewed from it*/
+	private void rememberFrame(FrameBuffer frame, BigDecimal centerR, BigDecimal centerI, FloatExp spanR, FloatExp spanI, String settings){
+		lastFrame = new FrameSnapshot(frame.getPublishedResults(), frame.getWidth(), frame.getHeight(), centerR, centerI, spanR, spanI, settings);
+	}
+
+	/*calculates the Fractal display for each pixel of the frame buffer for the selected fractal.
+	 * Creates Image of fractal in the frame buffer and shows it once finished.
+	 * The image is split into tiles which are calculated in parallel.
+	 * Pixels marked in known are left as they are. The frame is only shown if the ticket has not been cancelled*/
+	public void calculateMainFractal(FrameBuffer frame, View view, final boolean[] known, ResumeState resume, RenderScheduler.Ticket ticket){
+		//take a copy of the settings so that every tile renders the same frame
+		final int[] pixels = frame.getBackPixels();
+		final int width = frame.getWidth();
+		final int height = frame.getHeight();
+		final double minR = view.minR;
+		final double maxR = view.maxR;
+		final double minI = view.minI;
+		final double maxI = view.maxI;
+		final BigDecimal centerR = view.centerR;
+		final BigDecimal centerI = view.centerI;
+		final FloatExp spanR = view.spanR;
+		final FloatExp spanI = view.spanI;
+		final int maxIterations = this.maxIterations;
+		final int fractalType = this.fractalType;
+		final String settings = getSettingsKey();
+		final Coloring coloring = getColoring();
+		final IterationBuffer results = frame.getBackResults();
+
+		/*when only the iteration limit has been raised on the same view, the frame starts from the results of the last
+		 * frame and only the points that had not escaped are carried on*/
+		String resumeSettings = fractalType + (isCustomFormula() ? "," + formula.getText() : "");
+		final ResumeState previous = resume != null && resume.canResume(resumeSettings, minR, maxR, minI, maxI, width, height, maxIterations) ? resume : null;
+		final ResumeState next = new ResumeState(resumeSettings, minR, maxR, minI, maxI, width, height, maxIterations);
+		if(previous != null){
+			previous.copyResultsTo(results);
+		}
+		results.setMode(false, maxIterations, 0);
+		//shallow views are calculated with floats as a double is far more precise than the pixels need
+		final boolean useFloat = FloatKernel.useFloat(minR, maxR, minI, maxI, width, height);
+		final RowKernel kernel = isCustomFormula() ? RowKernel.forKernel(formula.createKernel(false, 0)) : RowKernel.getInstance();
+		//pixels that are the mirror image of another pixel are copied from it once the rest of the frame is calculated
+		final Symmetry symmetry = isCustomFormula() ? Symmetry.NONE : Symmetry.forMain(fractalType, -1, minR, maxR, minI, maxI, width, height);
+		//tiles with mirrored pixels are only cached once they have been copied
+		final int tilesX = (width + RenderEngine.TILE_SIZE - 1) / RenderEngine.TILE_SIZE;
+		final boolean[] unfinished = new boolean[tilesX * ((height + RenderEngine.TILE_SIZE - 1) / RenderEngine.TILE_SIZE)];
+
+		final RenderStatistics statistics = new RenderStatistics();
+		statistics.setKernel(kernel.describe(fractalType, useFloat));
+		if(previous != null){
+			statistics.setResumedIterations(previous.getMaxIterations());
+		}
+
+		RenderEngine.render(width, height, ticket, new RenderEngine.TileRenderer() {
+
+			@Override
+			public void renderTile(int startX, int startY, int endX, int endY) {
+				double x;
+				double y;
+				int iterations;
+				double[] state = new double[IterationKernel.STATE_SIZE];
+				RowKernel.Row row = kernel.createRow(endX - startX);
+				long calculated = 0;
+				long skipped = 0;
+				long pixelsCalculated = 0;
+
+				//tiles of a view that has been seen before are colored from the tile cache instead of being calculated again
+				TileCache.Tile place = TileCache.locate(settings, minR + startX*(maxR - minR)/width, maxI - startY*(maxI - minI)/height,
+						(maxR - minR)/width, (maxI - minI)/height, endX - startX, endY - startY);
+				float[] cached = TileCache.get(place);
+				if(cached != null){
+					results.setSmoothTile(startX, startY, endX, endY, width, cached);
+					for(int i = startY; i < endY; i++){
+						for(int j = startX; j < endX; j++){
+							pixels[i*width + j] = results.color(i*width + j, coloring);
+						}
+					}
+					statistics.addTile(true);
+					statistics.addPixels(0, (endX - startX) * (endY - startY));
+					return;
+				}
+				boolean complete = true;
+				//the points of the tile that do not escape are only kept if every pixel of the tile is calculated here
+				boolean everyPixel = true;
+				boolean mirrored = false;
+				ResumeState.Points unescaped = new ResumeState.Points();
+
+				//a tile carried on from the last frame keeps the results of the pixels that escaped, which only need
+				//coloring again for the new iteration limit
+				ResumeState.Points points = previous != null ? previous.getPoints(startX, startY) : null;
+				int start = 0;
+				int nextPoint = 0;
+				if(points != null){
+					start = previous.getMaxIterations();
+					for(int i = startY; i < endY; i++){
+						for(int j = startX; j < endX; j++){
+							pixels[i*width + j] = results.color(i*width + j, coloring);
+						}
+					}
+				}
+
+				//Calculates row by row
+				for(int i = startY; i < endY; i++){
+					//stop as soon as a newer render has been requested
+					if(ticket.isCancelled()){
+						complete = false;
+						break;
+					}
+
+					//collect the pixels of the row that need calculating
+					row.clear();
+					if(points != null){
+						//only the points that had not escaped are carried on, from the last z they reached
+						for(; nextPoint < points.getCount() && points.getPosition(nextPoint) < (i + 1)*width; nextPoint++){
+							pixelsCalculated++;
+							x = minR + (points.getPosition(nextPoint) - i*width)*(maxR - minR)/width;
+							y = maxI - i*(maxI - minI)/height;
+							row.add(points.getPosition(nextPoint), points.getReal(nextPoint), points.getImag(nextPoint), x, y);
+						}
+					}else{
+						for(int j = startX; j < endX; j++){
+							//skip pixels that are copied from their mirror image afterwards
+							if(symmetry.getSource(j, i) >= 0){
+								mirrored = true;
+								continue;
+							}
+							//skip pixels that have been reused from the last frame
+							if(known != null && known[i*width + j]){
+								everyPixel = false;
+								continue;
+							}
+							pixelsCalculated++;
+
+							//convert pixel's position to point on complex plane
+							x = minR + j*(maxR - minR)/width;
+							y = maxI - i*(maxI - minI)/height;
+
+							//points in the main cardioid and period 2 bulb of the Mandelbrot set never escape so are not iterated
+							if(fractalType == 0 && IterationKernel.inCardioidOrBulb(x, y)){
+								skipped += maxIterations;
+								results.setSmooth(i*width + j, 0);
+								pixels[i*width + j] = results.color(i*width + j, coloring);
+								continue;
+							}
+							row.add(i*width + j, 0, 0, x, y);
+						}
+					}
+
+					/*count iterations until the distance of each complex point from the origin exceeds 2 or the number of iterations
+					 *  reaches the max iterations limit. The whole row is iterated at once so that the kernel can use SIMD lanes
+					 */
+					kernel.escape(fractalType, useFloat, row, maxIterations - start);
+
+					for(int k = 0; k < row.getCount(); k++){
+						iterations = start + row.getResult(k, state);
+						skipped += (long) state[IterationKernel.SKIPPED];
+						calculated += iterations - start - (long) state[IterationKernel.SKIPPED];
+
+						/*converts the number of iterations taken to a smooth value, allowing for a smoother gradient with more colors
+						to be used. The value is kept so that the frame can be colored again without calculating it*/
+						results.setSmooth(row.positions[k], IterationKernel.smoothValue(iterations, maxIterations, state));
+
+						//write the pixel straight into the frame being rendered in the correct position and color
+						pixels[row.positions[k]] = results.color(row.positions[k], coloring);
+
+						//points that reached the limit without being found inside the set can be carried on later
+						if(iterations == maxIterations && state[IterationKernel.SKIPPED] == 0){
+							unescaped.add(row.positions[k], state[IterationKernel.REAL], state[IterationKernel.IMAG]);
+						}
 					}
-					
-					//Check if complex point is trapped by the Orbit Trap
-					dist = orbitTrap(orbitOption, iterations, dist);
+				}
+				statistics.addIterations(calculated, skipped);
+				statistics.addPixels(pixelsCalculated, (endX - startX) * (endY - startY));
+				statistics.addTile(false);
+
+				//only tiles that were calculated to the end are cached. Tiles partly reused from the last frame, such as while
+				//panning, are left out so that they do not fill the cache
+				//the last points of mirrored pixels are not known, so their tile is calculated again in full when the
+				//iteration limit is raised
+				if(complete && everyPixel && mirrored){
+					unfinished[(startY / RenderEngine.TILE_SIZE) * tilesX + startX / RenderEngine.TILE_SIZE] = true;
+				}else if(complete && everyPixel){
+					TileCache.put(place, results.getSmoothTile(startX, startY, endX, endY, width));
+					next.setPoints(startX, startY, unescaped);
+				}
+			}
+		});
+
+		statistics.setMirroredPixels(symmetry.mirror(pixels, results, coloring, ticket, new RenderEngine.TileRenderer() {
 
-					iterations++;
+			@Override
+			public void renderTile(int startX, int startY, int endX, int endY) {
+				if(unfinished[(startY / RenderEngine.TILE_SIZE) * tilesX + startX / RenderEngine.TILE_SIZE]){
+					TileCache.put(TileCache.locate(settings, minR + startX*(maxR - minR)/width, maxI - startY*(maxI - minI)/height,
+							(maxR - minR)/width, (maxI - minI)/height, endX - startX, endY - startY),
+							results.getSmoothTile(startX, startY, endX, endY, width));
 				}
-				
-				//draw the 	pixel to the bufferedImage in the correct position with the correct color
-				offScreenImage.setRGB(j, i, colorOrbitTrap(iterations, dist));
 			}
+		}));
+
+		//histogram coloring needs the result of every pixel before it can color any of them
+		results.finish(pixels, width, height, coloring, ticket);
+
+		//show the finished frame unless it has been replaced by a newer render
+		if(!ticket.isCancelled()){
+			frame.publish();
+			lastStatistics = statistics;
+			showStatistics(statistics);
+			rememberFrame(frame, centerR, centerI, spanR, spanI, settings);
+			repaint();
+
+			//keep the points that did not escape unless they take up too much memory
+			if(next.setResults(frame.getPublishedResults())){
+				resumeState = next;
+			}
+		}else{
+			//nothing new has been shown so the last frame can still be carried on
+			resumeState = resume;
 		}
-		repaint();
 	}
 
-	/*Checks whether the complex point is trapped within the orbit trap method that is being used and returns
-	 * the distance of the point from the origin. The distance from the origin is calculated so that a color gradient
-	 *  can be created.
-	 */
-	public double orbitTrap(int option, int count, double dist){
-		//elipse Orbit Trap. Creates large ring in the Complex Plane which is centered on origin
-		if(option == 0){
-			trapSize = 0.64;
-			if(Math.sqrt(z.modulusSquared()) < 0.65 && Math.sqrt(z.modulusSquared()) > 0.62){
-				dist = trapSize - Math.sqrt(z.modulusSquared()) + 0.4;
-				return Math.abs(dist);
+	/*calculates the Fractal display for the selected fractal using rectangle subdivision (Mariani-Silver). Each tile is
+	 * treated as a rectangle and only the pixels on its border are calculated. If every border pixel is inside the set
+	 * the whole rectangle must be inside the set, as the set is connected and has no holes, so it is filled without
+	 * calculating the pixels inside. Otherwise it is split into four and each part is done the same way.
+	 * Rectangles are only filled when the border is inside the set because the smooth coloring gives every escaped pixel
+	 * its own color. This gives the same image as calculateMainFractal apart from the odd pixel where a filament of
+	 * escaping points, thinner than a pixel, passes between two border pixels.
+	 * The frame is only shown if the ticket has not been cancelled*/
+	public void calculateSubdividedFractal(FrameBuffer frame, View view, RenderScheduler.Ticket ticket){
+		//take a copy of the settings so that every tile renders the same frame
+		final int[] pixels = frame.getBackPixels();
+		final int width = frame.getWidth();
+		final int height = frame.getHeight();
+		final double minR = view.minR;
+		final double maxR = view.maxR;
+		final double minI = view.minI;
+		final double maxI = view.maxI;
+		final BigDecimal centerR = view.centerR;
+		final BigDecimal centerI = view.centerI;
+		final FloatExp spanR = view.spanR;
+		final FloatExp spanI = view.spanI;
+		final int maxIterations = this.maxIterations;
+		final int fractalType = this.fractalType;
+		final String settings = getSettingsKey();
+		final Coloring coloring = getColoring();
+		final IterationBuffer results = frame.getBackResults();
+		results.setMode(false, maxIterations, 0);
+		final FractalKernel kernel = FractalKernel.create(fractalType, false, 0);
+		final RenderStatistics statistics = new RenderStatistics();
+
+		RenderEngine.render(width, height, ticket, new RenderEngine.TileRenderer() {
+
+			@Override
+			public void renderTile(int startX, int startY, int endX, int endY) {
+				SubdivisionTile tile = new SubdivisionTile(pixels, results, width, height, startX, startY, endX, endY,
+						minR, maxR, minI, maxI, maxIterations, fractalType, kernel, coloring, ticket);
+				tile.subdivide(startX, startY, endX - 1, endY - 1);
+				statistics.addIterations(tile.calculated, tile.skipped);
+				statistics.addPixels(tile.pixelsCalculated, (endX - startX) * (endY - startY));
 			}
+		});
+
+		//histogram coloring needs the result of every pixel before it can color any of them
+		results.finish(pixels, width, height, coloring, ticket);
+
+		//show the finished frame unless it has been replaced by a newer render
+		if(!ticket.isCancelled()){
+			frame.publish();
+			lastStatistics = statistics;
+			showStatistics(statistics);
+			rememberFrame(frame, centerR, centerI, spanR, spanI, settings);
+			repaint();
 		}
+	}
 
-		//circle Orbit Trap. Creates large circle in the Complex Plane which is centered on origin
-		if(option == 1){
-			trapSize = 0.25;
-			if(Math.sqrt(z.modulusSquared()) < 0.25){
-				dist = trapSize - Math.sqrt(z.modulusSquared());
-				return dist;
-			}
+	/*centre and size of a view. The centre is kept in high precision and the size as a FloatExp so that zooms can go
+	 * deeper than a double allows, the bounds are worked out from them for the double precision calculations.
+	 * A view is never changed once made, so a render thread can use it while the event thread moves on to the next one*/
+	static class View {
+		final BigDecimal centerR;
+		final BigDecimal centerI;
+		final FloatExp spanR;
+		final FloatExp spanI;
+		final double minR;
+		final double maxR;
+		final double minI;
+		final double maxI;
+
+		View(BigDecimal centerR, BigDecimal centerI, FloatExp spanR, FloatExp spanI){
+			this.centerR = centerR;
+			this.centerI = centerI;
+			this.spanR = spanR;
+			this.spanI = spanI;
+			minR = centerR.doubleValue() - (spanR.toDouble() / 2);
+			maxR = minR + spanR.toDouble();
+			maxI = centerI.doubleValue() + (spanI.toDouble() / 2);
+			minI = maxI - spanI.toDouble();
 		}
+	}
 
-		//dots Orbit Trap. Creates small circle in the Complex Plane which is centered on the origin
-		if(option == 2){
-			trapSize = 0.05;
-			if(Math.sqrt(z.modulusSquared()) < 0.05){
-				dist = trapSize - Math.sqrt(z.modulusSquared());
-				return dist;
-			}
+	/*Rectangle subdivision of one tile. Remembers the iteration count of every pixel that has been calculated so that
+	 * the borders shared by neighbouring rectangles are only calculated once*/
+	class SubdivisionTile {
+		//rectangles smaller than this are calculated pixel by pixel
+		private static final int MIN_SIZE = 4;
+
+		private final int[] pixels;
+		private final IterationBuffer results;
+		private final int width;
+		private final int height;
+		private final int startX;
+		private final int startY;
+		private final int tileWidth;
+		private final int[] counts;
+		private final double minR;
+		private final double maxR;
+		private final double minI;
+		private final double maxI;
+		private final int maxIterations;
+		private final int fractalType;
+		private final FractalKernel kernel;
+		private final Coloring coloring;
+		private final RenderScheduler.Ticket ticket;
+		private final double[] state = new double[IterationKernel.STATE_SIZE];
+		private final int interiorColor;
+		long calculated;
+		long skipped;
+		long pixelsCalculated;
+
+		SubdivisionTile(int[] pixels, IterationBuffer results, int width, int height, int startX, int startY, int endX, int endY, double minR, double maxR,
+				double minI, double maxI, int maxIterations, int fractalType, FractalKernel kernel, Coloring coloring, RenderScheduler.Ticket ticket){
+			this.pixels = pixels;
+			this.results = results;
+			this.width = width;
+			this.height = height;
+			this.startX = startX;
+			this.startY = startY;
+			this.tileWidth = endX - startX;
+			this.minR = minR;
+			this.maxR = maxR;
+			this.minI = minI;
+			this.maxI = maxI;
+			this.maxIterations = maxIterations;
+			this.fractalType = fractalType;
+			this.kernel = kernel;
+			this.coloring = coloring;
+			this.ticket = ticket;
+			interiorColor = coloring.colorFractal(0, maxIterations);
+
+			//-1 marks a pixel that has not been calculated yet
+			counts = new int[tileWidth * (endY - startY)];
+			Arrays.fill(counts, -1);
 		}
 
-		//rings Orbit Trap. creates a small ring in the Complex Plane which is cenetered on the origin
-		if(option == 3){
-			trapSize = 0.195;
-			if(Math.sqrt(z.modulusSquared()) < 0.20 && Math.sqrt(z.modulusSquared()) > 0.19){
-				dist = trapSize - Math.sqrt(z.modulusSquared()) + 0.2;
-				return Math.abs(dist);
+		/*processes the rectangle from (left, top) to (right, bottom), both corners included*/
+		void subdivide(int left, int top, int right, int bottom){
+			if(ticket.isCancelled()){
+				return;
 			}
-		}
 
-		//lines Orbit Trap. Creates a vertical and horizontal line of the Complex Plane, through the origin
-		if(option == 4){
-			trapSize = 0.01;
-			if(Math.abs(z.getReal()) < 0.01){
-				dist = trapSize - Math.abs(z.getReal());
-				return dist;
+			//calculate small rectangles pixel by pixel
+			if(right - left < MIN_SIZE || bottom - top < MIN_SIZE){
+				for(int i = top; i <= bottom; i++){
+					for(int j = left; j <= right; j++){
+						calculate(j, i);
+					}
+				}
+				return;
 			}
-			if(Math.abs(z.getImag()) < 0.01){
-				dist = trapSize - Math.abs(z.getImag());
-				return dist;
+
+			//calculate the border and check whether all of it is inside the set
+			boolean interior = true;
+			for(int j = left; j <= right; j++){
+				interior &= calculate(j, top) == maxIterations;
+				interior &= calculate(j, bottom) == maxIterations;
 			}
+			for(int i = top + 1; i < bottom; i++){
+				interior &= calculate(left, i) == maxIterations;
+				interior &= calculate(right, i) == maxIterations;
+			}
+
+			if(interior){
+				//fill the inside of the rectangle without calculating it
+				for(int i = top + 1; i < bottom; i++){
+					for(int j = left + 1; j < right; j++){
+						counts[(i - startY) * tileWidth + (j - startX)] = maxIterations;
+						results.setSmooth(i*width + j, 0);
+						pixels[i*width + j] = interiorColor;
+					}
+				}
+				return;
+			}
+
+			//split into four rectangles which share their inner borders
+			int middleX = (left + right) >>> 1;
+			int middleY = (top + bottom) >>> 1;
+			subdivide(left, top, middleX, middleY);
+			subdivide(middleX, top, right, middleY);
+			subdivide(left, middleY, middleX, bottom);
+			subdivide(middleX, middleY, right, bottom);
 		}
-		
-		/*Gaussian Integer algorithim. Calculates the distance of the Complex point from the nearest Guassian Integer and uses
-		 * this value to color the point.
-		 * NOTE: This algorithm is quite slow. I don't recommend zooming in too much.
-		 */
-		if(option == 5){
-			double downR = Math.floor(z.getReal());
-			double downI = Math.floor(z.getImag());
-			double upR = Math.ceil(z.getReal());
-			double upI = Math.ceil(z.getImag());
-
-			Complex low = new Complex(Math.abs(z.getReal() - downR), Math.abs(z.getImag() - downI));
-			Complex high = new Complex(Math.abs(z.getReal() - upR), Math.abs(z.getImag() - upI));
-			
-			double nearestDistance = Math.min(low.modulusSquared(), high.modulusSquared());
-			
-			trapSize = 0.01;
-			if(nearestDistance < 0.01 && nearestDistance > 0.0025){
-				dist = trapSize - nearestDistance;
-				//System.out.println(nearestDistance);
-				return Math.abs(dist);
+
+		/*calculates and colors one pixel unless it has already been calculated. Returns its iteration count*/
+		int calculate(int j, int i){
+			int index = (i - startY) * tileWidth + (j - startX);
+			if(counts[index] >= 0){
+				return counts[index];
+			}
+
+			//convert pixel's position to point on complex plane
+			double x = minR + j*(maxR - minR)/width;
+			double y = maxI - i*(maxI - minI)/height;
+			int iterations;
+			pixelsCalculated++;
+
+			//points in the main cardioid and period 2 bulb of the Mandelbrot set never escape so are not iterated
+			if(fractalType == 0 && IterationKernel.inCardioidOrBulb(x, y)){
+				skipped += maxIterations;
+				iterations = maxIterations;
+				results.setSmooth(i*width + j, 0);
+				pixels[i*width + j] = interiorColor;
+			}else{
+				iterations = kernel.iterate(0, 0, x, y, maxIterations, state);
+				skipped += (long) state[IterationKernel.SKIPPED];
+				calculated += iterations - (long) state[IterationKernel.SKIPPED];
+				kernel.store(iterations, maxIterations, state, results, i*width + j);
+				pixels[i*width + j] = results.color(i*width + j, coloring);
 			}
+
+			counts[index] = iterations;
+			return iterations;
 		}
-		
-		//sine wave Orbit Trap. Creates a sine wave on the Complex Plane. Transformed to be half as wide.
-		if(option == 6){
-			trapSize = 1.9;
-			//limit domain between -1.8 and 1.8
-			if(z.getReal() < 1.8 && z.getReal() > -1.8){
-				if(z.getImag() < Math.sin(z.getReal()*2) && z.getImag() > Math.sin(z.getReal()*2) - 0.015){
-					dist = trapSize - Math.sqrt(z.modulusSquared());
-					return Math.abs(dist);
+	}
+
+	/*calculates the Fractal display for each pixel of the frame buffer for the selected fractal.
+	 * Creates Image of fractal in the frame buffer and shows it once finished. Uses Orbit Trap Coloring method instead of Smooth Coloring.
+	 * Pixels marked in known are left as they are. The frame is only shown if the ticket has not been cancelled*/
+	public void calculateOrbitTrapFractal(FrameBuffer frame, View view, final boolean[] known, RenderScheduler.Ticket ticket){
+		//take a copy of the settings so that every tile renders the same frame
+		final int[] pixels = frame.getBackPixels();
+		final int width = frame.getWidth();
+		final int height = frame.getHeight();
+		final double minR = view.minR;
+		final double maxR = view.maxR;
+		final double minI = view.minI;
+		final double maxI = view.maxI;
+		final BigDecimal centerR = view.centerR;
+		final BigDecimal centerI = view.centerI;
+		final FloatExp spanR = view.spanR;
+		final FloatExp spanI = view.spanI;
+		final int maxIterations = this.maxIterations;
+		final int fractalType = this.fractalType;
+		final String settings = getSettingsKey();
+		final Coloring coloring = getColoring();
+		final IterationBuffer results = frame.getBackResults();
+		//the fractal type and Orbit Trap are chosen once for the whole render
+		final FractalKernel kernel;
+		final int stateSize;
+		final Symmetry symmetry;
+		if(useAllTrapStyles(width * height)){
+			results.setAllTrapsMode(maxIterations, orbitOption);
+			kernel = FractalKernel.createAllTraps(fractalType);
+			stateSize = IterationKernel.ALL_TRAPS_STATE_SIZE;
+			symmetry = isCustomFormula() ? Symmetry.NONE : Symmetry.forMain(fractalType, IterationKernel.TRAP_STYLES, minR, maxR, minI, maxI, width, height);
+		}else{
+			results.setMode(true, maxIterations, IterationKernel.getTrapSize(orbitOption));
+			kernel = FractalKernel.create(fractalType, formula, true, orbitOption);
+			stateSize = IterationKernel.STATE_SIZE;
+			symmetry = isCustomFormula() ? Symmetry.NONE : Symmetry.forMain(fractalType, orbitOption, minR, maxR, minI, maxI, width, height);
+		}
+
+		final RenderStatistics statistics = new RenderStatistics();
+
+		RenderEngine.render(width, height, ticket, new RenderEngine.TileRenderer() {
+
+			@Override
+			public void renderTile(int startX, int startY, int endX, int endY) {
+				double x;
+				double y;
+				int iterations;
+				double[] state = new double[stateSize];
+				long calculated = 0;
+				long skipped = 0;
+				long pixelsCalculated = 0;
+
+				//Calculates row by row
+				for(int i = startY; i < endY; i++){
+					//stop as soon as a newer render has been requested
+					if(ticket.isCancelled()){
+						break;
+					}
+
+					//for each pixel in the row
+					for(int j = startX; j < endX; j++){
+						//skip pixels that are copied from their mirror image afterwards, and pixels that have been reused
+						//from the last frame
+						if(symmetry.getSource(j, i) >= 0 || (known != null && known[i*width + j])){
+							continue;
+						}
+						pixelsCalculated++;
+
+						//convert pixel's position to point on complex plane
+						x = minR + j*(maxR - minR)/width;
+						y = maxI - i*(maxI - minI)/height;
+
+						/*count iterations until the distance of this complex point from the origin exceeds 2, the number of iterations
+						 *  reaches the max iterations limit or until the complex point is trapped by the Orbit Trap
+						 */
+						iterations = kernel.iterate(0, 0, x, y, maxIterations, state);
+						skipped += (long) state[IterationKernel.SKIPPED];
+						calculated += iterations - (long) state[IterationKernel.SKIPPED];
+
+						//write the pixel straight into the frame being rendered in the correct position with the correct color
+						kernel.store(iterations, maxIterations, state, results, i*width + j);
+						pixels[i*width + j] = results.color(i*width + j, coloring);
+					}
 				}
+				statistics.addIterations(calculated, skipped);
+				statistics.addPixels(pixelsCalculated, (endX - startX) * (endY - startY));
 			}
+		});
+
+		statistics.setMirroredPixels(symmetry.mirror(pixels, results, coloring, ticket, null));
+		statistics.setTrapMemory(frame.getAllTrapsMemory());
+
+		//show the finished frame unless it has been replaced by a newer render
+		if(!ticket.isCancelled()){
+			frame.publish();
+			lastStatistics = statistics;
+			showStatistics(statistics);
+			rememberFrame(frame, centerR, centerI, spanR, spanI, settings);
+			repaint();
 		}
-		
-		//cos wave Orbit Trap. Creates a cos wave on the Complex Plane. Transformed to be half as wide.
-		if(option == 7){
-			trapSize = 2.1;
-			//limit domain between -1.8 and 1.8
-			if(z.getReal() < 1.8 && z.getReal() > -1.8){
-				if(z.getImag() < Math.cos(z.getReal()*2) && z.getImag() > Math.cos(z.getReal()*2) - 0.015){
-					dist = trapSize - Math.sqrt(z.modulusSquared());
-					//System.out.println(Math.abs(Math.sqrt(z.modulusSquared())));
-					return Math.abs(dist);
+	}
+
+	/*calculates a zoom that is too deep for a double but not deep enough to need perturbation, with every pixel iterated
+	 * in double-double precision (see DoubleDoubleKernel). The centre of the view is split into a high and low double and
+	 * the offset of each pixel from it is added exactly, so the pixels stay evenly spaced however far in the view is.
+	 * Works with both Smooth Coloring and Orbit Traps.
+	 * Pixels marked in known are left as they are. The frame is only shown if the ticket has not been cancelled*/
+	public void calculateDoubleDoubleFractal(FrameBuffer frame, View view, final boolean[] known, RenderScheduler.Ticket ticket){
+		//take a copy of the settings so that every tile renders the same frame
+		final int[] pixels = frame.getBackPixels();
+		final int width = frame.getWidth();
+		final int height = frame.getHeight();
+		final BigDecimal centerR = view.centerR;
+		final BigDecimal centerI = view.centerI;
+		final FloatExp spanR = view.spanR;
+		final FloatExp spanI = view.spanI;
+		final double spacingR = spanR.toDouble() / width;
+		final double spacingI = spanI.toDouble() / height;
+		final int maxIterations = this.maxIterations;
+		final int fractalType = this.fractalType;
+		final boolean orbitTrapEnabled = this.orbitTrapEnabled;
+		final int orbitOption = this.orbitOption;
+		final String settings = getSettingsKey();
+		final Coloring coloring = getColoring();
+		final IterationBuffer results = frame.getBackResults();
+		results.setMode(orbitTrapEnabled, maxIterations, IterationKernel.getTrapSize(orbitOption));
+
+		//the centre as a double-double, the high part and what is left over of the exact value
+		final double centerHighR = centerR.doubleValue();
+		final double centerLowR = centerR.subtract(new BigDecimal(centerHighR)).doubleValue();
+		final double centerHighI = centerI.doubleValue();
+		final double centerLowI = centerI.subtract(new BigDecimal(centerHighI)).doubleValue();
+
+		final RenderStatistics statistics = new RenderStatistics();
+
+		RenderEngine.render(width, height, ticket, new RenderEngine.TileRenderer() {
+
+			@Override
+			public void renderTile(int startX, int startY, int endX, int endY) {
+				double offset;
+				double xHigh;
+				double xLow;
+				double yHigh;
+				double yLow;
+				int iterations;
+				double[] state = new double[IterationKernel.STATE_SIZE];
+				double[] work = new double[DoubleDoubleKernel.WORK_SIZE];
+				long calculated = 0;
+				long skipped = 0;
+				long pixelsCalculated = 0;
+
+				//Calculates row by row
+				for(int i = startY; i < endY; i++){
+					//stop as soon as a newer render has been requested
+					if(ticket.isCancelled()){
+						break;
+					}
+
+					offset = (height*0.5 - i)*spacingI;
+					yHigh = centerHighI + offset;
+					yLow = DoubleDoubleKernel.sumError(centerHighI, offset, yHigh) + centerLowI;
+
+					//for each pixel in the row
+					for(int j = startX; j < endX; j++){
+						//skip pixels that have been reused from the last frame
+						if(known != null && known[i*width + j]){
+							continue;
+						}
+						pixelsCalculated++;
+
+						//convert pixel's position to point on complex plane
+						offset = (j - width*0.5)*spacingR;
+						xHigh = centerHighR + offset;
+						xLow = DoubleDoubleKernel.sumError(centerHighR, offset, xHigh) + centerLowR;
+
+						if(orbitTrapEnabled){
+							iterations = DoubleDoubleKernel.trap(fractalType, orbitOption, 0, 0, 0, 0, xHigh, xLow, yHigh, yLow, maxIterations, work, state);
+							results.setTrap(i*width + j, iterations, state[IterationKernel.DIST]);
+						}else{
+							iterations = DoubleDoubleKernel.escape(fractalType, 0, 0, 0, 0, xHigh, xLow, yHigh, yLow, maxIterations, work, state);
+							results.setSmooth(i*width + j, IterationKernel.smoothValue(iterations, maxIterations, state));
+						}
+						pixels[i*width + j] = results.color(i*width + j, coloring);
+						skipped += (long) state[IterationKernel.SKIPPED];
+						calculated += iterations - (long) state[IterationKernel.SKIPPED];
+					}
 				}
+				statistics.addIterations(calculated, skipped);
+				statistics.addPixels(pixelsCalculated, (endX - startX) * (endY - startY));
 			}
+		});
+
+		//histogram coloring needs the result of every pixel before it can color any of them
+		results.finish(pixels, width, height, coloring, ticket);
+
+		//show the finished frame unless it has been replaced by a newer render
+		if(!ticket.isCancelled()){
+			frame.publish();
+			lastStatistics = statistics;
+			showStatistics(statistics);
+			rememberFrame(frame, centerR, centerI, spanR, spanI, settings);
+			repaint();
 		}
-		
-		/*Flower Orbit Trap. Creates four parabolas in opposing directions and limits the range/domain so that the parabolas
-		 *  stop when they intersect. Uses Quadratic Equations.
-		 */
-		if(option == 8){
-			//limit range to -1.0 and 1.0
-			if(z.getImag() < 1.0 && z.getImag() > -1.0){
-				trapSize = 1.0;
-				if(z.getImag() < (z.getReal()*z.getReal()) && z.getImag() > (z.getReal()*z.getReal()) - 0.015){
-					dist = trapSize - Math.sqrt(z.modulusSquared());
-					return Math.abs(dist);
-				}
+	}
 
-				if(z.getImag() < -(z.getReal()*z.getReal()) && z.getImag() > -(z.getReal()*z.getReal()) - 0.015){
-					dist = trapSize - Math.sqrt(z.modulusSquared());
-					return Math.abs(dist);
+	/*calculates a deep zoom of the selected fractal with perturbation. The orbit of the centre of the view is calculated in
+	 * high precision and every pixel is iterated as a small difference from it in double precision (see PerturbationKernel).
+	 * Pixels that glitch are calculated again with a new reference orbit at the pixel that glitched worst, until no
+	 * pixels are left or the limit of references is reached. Works with both Smooth Coloring and Orbit Traps.
+	 * Pixels marked in known are left as they are. The frame is only shown if the ticket has not been cancelled*/
+	public void calculateDeepZoomFractal(FrameBuffer frame, View view, boolean[] known, RenderScheduler.Ticket ticket){
+		//take a copy of the settings so that every tile renders the same frame
+		final int[] pixels = frame.getBackPixels();
+		final int width = frame.getWidth();
+		final int height = frame.getHeight();
+		final BigDecimal centerR = view.centerR;
+		final BigDecimal centerI = view.centerI;
+		final FloatExp spanR = view.spanR;
+		final FloatExp spanI = view.spanI;
+		final FloatExp spacingR = spanR.divide(width);
+		final FloatExp spacingI = spanI.divide(height);
+		final int maxIterations = this.maxIterations;
+		final int fractalType = this.fractalType;
+		final boolean orbitTrapEnabled = this.orbitTrapEnabled;
+		final int orbitOption = this.orbitOption;
+		final String settings = getSettingsKey();
+		final Coloring coloring = getColoring();
+		final IterationBuffer results = frame.getBackResults();
+		results.setMode(orbitTrapEnabled, maxIterations, IterationKernel.getTrapSize(orbitOption));
+		final int decimalPlaces = PerturbationKernel.getDecimalPlaces(FloatExp.min(spacingR, spacingI));
+		//offsets of pixels smaller than a double can hold are kept as FloatExp, otherwise doubles are used as they are faster
+		final boolean extended = FloatExp.min(spacingR, spacingI).toDouble() < PerturbationKernel.EXTENDED_SPACING;
+		final double doubleSpacingR = spacingR.toDouble();
+		final double doubleSpacingI = spacingI.toDouble();
+
+		final RenderStatistics statistics = new RenderStatistics();
+
+		/*how close each glitched pixel came to 0 relative to the reference. Pixels that are still to be calculated
+		 * are 0 or more and pixels that are finished are -1*/
+		final float[] glitches = new float[width * height];
+		if(known != null){
+			for(int i = 0; i < glitches.length; i++){
+				if(known[i]){
+					glitches[i] = -1;
 				}
 			}
-			
-			//limit domain to -1.0 and 1.0
-			if(z.getReal() < 1.0 && z.getReal() > -1.0){
-				trapSize = 1.0;
-				if(z.getReal() < (z.getImag()*z.getImag()) && z.getReal() > (z.getImag()*z.getImag()) - 0.015){
-					dist = trapSize - Math.sqrt(z.modulusSquared());
-					return Math.abs(dist);
+		}
+
+		//the first reference is the centre of the view, later ones are offset from it
+		FloatExp referenceR = FloatExp.ZERO;
+		FloatExp referenceI = FloatExp.ZERO;
+
+		for(int references = 1; references <= PerturbationKernel.MAX_REFERENCES; references++){
+			final ReferenceOrbit reference = new ReferenceOrbit(fractalType, centerR.add(referenceR.toBigDecimal()),
+					centerI.add(referenceI.toBigDecimal()), maxIterations, decimalPlaces, ticket);
+			final FloatExp offsetR = referenceR;
+			final FloatExp offsetI = referenceI;
+			final double doubleOffsetR = referenceR.toDouble();
+			final double doubleOffsetI = referenceI.toDouble();
+			final boolean detectGlitches = references < PerturbationKernel.MAX_REFERENCES;
+			statistics.addReferenceOrbit();
+
+			RenderEngine.render(width, height, ticket, new RenderEngine.TileRenderer() {
+
+				@Override
+				public void renderTile(int startX, int startY, int endX, int endY) {
+					double dcr = 0;
+					double dci = 0;
+					FloatExp extendedR;
+					FloatExp extendedI = FloatExp.ZERO;
+					int iterations;
+					double[] state = new double[IterationKernel.STATE_SIZE];
+					long calculated = 0;
+					long skipped = 0;
+					long pixelsCalculated = 0;
+
+					//Calculates row by row
+					for(int i = startY; i < endY; i++){
+						//stop as soon as a newer render has been requested
+						if(ticket.isCancelled()){
+							break;
+						}
+
+						//offset of the row from the reference point
+						if(extended){
+							extendedI = spacingI.multiply((height * 0.5) - i).subtract(offsetI);
+						}else{
+							dci = ((height * 0.5) - i) * doubleSpacingI - doubleOffsetI;
+						}
+
+						for(int j = startX; j < endX; j++){
+							//skip pixels that are finished
+							if(glitches[i*width + j] < 0){
+								continue;
+							}
+							pixelsCalculated++;
+
+							//offset of the pixel from the reference point
+							if(extended){
+								extendedR = spacingR.multiply(j - (width * 0.5)).subtract(offsetR);
+								if(orbitTrapEnabled){
+									iterations = PerturbationKernel.trap(fractalType, orbitOption, reference, extendedR, extendedI, maxIterations, detectGlitches, state);
+								}else{
+									iterations = PerturbationKernel.escape(fractalType, reference, extendedR, extendedI, maxIterations, detectGlitches, state);
+								}
+							}else{
+								dcr = (j - (width * 0.5)) * doubleSpacingR - doubleOffsetR;
+								if(orbitTrapEnabled){
+									iterations = PerturbationKernel.trap(fractalType, orbitOption, reference, dcr, dci, maxIterations, detectGlitches, state);
+								}else{
+									iterations = PerturbationKernel.escape(fractalType, reference, dcr, dci, maxIterations, detectGlitches, state);
+								}
+							}
+
+							//leave glitched pixels to be calculated again with the next reference
+							if(iterations == PerturbationKernel.GLITCHED){
+								glitches[i*width + j] = (float) state[PerturbationKernel.GLITCH_RATIO];
+								continue;
+							}
+							glitches[i*width + j] = -1;
+							skipped += (long) state[IterationKernel.SKIPPED];
+							calculated += iterations - (long) state[IterationKernel.SKIPPED];
+
+							//write the pixel straight into the frame being rendered in the correct position and color
+							if(orbitTrapEnabled){
+								results.setTrap(i*width + j, iterations, state[IterationKernel.DIST]);
+							}else{
+								results.setSmooth(i*width + j, IterationKernel.smoothValue(iterations, maxIterations, state));
+							}
+							pixels[i*width + j] = results.color(i*width + j, coloring);
+						}
+					}
+					statistics.addIterations(calculated, skipped);
+					statistics.addPixels(pixelsCalculated, 0);
 				}
+			});
+
+			if(ticket.isCancelled()){
+				return;
+			}
 
-				if(z.getReal() < -(z.getImag()*z.getImag()) && z.getReal() > -(z.getImag()*z.getImag()) - 0.015){
-					dist = trapSize - Math.sqrt(z.modulusSquared());
-					return Math.abs(dist);
+			//the next reference is the pixel that came closest to 0 relative to the reference
+			int worst = -1;
+			for(int i = 0; i < glitches.length; i++){
+				if(glitches[i] >= 0 && (worst < 0 || glitches[i] < glitches[worst])){
+					worst = i;
 				}
 			}
-		}
-		
-		//Petal Orbit Trap. Uses both sin and cos waves to creates images on the complex plane which vaguely resemble petals of a flower
-		if(option == 9){
-			trapSize = 5.5;
-			if(z.getImag() < Math.sin(z.getReal()) && z.getImag() > Math.cos(z.getReal() - 0.5)){
-				dist = trapSize - Math.sqrt(z.modulusSquared());
-				return Math.abs(dist);
+			if(worst < 0){
+				break;
 			}
+			referenceR = spacingR.multiply((worst % width) - (width * 0.5));
+			referenceI = spacingI.multiply((height * 0.5) - (worst / width));
 		}
 
-		return dist;
-	}
-	
-	/*color the current pixel depending on the smooth value calculated from the number of iterations taken*/
-	public int colorFractal(float interval){		
-		Color color = new Color(0,0,0);
-		
-		//calulate RGB value for red, green and blue parts. Limited to 255 as some calculations create numbers greater than 255
-		int calcRed = Math.min((int)(interval/maxIterations * red), 255);
-		int calcGreen = Math.min((int)(interval/maxIterations * green), 255);
-		int calcBlue = Math.min((int)(interval/maxIterations * blue), 255);
-
-		//construct RGB Color with calculated red, green and blue values
-		color = new Color(calcRed, calcGreen, calcBlue);
-
-		//brightens the color depending on brightness level selected.
-		for(int i = 0; i < brightnessLevel; i++){
-			color = color.brighter();
+		//histogram coloring needs the result of every pixel before it can color any of them
+		results.finish(pixels, width, height, coloring, ticket);
+
+		//show the finished frame unless it has been replaced by a newer render
+		statistics.addPixels(0, width * height);
+		if(!ticket.isCancelled()){
+			frame.publish();
+			lastStatistics = statistics;
+			showStatistics(statistics);
+			rememberFrame(frame, centerR, centerI, spanR, spanI, settings);
+			repaint();
 		}
-		
-		int finalColor = color.getRGB();
-		
-		return finalColor;
-	}
-
-	/*Color the current pixel depending on the result of the Orbit Trap.
-	 * Uses region splits to color three groups of traps three specific colors. 
-	 */
-	public int colorOrbitTrap(int count, double dist){
-		Color color = new Color(0,0,0);
-		
-		//RGB values for first oolor
-		int oRed = Math.min((int)(dist/trapSize*255), 255);
-		int oGreen = 0;
-		int oBlue = 0;
-		
-		//color with this color if the number of iterations taken is even
-		if(count%2 == 0)
-			color = new Color(oRed,oGreen,oBlue);
-		
-		//RGB values for second color
-		oRed = Math.min((int)(dist/trapSize*255), 255);
-		oGreen = Math.min((int)(dist/trapSize*153), 255);
-		
-		//color with this color if the number of iterations taken is odd
-		if(count%2 == 1)
-			color = new Color(oRed,oGreen,oBlue);
-
-		//RGB values for third color
-		oRed = Math.min((int)(dist/trapSize*255), 255);
-		oGreen = Math.min((int)(dist/trapSize*204), 255);
-		oBlue = Math.min((int)(dist/trapSize*184), 255);
-		
-		//color with this color if the number of iterations taken is a multiple of 3
-		if(count%3 == 0)
-			color = new Color(oRed,oGreen,oBlue);
-		
-		int finalColor = color.getRGB();
-		
-		return finalColor;
-	}
-
-	/*calculates Mandelbrot fractal*/
-	public void mandelbrot(){
-		Complex tmp = new Complex(0,0);
-		double nextReal;
-		double nextImag;
-
-		tmp = z.square();
-		tmp = tmp.add(c);	
-		nextReal = tmp.getReal();
-		nextImag = tmp.getImag();
-		z = new Complex(nextReal,nextImag);
-	}
-	
-	/*calculates Triplebrot fractal*/
-	public void triplebrot(){
-		Complex tmp = new Complex(0,0);
-		double nextReal;
-		double nextImag;
-
-		tmp = z.square();
-		tmp = tmp.square();
-		tmp = tmp.add(c);	
-		nextReal = tmp.getReal();
-		nextImag = tmp.getImag();
-		z = new Complex(nextReal,nextImag);
-	}
-
-	/*calculates Burning Ship fractal. The formulae used is changed so that the fractal
-	 * is flipped vertically so that the burning ship is "upright"*/
-	public void burningShip(){
-		Complex tmp;
-		double nextReal;
-		double nextImag;
-
-		tmp = z.absSquare();
-		tmp = new Complex(tmp.getReal() + c.getReal(),tmp.getImag() - c.getImag());	
-		nextReal = tmp.getReal();
-		nextImag = tmp.getImag();
-		z = new Complex(nextReal,nextImag);
-	}
-	
-	/*Calculates Bird Of Prey fractal*/
-	public void birdOfPrey(){
-		Complex tmp;
-		double nextReal;
-		double nextImag;
-
-		tmp = z.cube();
-		tmp = tmp.add(c);	
-		nextReal = tmp.getReal();
-		nextImag = tmp.getImag();
-		z = new Complex(nextReal,nextImag);
 	}
 
-	/*Draws the BufferedImage and drag box when needed*/
+	/*Draws the latest finished frame and drag box when needed. Never waits for a render that is in progress*/
 	public void paintComponent(Graphics g){
 		super.paintComponent(g);	
 
-		//draws the BufferedImage and the zoom box over the image if the user is dragging with the mouse
+		//nothing to draw until the panel has been given its size
+		FrameBuffer frame = frameBuffer;
+		if(frame == null){
+			return;
+		}
+
+		//draw the palette cycle instead of the frame while the colors are being cycled
+		BufferedImage cycle = paletteCycle.getImage();
+		BufferedImage image = cycle != null ? cycle : frame.getFrontImage();
+
+		//draws the frame and the zoom box over the image if the user is dragging with the mouse
 		if(zoomMode){
-			g.drawImage(offScreenImage, 0, 0, this);
+			g.drawImage(image, 0, 0, this);
 			g.setColor(new Color(0,0,255));
 
 			Graphics2D g2 = (Graphics2D)g;
 			g2.draw(dragBox);
 		}else{
 			
-			//just draw the BufferedImage if the user is not dragging with the mouse
-			g.drawImage(offScreenImage, 0, 0, this);	
+			//just draw the frame if the user is not dragging with the mouse
+			g.drawImage(image, 0, 0, this);
 		}
 
 		zoomMode = false;
 	}
 
 	class MainFractalMouseListener extends MouseInputAdapter{
-		double newMinR;
-		double newMaxR;
-		double newMinI;
-		double newMaxI; 
+		BigDecimal newCenterR;
+		BigDecimal newCenterI;
+		FloatExp newSpanR;
+		FloatExp newSpanI;
+		//view when the button was pressed, where the mouse was when the view was last panned while dragging with the
+		//right button, and whether it has been panned since the button was pressed
+		View panStart;
+		int panX;
+		int panY;
+		boolean panned;
 
 		@Override
 		//get the x and y coordinates of the mouse when pressed
 		public void mousePressed(MouseEvent e) {
 			startingX = e.getX();
 			startingY = e.getY();
+			panStart = view;
+			panX = e.getX();
+			panY = e.getY();
+			panned = false;
 		}
 
 		@Override
 		public void mouseReleased(MouseEvent e) {	
+			//dragging with the right button pans the view, which has already been rendered
+			if(e.getButton() == MouseEvent.BUTTON3 && panned){
+				return;
+			}
+
 			//if the user dragged to create a box, calculate the new Complex plane values, change the values in the GUI to show new values and start zooming
 			if((e.getButton() == MouseEvent.BUTTON1) && (dragBox.getWidth() > 2) && (dragBox.getHeight() > 2)) {
-				newMinR = Math.min(minR + startingX * (maxR - minR) / width, minR + draggedToX * (maxR - minR) / width);
-				newMaxR = Math.max(minR + startingX * (maxR - minR) / width, minR + draggedToX * (maxR - minR) / width);
-				newMinI = Math.min(maxI - startingY * (maxI - minI) / height, maxI - draggedToY * (maxI - minI) / height);
-				newMaxI = Math.max(maxI - startingY * (maxI - minI) / height, maxI - draggedToY * (maxI - minI) / height);
-
-				SidePanel.rScaleStart.setText(Double.toString(newMinR));
-				SidePanel.rScaleEnd.setText(Double.toString(newMaxR));
-				SidePanel.iScaleStart.setText(Double.toString(newMinI));
-				SidePanel.iScaleEnd.setText(Double.toString(newMaxI));
+				//the box is worked out relative to the centre of the view so that it keeps its precision at any zoom
+				View current = view;
+				FloatExp spacingR = current.spanR.divide(width);
+				FloatExp spacingI = current.spanI.divide(height);
+				FloatExp offsetR = spacingR.multiply(((startingX + draggedToX) * 0.5) - (width * 0.5));
+				FloatExp offsetI = spacingI.multiply((height * 0.5) - ((startingY + draggedToY) * 0.5));
+				newCenterR = current.centerR.add(offsetR.toBigDecimal());
+				newCenterI = current.centerI.add(offsetI.toBigDecimal());
+				newSpanR = spacingR.multiply(Math.abs(draggedToX - startingX));
+				newSpanI = spacingI.multiply(Math.abs(draggedToY - startingY));
+
+				showBounds(newCenterR, newCenterI, newSpanR, newSpanI);
 
 				animatedZoom();
 
 				dragBox.setSize(new Dimension(0,0));
 			}else{
 				//if the user has only clicked on the panel, calculate the complex point they have selected and output to GUI
-				userX = minR + e.getX() * (maxR - minR) / width;
-				userY = maxI - e.getY() * (maxI - minI) / height;
+				View current = view;
+				userX = current.minR + e.getX() * (current.maxR - current.minR) / width;
+				userY = current.maxI - e.getY() * (current.maxI - current.minI) / height;
 				MainFractalPanel.userSelectedPoint = new Complex(userX, userY);
 				DecimalFormat formatDouble = new DecimalFormat("0.000");
 				if (userY > 0){
@@ -561,40 +1260,86 @@ public class MainFractalPanel extends JPanel{
 			}
 		}
 
-		/*animates the zoom method. splits the zoom into a number of interval and calculates the fractal for each interval up to the final zoom value
-		 * Values shown in GUI are set to the final axis values for the zoom rather than being updated constantly with each interval*/
+		/*animates the zoom method. splits the zoom into a number of interval and shows a preview resampled from the last calculated
+		 * frame for each interval. Only the final zoom value is calculated, reusing the pixels the preview already has.
+		 * Values shown in GUI are set to the final axis values for the zoom rather than being updated constantly with each interval.
+		 * The view of every interval is worked out here on the event thread and the panel is set to the final view straight
+		 * away, so the render thread only shows the views it is given and never changes the view of the panel*/
 		public void animatedZoom(){
-			//use a new thread so that repaint calls are not queued and merged
-			new Thread(new Runnable() {
-
-				public void run() {
-					//split the distance between the current axis sizes and the zoomed in axis sizes into the number of intervals beign used
-					int interval = 15;
-					double minRInterval = Math.abs(minR - newMinR)/interval;
-					double maxRInterval = Math.abs(maxR - newMaxR)/interval;
-					double minIInterval = Math.abs(minI - newMinI)/interval;
-					double maxIInterval = Math.abs(maxI - newMaxI)/interval;
-
-					//calculate the next intervals axis bounds
+			//split the distance between the current axis sizes and the zoomed in axis sizes into the number of intervals beign used
+			final int interval = 15;
+			View start = view;
+			BigDecimal moveR = newCenterR.subtract(start.centerR);
+			BigDecimal moveI = newCenterI.subtract(start.centerI);
+			FloatExp changeR = newSpanR.subtract(start.spanR);
+			FloatExp changeI = newSpanI.subtract(start.spanI);
+
+			//calculate each intervals axis bounds
+			final View[] steps = new View[interval];
+			for(int i = 1; i <= interval; i++){
+				BigDecimal fraction = new BigDecimal((double) i / interval);
+				steps[i - 1] = createView(start.centerR.add(moveR.multiply(fraction)), start.centerI.add(moveI.multiply(fraction)),
+						start.spanR.add(changeR.multiply((double) i / interval)), start.spanI.add(changeI.multiply((double) i / interval)));
+			}
+			view = steps[interval - 1];
+
+			//run on the render scheduler so that a newer zoom or render stops this animation
+			RenderScheduler.submit(MainFractalPanel.this, new RenderScheduler.RenderJob() {
+
+				@Override
+				public void render(RenderScheduler.Ticket ticket) {
 					for(int i = 0; i < interval; i++){
-						minR += minRInterval;
-						maxR -= maxRInterval;
-						minI += minIInterval;
-						maxI -= maxIInterval;
-						
-						//calculate fractal with current interval values
-						if(orbitTrapEnabled){
-							calculateOrbitTrapFractal();
+						if(ticket.isCancelled()){
+							return;
+						}
+
+						if(i < interval - 1){
+							//show a preview for this interval and wait so that the animation can be seen
+							if(previewFrame(ticket, steps[i]) != null){
+								try {
+									Thread.sleep(ZOOM_FRAME_DELAY);
+								} catch (InterruptedException e) {
+									return;
+								}
+							}
 						}else{
-							calculateMainFractal();
+							//calculate fractal with the final values, starting from a preview of them
+							renderFrame(ticket, steps[i], previewFrame(ticket, steps[i]));
 						}
 					}
 				}
-			}).start();
+			});
+		}
+
+		@Override
+		public void mouseWheelMoved(MouseWheelEvent e) {
+			if(e.getWheelRotation() == 0){
+				return;
+			}
+
+			//zoom in by a factor of two for each notch the wheel is moved forward and out for each notch it is moved back
+			double factor = Math.pow(2, e.getWheelRotation());
+
+			//keep the point under the mouse in the same place. As the point is on a pixel, a zoom by a factor of two
+			//lines up with the pixels of the last frame so they can be reused
+			View current = view;
+			FloatExp pointerR = current.spanR.divide(width).multiply(e.getX() - (width * 0.5));
+			FloatExp pointerI = current.spanI.divide(height).multiply((height * 0.5) - e.getY());
+			setView(current.centerR.add(pointerR.multiply(1 - factor).toBigDecimal()), current.centerI.add(pointerI.multiply(1 - factor).toBigDecimal()),
+					current.spanR.multiply(factor), current.spanI.multiply(factor));
+
+			showBounds(view.centerR, view.centerI, view.spanR, view.spanI);
+
+			renderZoom();
 		}
 
 		@Override
 		public void mouseDragged(MouseEvent e) {
+			if(SwingUtilities.isRightMouseButton(e)){
+				pan(e);
+				return;
+			}
+
 			zoomMode = true;
 			//get x and y coordiantes of where mouse was moved to
 			draggedToX = e.getX();
@@ -610,20 +1355,47 @@ public class MainFractalPanel extends JPanel{
 		@Override
 		public void mouseMoved(MouseEvent e){
 			//convert the x and y coordinates of the mouse's position to points on the complex plane
-			userX = minR + e.getX() * (maxR - minR) / width;
-			userY = maxI - e.getY() * (maxI - minI) / height;
+			View current = view;
+			userX = current.minR + e.getX() * (current.maxR - current.minR) / width;
+			userY = current.maxI - e.getY() * (current.maxI - current.minI) / height;
 
-			//calculate and display Julia fractal
+			//set the Julia fractal settings
 			juliaPanel.setBrightnessLevel(SidePanel.brightnessList.getSelectedIndex());
 			juliaPanel.setMaxIterations(Integer.parseInt(SidePanel.iterations.getText()));
 			juliaPanel.setC(new Complex(userX,userY));
 			juliaPanel.setFractalType(SidePanel.fractalList.getSelectedIndex());
 			if(orbitTrapEnabled){
 				juliaPanel.setOrbitOption(SidePanel.orbitTrapList.getSelectedIndex());
-				juliaPanel.calculateOrbitTrapFractal();
-			}else{
-				juliaPanel.calculateJulia();
 			}
+
+			//only the Julia for the latest mouse position is rendered, older ones are cancelled
+			juliaPanel.render();
+		}
+
+		/*moves the view by the distance the mouse has been dragged since the button was pressed, so that the fractal
+		 * follows the mouse. The view is moved from the one the drag started from, not the one shown, so that a view set
+		 * part way through the drag (such as by a zoom animation) does not change where the drag ends up. The view is
+		 * moved by whole pixels so that the preview moves the last frame across and every pixel still in view is reused,
+		 * leaving only the strips moved in along the edges to be calculated*/
+		private void pan(MouseEvent e){
+			if(e.getX() == panX && e.getY() == panY){
+				return;
+			}
+			panX = e.getX();
+			panY = e.getY();
+			panned = true;
+
+			int moveX = e.getX() - startingX;
+			int moveY = e.getY() - startingY;
+			FloatExp spacingR = panStart.spanR.divide(width);
+			FloatExp spacingI = panStart.spanI.divide(height);
+			View moved = createView(panStart.centerR.subtract(spacingR.multiply(moveX).toBigDecimal()),
+					panStart.centerI.add(spacingI.multiply(moveY).toBigDecimal()), panStart.spanR, panStart.spanI);
+			view = moved;
+
+			showBounds(moved.centerR, moved.centerI, moved.spanR, moved.spanI);
+
+			renderZoom();
 		}
 
 		/*calculates the size of the dragbox using current coordinates*/
@@ -8,6 +8,7 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.ComponentAdapter;
 import java.awt.event.ComponentEvent;
+import java.io.IOException;
 import java.text.DecimalFormat;
 import java.util.Hashtable;
 
@@ -18,6 +19,7 @@ import javax.swing.DefaultListModel;
 import javax.swing.JButton;
 import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
+import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JList;
@@ -92,7 +94,7 @@ public class MainWindow extends JFrame{
 		juliaPanel.setDimensions();
 		
 		//calculate and draw teh mandelbrot initially
-		mainFractalPanel.calculateMainFractal();
+		mainFractalPanel.render();
 
 		this.addComponentListener(new ComponentAdapter() {
 			public void componentResized(ComponentEvent e) {
@@ -121,6 +123,7 @@ class SidePanel extends JPanel{
 	public static JTextField iScaleStart;
 	public static JTextField iScaleEnd;
 	public static JTextField iterations;
+	public static JTextField formulaText;
 	private JButton generateMainFractal;
 	private JButton generateJulia;
 	private JButton favoriteJulia;
@@ -131,17 +134,21 @@ class SidePanel extends JPanel{
 	private JSlider greenSlider;
 	private JSlider blueSlider;
 	private static JCheckBox orbitTrapMode;
+	public static JCheckBox subdivisionMode;
 	public static JComboBox<String> brightnessList;
 	public static JComboBox<String> fractalList;
 	public static JComboBox<String> orbitTrapList;;
 	private JPanel colorPreview;
+	private JLabel gradientLabel;
+	private Gradient gradient;
 	private MainFractalPanel mainFractalPanel;
 	private JuliaPanel juliaPanel;
 	private DefaultListModel<String> savedJulias;
 	public final String[] orbitTraps = {"Elipse", "Circle", "Dots", "Rings", "Lines", "Segments", "Sine Wave", "Cos Wave", "Flowers", "Petals"};
 	public final String[] brightness = {"1", "2", "3", "4", "5", "6"};
-	public final String[] fractals = {"Mandelbrot", "triplebrot" , "Burning Ship", "Bird of Prey"};
+	public final String[] fractals = {"Mandelbrot", "triplebrot" , "Burning Ship", "Bird of Prey", "Custom formula"};
 	public static JLabel userSelectedPointL = new JLabel("No point selected");
+	public static JLabel renderStatsL = new JLabel("No frame rendered yet", SwingConstants.CENTER);
 
 	public SidePanel(MainFractalPanel mainFractalPanel, JuliaPanel juliaPanel){
 		this.mainFractalPanel = mainFractalPanel;
@@ -224,6 +231,16 @@ class SidePanel extends JPanel{
 		fractalList.setMaximumSize(fractalList.getPreferredSize());
 		fractalList.setAlignmentX(CENTER_ALIGNMENT);
 
+		//create label for the custom formula
+		JLabel formulaLabel = new JLabel("Custom formula for the next z, such as z^3 + c");
+		formulaLabel.setAlignmentX(CENTER_ALIGNMENT);
+
+		//create text field for the formula used when the custom formula fractal is selected
+		formulaText = new JTextField(30);
+		formulaText.setMaximumSize(formulaText.getPreferredSize());
+		formulaText.setText("z^3 + c");
+		formulaText.setAlignmentX(CENTER_ALIGNMENT);
+
 		//add each component to the panel
 		complexScaleSettings.add(rLowerBound);
 		complexScaleSettings.add(Box.createRigidArea(new Dimension(0,5)));
@@ -245,6 +262,10 @@ class SidePanel extends JPanel{
 		complexScaleSettings.add(Box.createRigidArea(new Dimension(0,5)));
 		complexScaleSettings.add(fractalList);
 		complexScaleSettings.add(Box.createVerticalGlue());
+		complexScaleSettings.add(formulaLabel);
+		complexScaleSettings.add(Box.createRigidArea(new Dimension(0,5)));
+		complexScaleSettings.add(formulaText);
+		complexScaleSettings.add(Box.createVerticalGlue());
 
 		//add panel to main panel
 		fractalSettings.add(complexScaleSettings);
@@ -267,6 +288,11 @@ class SidePanel extends JPanel{
 		iterations.setText("100");
 		iterations.setAlignmentX(CENTER_ALIGNMENT);
 
+		//create check box to only calculate the borders of rectangles that are inside the set
+		subdivisionMode = new JCheckBox("Subdivide rectangles");
+		subdivisionMode.setSelected(false);
+		subdivisionMode.setAlignmentX(CENTER_ALIGNMENT);
+
 		//create rest scale button
 		reset = new JButton("Reset Scale");
 		reset.setAlignmentX(CENTER_ALIGNMENT);
@@ -283,6 +309,9 @@ class SidePanel extends JPanel{
 
 		});
 
+		//create label to show statistics about the last main fractal render
+		renderStatsL.setAlignmentX(CENTER_ALIGNMENT);
+
 		//create button to generate main fractal
 		generateMainFractal = new JButton("Generate Main Fractal Set");
 		generateMainFractal.setAlignmentX(CENTER_ALIGNMENT);
@@ -296,12 +325,16 @@ class SidePanel extends JPanel{
 		createFractalsSection.add(Box.createRigidArea(new Dimension(0,5)));
 		createFractalsSection.add(iterations);
 		createFractalsSection.add(Box.createVerticalGlue());
+		createFractalsSection.add(subdivisionMode);
+		createFractalsSection.add(Box.createVerticalGlue());
 		createFractalsSection.add(reset);
 		createFractalsSection.add(Box.createVerticalGlue());
 		createFractalsSection.add(generateMainFractal);
 		createFractalsSection.add(Box.createVerticalGlue());
 		createFractalsSection.add(generateJulia);
 		createFractalsSection.add(Box.createVerticalGlue());
+		createFractalsSection.add(renderStatsL);
+		createFractalsSection.add(Box.createVerticalGlue());
 		//createFractalsSection.add(userSelectedPointLabel);
 		//createFractalsSection.add(Box.createRigidArea(new Dimension(0,5)));
 		//createFractalsSection.add(userSelectedPointL);
@@ -526,11 +559,86 @@ class SidePanel extends JPanel{
 		colorPreview.setMaximumSize(new Dimension(colorPreview.getPreferredSize()));
 		colorPreview.setAlignmentX(CENTER_ALIGNMENT);
 
+		//create label to show which gradient is used, if any
+		gradientLabel = new JLabel("Gradient: none");
+		gradientLabel.setAlignmentX(CENTER_ALIGNMENT);
+
+		//create button to load a gradient from a file to color the fractals with instead of the sliders
+		JButton loadGradient = new JButton("Load Gradient");
+		loadGradient.addActionListener(new ActionListener(){
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				JFileChooser chooser = new JFileChooser();
+				if(chooser.showOpenDialog(colorPreview) != JFileChooser.APPROVE_OPTION){
+					return;
+				}
+
+				try{
+					setGradient(Gradient.load(chooser.getSelectedFile()));
+				}catch(IOException ex){
+					JOptionPane.showMessageDialog(colorPreview, "Could not load the gradient: " + ex.getMessage() + ".");
+				}
+			}
+
+		});
+
+		//create button to go back to coloring with the sliders
+		JButton clearGradient = new JButton("Use Sliders");
+		clearGradient.addActionListener(new ActionListener(){
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				setGradient(null);
+			}
+
+		});
+
+		//create panel to hold the gradient buttons side by side
+		JPanel gradientButtons = new JPanel();
+		gradientButtons.setLayout(new FlowLayout(FlowLayout.CENTER));
+		gradientButtons.add(loadGradient);
+		gradientButtons.add(clearGradient);
+		gradientButtons.setMaximumSize(gradientButtons.getPreferredSize());
+		gradientButtons.setAlignmentX(CENTER_ALIGNMENT);
+
+		//create check box to animate the colors of both fractals by cycling the palette
+		JCheckBox paletteCycling = new JCheckBox("Cycle colors");
+		paletteCycling.setSelected(false);
+		paletteCycling.setAlignmentX(CENTER_ALIGNMENT);
+		paletteCycling.addActionListener(new ActionListener(){
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				JCheckBox source = (JCheckBox)e.getSource();
+				mainFractalPanel.setPaletteCycling(source.isSelected());
+				juliaPanel.setPaletteCycling(source.isSelected());
+			}
+
+		});
+
+		//create check box to spread the colors evenly over the pixels of the fractals instead of over the iterations
+		JCheckBox histogramColoring = new JCheckBox("Histogram coloring");
+		histogramColoring.setSelected(false);
+		histogramColoring.setAlignmentX(CENTER_ALIGNMENT);
+		histogramColoring.addActionListener(new ActionListener(){
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				JCheckBox source = (JCheckBox)e.getSource();
+				mainFractalPanel.setHistogramColoring(source.isSelected());
+				juliaPanel.setHistogramColoring(source.isSelected());
+				mainFractalPanel.recolor();
+				juliaPanel.recolor();
+			}
+
+		});
+
 		//create panel for Orbit Trap options
 		JPanel orbitTrapPanel = new JPanel();
 		orbitTrapPanel.setBorder(BorderFactory.createTitledBorder("Orbit Trap"));
-		orbitTrapPanel.setLayout(new GridLayout(2,2));
-		orbitTrapPanel.setPreferredSize(new Dimension(this.getWidth(), 100));
+		orbitTrapPanel.setLayout(new GridLayout(3,2));
+		orbitTrapPanel.setPreferredSize(new Dimension(this.getWidth(), 130));
 		
 		//create label for Orbit Trap style
 		JLabel orbitTrapTypeLabel = new JLabel("Orbit Trap Style");
@@ -542,7 +650,37 @@ class SidePanel extends JPanel{
 		orbitTrapList.setPreferredSize(new Dimension(100,20));
 		orbitTrapList.setSelectedIndex(0);
 		orbitTrapList.setEnabled(false);
+		orbitTrapList.addActionListener(new ActionListener(){
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				//fractals that were calculated with every style are colored with the new style straight away
+				mainFractalPanel.setOrbitOption(orbitTrapList.getSelectedIndex());
+				juliaPanel.setOrbitOption(orbitTrapList.getSelectedIndex());
+				mainFractalPanel.recolor();
+				juliaPanel.recolor();
+			}
+
+		});
 		orbitTrapListPanel.add(orbitTrapList);
+
+		//create label for calculating every Orbit Trap style at once
+		JLabel allTrapStylesLabel = new JLabel("All Styles at Once");
+
+		//create check box for keeping the result of every Orbit Trap style, so that changing the style does not calculate
+		//the fractals again. Set to unchecked by default as calculating every style is slower
+		JCheckBox allTrapStyles = new JCheckBox();
+		allTrapStyles.setSelected(false);
+		allTrapStyles.addActionListener(new ActionListener(){
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				JCheckBox source = (JCheckBox)e.getSource();
+				mainFractalPanel.setAllTrapStyles(source.isSelected());
+				juliaPanel.setAllTrapStyles(source.isSelected());
+			}
+
+		});
 		
 		//create label for brightness level
 		JLabel brightnessLevelLabel = new JLabel("Brightness Level");
@@ -554,6 +692,18 @@ class SidePanel extends JPanel{
 		brightnessList.setPreferredSize(new Dimension(300,20));
 		brightnessList.setMaximumSize(brightnessList.getPreferredSize());
 		brightnessList.setAlignmentX(CENTER_ALIGNMENT);
+		brightnessList.addActionListener(new ActionListener(){
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				//color the fractals shown again with the new brightness straight away
+				mainFractalPanel.setBrightnessLevel(brightnessList.getSelectedIndex());
+				juliaPanel.setBrightnessLevel(brightnessList.getSelectedIndex());
+				mainFractalPanel.recolor();
+				juliaPanel.recolor();
+			}
+
+		});
 		
 		//create label for enable orbit trap
 		JLabel enableOrbitTrapLabel = new JLabel("Use Orbit Trap");
@@ -580,9 +730,9 @@ class SidePanel extends JPanel{
 				//enable color settings if using orbit traps and disable orbit trap style selection
 				}else{
 					orbitTrapEnabled = false;
-					redSlider.setEnabled(true);
-					greenSlider.setEnabled(true);
-					blueSlider.setEnabled(true);
+					redSlider.setEnabled(gradient == null);
+					greenSlider.setEnabled(gradient == null);
+					blueSlider.setEnabled(gradient == null);
 					brightnessList.setEnabled(true);
 					mainFractalPanel.setOrbitTrapEnabled(false);
 					juliaPanel.setOrbitTrapEnabled(false);
@@ -611,12 +761,19 @@ class SidePanel extends JPanel{
 		colorOptionsPanel.add(Box.createVerticalGlue());
 		colorOptionsPanel.add(colorPreview);
 		colorOptionsPanel.add(Box.createVerticalGlue());
+		colorOptionsPanel.add(gradientLabel);
+		colorOptionsPanel.add(gradientButtons);
+		colorOptionsPanel.add(histogramColoring);
+		colorOptionsPanel.add(paletteCycling);
+		colorOptionsPanel.add(Box.createVerticalGlue());
 		
 		//add orbit trap panel to main color panel
 		orbitTrapPanel.add(enableOrbitTrapLabel);
 		orbitTrapPanel.add(orbitTrapMode);
 		orbitTrapPanel.add(orbitTrapTypeLabel);
 		orbitTrapPanel.add(orbitTrapListPanel);
+		orbitTrapPanel.add(allTrapStylesLabel);
+		orbitTrapPanel.add(allTrapStyles);
 		
 		fractalColorSettings.add(colorOptionsPanel, BorderLayout.CENTER);
 		fractalColorSettings.add(orbitTrapPanel, BorderLayout.SOUTH);
@@ -629,37 +786,27 @@ class SidePanel extends JPanel{
 
 			@Override
 			public void actionPerformed(ActionEvent e) {
-				//create and run worker thread
-				Thread workerThread = new Thread(new Runnable() {
-					public void run() {
-						JButton source = (JButton)e.getSource();
-						//disable the button until the fractal display has been displayed
-						source.setEnabled(false);
-						if(MainFractalPanel.userSelectedPoint != null){
-
-							//set Julia fractal settings and generate Julia fractal with complex point if user has selected a point.
-							juliaPanel.setBrightnessLevel(brightnessList.getSelectedIndex());
-							juliaPanel.setMaxIterations(Integer.parseInt(iterations.getText()));
-							juliaPanel.setC(new Complex(MainFractalPanel.userSelectedPoint.getReal(),MainFractalPanel.userSelectedPoint.getImag()));
-							juliaPanel.setFractalType(fractalList.getSelectedIndex());
-							if(orbitTrapEnabled){
-								//generate julia with Orbit Trap
-								juliaPanel.setOrbitOption(orbitTrapList.getSelectedIndex());
-								juliaPanel.calculateOrbitTrapFractal();
-							}else{
-								//generate julia without Orbit Trap
-								juliaPanel.calculateJulia();
-							}
-							
-						}else{
-							//show error message if no point is selected
-							JOptionPane.showMessageDialog(juliaPanel.getParent(), "You must select a point on the Mandelbrot set first.");
-							source.setEnabled(true);
-						}
-						source.setEnabled(true);
+				if(MainFractalPanel.userSelectedPoint != null){
+					if(!compileFormula()){
+						return;
 					}
-				});
-				workerThread.start();
+
+					//set Julia fractal settings and generate Julia fractal with complex point if user has selected a point.
+					juliaPanel.setBrightnessLevel(brightnessList.getSelectedIndex());
+					juliaPanel.setMaxIterations(Integer.parseInt(iterations.getText()));
+					juliaPanel.setC(new Complex(MainFractalPanel.userSelectedPoint.getReal(),MainFractalPanel.userSelectedPoint.getImag()));
+					juliaPanel.setFractalType(fractalList.getSelectedIndex());
+					if(orbitTrapEnabled){
+						//generate julia with Orbit Trap
+						juliaPanel.setOrbitOption(orbitTrapList.getSelectedIndex());
+					}
+
+					//render on the render scheduler, replacing any Julia render that has not finished
+					juliaPanel.render();
+				}else{
+					//show error message if no point is selected
+					JOptionPane.showMessageDialog(juliaPanel.getParent(), "You must select a point on the Mandelbrot set first.");
+				}
 			}
 
 		});
@@ -675,6 +822,40 @@ class SidePanel extends JPanel{
 				+ " generating fractal displays or use Orbit Traps.");
 	}
 
+	/*colors both fractals with the given gradient, or with the sliders if gradient is null, and recolors the fractals
+	 * shown straight away. The sliders are disabled while a gradient is used*/
+	private void setGradient(Gradient gradient){
+		this.gradient = gradient;
+		gradientLabel.setText("Gradient: " + (gradient == null ? "none" : gradient.getName()));
+		redSlider.setEnabled(gradient == null && !orbitTrapEnabled);
+		greenSlider.setEnabled(gradient == null && !orbitTrapEnabled);
+		blueSlider.setEnabled(gradient == null && !orbitTrapEnabled);
+
+		mainFractalPanel.setGradient(gradient);
+		juliaPanel.setGradient(gradient);
+		mainFractalPanel.recolor();
+		juliaPanel.recolor();
+	}
+
+	/*compiles the custom formula if the custom formula fractal is selected and passes it to both panels. Shows an error
+	 * message and returns false if the formula is not valid*/
+	private boolean compileFormula(){
+		if(fractalList.getSelectedIndex() != Formula.FRACTAL_TYPE){
+			return true;
+		}
+
+		Formula formula;
+		try{
+			formula = Formula.compile(formulaText.getText());
+		}catch(IllegalArgumentException ex){
+			JOptionPane.showMessageDialog(mainFractalPanel.getParent(), "Invalid formula: " + ex.getMessage() + ".");
+			return false;
+		}
+		mainFractalPanel.setFormula(formula);
+		juliaPanel.setFormula(formula);
+		return true;
+	}
+
 	class generateListener implements ActionListener{
 		private MainFractalPanel mainFractalPanel;
 
@@ -684,42 +865,33 @@ class SidePanel extends JPanel{
 
 		/* action listener to pass settings to main fractal panel and generates the fractal before displaying it*/
 		public void actionPerformed(ActionEvent e) {
-			//create worker thread
-			Thread workerThread = new Thread(new Runnable() {
-				public void run() {
-					JButton source = (JButton)e.getSource();
-					//disable the button until the fractal display has been displayed
-					source.setEnabled(false);
-					try{
-						//set bounds of complex plane to user defined bounds along with number of iterations
-						mainFractalPanel.setMinR(Double.parseDouble(rScaleStart.getText()));
-						mainFractalPanel.setMaxR(Double.parseDouble(rScaleEnd.getText()));
-						mainFractalPanel.setMinI(Double.parseDouble(iScaleStart.getText()));
-						mainFractalPanel.setMaxI(Double.parseDouble(iScaleEnd.getText()));
-						mainFractalPanel.setMaxIterations(Integer.parseInt(iterations.getText()));
-						
-					}catch(NumberFormatException e){
-						JOptionPane.showMessageDialog(mainFractalPanel.getParent(), "Invalid iterations or axis dimensions.");
-						source.setEnabled(true);
-					}
-					
-					//set brightness level and type of fractal in main fractal panel
-					mainFractalPanel.setBrightnessLevel(brightnessList.getSelectedIndex());
-					mainFractalPanel.setFractalType(fractalList.getSelectedIndex());
-					
-					if(orbitTrapEnabled){
-						//Generate Main fractal with Orbit Trap. set Julia to use Orbit Traps
-						mainFractalPanel.setOrbitOption(orbitTrapList.getSelectedIndex());
-						juliaPanel.setOrbitOption(orbitTrapList.getSelectedIndex());
-						mainFractalPanel.calculateOrbitTrapFractal();
-					}else{
-						//generate Main Fractal without Orbit Traps
-						mainFractalPanel.calculateMainFractal();
-					}
-					source.setEnabled(true);
-				}
-			});
-			workerThread.start();
+			try{
+				//set bounds of complex plane to user defined bounds along with number of iterations
+				mainFractalPanel.setPlaneBounds(rScaleStart.getText(), rScaleEnd.getText(), iScaleStart.getText(), iScaleEnd.getText());
+				mainFractalPanel.setMaxIterations(Integer.parseInt(iterations.getText()));
+
+			}catch(NumberFormatException ex){
+				JOptionPane.showMessageDialog(mainFractalPanel.getParent(), "Invalid iterations or axis dimensions.");
+				return;
+			}
+
+			if(!compileFormula()){
+				return;
+			}
+
+			//set brightness level and type of fractal in main fractal panel
+			mainFractalPanel.setBrightnessLevel(brightnessList.getSelectedIndex());
+			mainFractalPanel.setFractalType(fractalList.getSelectedIndex());
+			mainFractalPanel.setSubdivisionEnabled(subdivisionMode.isSelected());
+
+			if(orbitTrapEnabled){
+				//Generate Main fractal with Orbit Trap. set Julia to use Orbit Traps
+				mainFractalPanel.setOrbitOption(orbitTrapList.getSelectedIndex());
+				juliaPanel.setOrbitOption(orbitTrapList.getSelectedIndex());
+			}
+
+			//render on the render scheduler, replacing any main fractal render that has not finished
+			mainFractalPanel.render();
 		}
 
 	}
@@ -733,6 +905,10 @@ class SidePanel extends JPanel{
 			colorPreview.setBackground(new Color((int)redSlider.getValue(), (int)greenSlider.getValue() , (int)blueSlider.getValue()));
 			juliaPanel.setColors((int)redSlider.getValue(), (int)greenSlider.getValue(), (int)blueSlider.getValue());
 			mainFractalPanel.setColors((int)redSlider.getValue(), (int)greenSlider.getValue(), (int)blueSlider.getValue());
+
+			//color the fractals shown again while the slider moves, the fractals do not have to be calculated again
+			mainFractalPanel.recolor();
+			juliaPanel.recolor();
 		}
 
 	}
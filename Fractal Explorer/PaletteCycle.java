@@ -0,0 +1,216 @@
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+
+import javax.swing.JComponent;
+import javax.swing.Timer;
+
+/*Animates the colors of the frame shown by a panel by rotating a palette, without calculating the fractal again.
+ * When a frame is published, the result of every pixel is turned once into an index into a 256 color palette and
+ * stored as the raster of an indexed image. Each step of the animation then only rotates the 256 colors of the image's
+ * IndexColorModel, so the cost of a step does not depend on the size of the panel apart from drawing the image.
+ * Index 0 is the inside of the set, which keeps its color, and the other 255 colors make one smooth loop*/
+public abstract class PaletteCycle {
+	//time in milliseconds between steps of the animation, about 60 steps a second
+	private static final int STEP_DELAY = 16;
+	//colors of the palette that are cycled, index 0 is left for the inside of the set
+	private static final int CYCLE_COLORS = 255;
+	//palette entries for each iteration, so the loop of colors repeats every 32 iterations
+	private static final float STEPS_PER_ITERATION = 8;
+	//steps, about a second, after which a raster that has not arrived is asked for again, as the request may have been
+	//dropped or cancelled by a render of the panel
+	private static final int REQUEST_STEPS = 60;
+
+	private final JComponent panel;
+	private final Timer timer;
+
+	//only used on the event dispatch thread
+	private Coloring coloring;
+	private int[] baseColors;
+	private int[] colors;
+	private int offset;
+	private BufferedImage image;
+	private WritableRaster raster;
+	private FrameBuffer rasterFrame;
+	private int rasterCount;
+	//frame and published count the last raster was asked for, and the steps since
+	private FrameBuffer requestFrame;
+	private int requestCount;
+	private int requestAge;
+
+	//raster made by the render thread for the event dispatch thread to pick up
+	private volatile IndexRaster next;
+	private final RenderScheduler.RenderJob buildJob;
+
+	/*an index raster along with the frame it was made from*/
+	static class IndexRaster {
+		final WritableRaster raster;
+		final FrameBuffer frame;
+		final int count;
+
+		IndexRaster(WritableRaster raster, FrameBuffer frame, int count){
+			this.raster = raster;
+			this.frame = frame;
+			this.count = count;
+		}
+	}
+
+	/*constructor. panel is the panel that shows the animation and renders the frames*/
+	public PaletteCycle(JComponent panel){
+		this.panel = panel;
+		colors = new int[CYCLE_COLORS + 1];
+		timer = new Timer(STEP_DELAY, new ActionListener() {
+
+			@Override
+			public void actionPerformed(ActionEvent e) {
+				step();
+			}
+		});
+		buildJob = new RenderScheduler.RenderJob() {
+
+			@Override
+			public void render(RenderScheduler.Ticket ticket) {
+				buildRaster(ticket);
+			}
+		};
+	}
+
+	/*returns the frame buffer of the panel*/
+	protected abstract FrameBuffer getFrame();
+
+	/*returns the color settings of the panel*/
+	protected abstract Coloring getColoring();
+
+	/*starts or stops the animation. Only to be called on the event dispatch thread*/
+	public void setRunning(boolean running){
+		if(running){
+			timer.start();
+		}else{
+			timer.stop();
+			image = null;
+			raster = null;
+			rasterFrame = null;
+			requestFrame = null;
+			next = null;
+			panel.repaint();
+		}
+	}
+
+	/*returns the image to draw instead of the frame, or null if the animation is not running or not ready. Only to be
+	 * called on the event dispatch thread*/
+	public BufferedImage getImage(){
+		return image;
+	}
+
+	/*moves the animation on by one step*/
+	private void step(){
+		FrameBuffer frame = getFrame();
+		if(frame == null){
+			return;
+		}
+
+		//pick up a raster that has been made for a newer frame
+		IndexRaster made = next;
+		if(made != null){
+			next = null;
+			raster = made.raster;
+			rasterFrame = made.frame;
+			rasterCount = made.count;
+		}
+
+		//make a new raster once the panel has shown a new frame. The raster is made on the render scheduler after any
+		//render in progress, as only the render thread may read the results of a frame
+		int count = frame.getPublishedCount();
+		requestAge++;
+		if(next == null && (rasterFrame != frame || rasterCount != count)
+				&& (requestFrame != frame || requestCount != count || requestAge > REQUEST_STEPS)){
+			if(RenderScheduler.submitAfter(panel, buildJob)){
+				requestFrame = frame;
+				requestCount = count;
+				requestAge = 0;
+			}
+		}
+		if(raster == null || rasterFrame != frame){
+			return;
+		}
+
+		//the palette is only worked out again when the colors change
+		Coloring current = getColoring();
+		if(current != coloring){
+			coloring = current;
+			baseColors = createColors(current);
+		}
+
+		//rotate the cycled colors by one place and show the frame with them
+		offset = (offset + 1) % CYCLE_COLORS;
+		colors[0] = baseColors[0];
+		for(int i = 0; i < CYCLE_COLORS; i++){
+			colors[i + 1] = baseColors[1 + (i + offset) % CYCLE_COLORS];
+		}
+		IndexColorModel model = new IndexColorModel(8, colors.length, colors, 0, false, -1, DataBuffer.TYPE_BYTE);
+		image = new BufferedImage(model, raster, false, null);
+		panel.repaint();
+	}
+
+	/*returns the palette for the given color settings. The colors go from the inside color up to the brightest color of
+	 * the settings and back down so that the loop has no seam*/
+	private static int[] createColors(Coloring coloring){
+		int[] palette = new int[CYCLE_COLORS + 1];
+		palette[0] = coloring.colorFractal(0, 1);
+		for(int i = 0; i < CYCLE_COLORS; i++){
+			float place = 1 - Math.abs(2f * i / CYCLE_COLORS - 1);
+			palette[i + 1] = coloring.colorFractal(place, 1);
+		}
+		return palette;
+	}
+
+	/*makes a raster of palette indices from the frame the panel shows. Only to be run by the render thread*/
+	private void buildRaster(RenderScheduler.Ticket ticket){
+		FrameBuffer frame = getFrame();
+		if(frame == null){
+			return;
+		}
+		//nothing to cycle until the panel has rendered a frame
+		if(frame.getPublishedResults().isEmpty()){
+			next = new IndexRaster(null, frame, frame.getPublishedCount());
+			return;
+		}
+
+		final int width = frame.getWidth();
+		final int height = frame.getHeight();
+		final IterationBuffer results = frame.getPublishedResults();
+		final byte[] indices = new byte[width * height];
+
+		RenderEngine.render(width, height, ticket, new RenderEngine.TileRenderer() {
+
+			@Override
+			public void renderTile(int startX, int startY, int endX, int endY) {
+				for(int i = startY; i < endY; i++){
+					for(int j = startX; j < endX; j++){
+						indices[i*width + j] = (byte) index(results.getCyclePosition(i*width + j));
+					}
+				}
+			}
+		});
+
+		//the last raster is kept if a render has been requested part way through, a new one is made after it
+		if(!ticket.isCancelled()){
+			WritableRaster raster = Raster.createInterleavedRaster(new DataBufferByte(indices, indices.length), width, height,
+					width, 1, new int[] {0}, null);
+			next = new IndexRaster(raster, frame, frame.getPublishedCount());
+		}
+	}
+
+	/*returns the palette index for the given position in iterations*/
+	private static int index(float position){
+		if(!(position > 0)){
+			return 0;
+		}
+		return 1 + (int) ((long) (position * STEPS_PER_ITERATION) % CYCLE_COLORS);
+	}
+}
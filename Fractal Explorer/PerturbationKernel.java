@@ -0,0 +1,517 @@
+/*Perturbation kernels used for deep zooms of the main fractal. Past a certain zoom a double cannot tell neighbouring
+ * pixels apart, so one reference orbit is calculated in high precision (see ReferenceOrbit) and every pixel is iterated
+ * as the difference (delta) between its orbit and the reference orbit. The delta only has to be accurate relative to its
+ * own size, which a double manages however deep the zoom is.
+ * A pixel whose orbit comes much closer to 0 than the reference orbit loses the precision of its delta. This is known as
+ * a glitch, glitched pixels are detected and have to be calculated again with a different reference.
+ * The state array is the same one used by IterationKernel*/
+public class PerturbationKernel {
+	//returned in place of the number of iterations when a pixel has glitched
+	public static final int GLITCHED = -1;
+
+	//position in the state array that a glitched pixel stores how close it came to 0 relative to the reference
+	public static final int GLITCH_RATIO = IterationKernel.DIST;
+
+	/*pixels spaced closer than this are calculated with perturbation. A double-double has about 32 significant digits and
+	 * the orbit loses a few more through rounding, so below this spacing pixels start merging into blocks*/
+	public static final double DEEP_ZOOM_SPACING = 1e-29;
+
+	/*pixels spaced closer than this are offset from the reference by less than a double can hold, so their deltas are
+	 * iterated as FloatExp until they have grown large enough for a double*/
+	public static final double EXTENDED_SPACING = 1e-290;
+
+	//a delta is handed over to the double kernels once it is larger than 2^HANDOVER_EXPONENT (about 1e-289)
+	private static final int HANDOVER_EXPONENT = -960;
+
+	//the shared exponent of a delta that is too small for a double is moved once the doubles are larger than 2^RESCALE_EXPONENT
+	//or smaller than 2^-RESCALE_EXPONENT
+	private static final int RESCALE_EXPONENT = 256;
+
+	//most reference orbits used for a frame. The last one does not check for glitches, every pixel left is finished with it
+	public static final int MAX_REFERENCES = 32;
+
+	/*a pixel has glitched when its squared distance from 0 is less than this fraction of the reference's
+	 * squared distance from 0 (Pauldelbrot's test)*/
+	private static final double GLITCH_TOLERANCE = 1e-6;
+
+	//digits kept beyond the pixel spacing so that rounding errors stay far below a pixel
+	private static final int GUARD_DIGITS = 12;
+
+	/*returns the number of decimal places needed to place a point to well within a pixel at the given spacing*/
+	public static int getDecimalPlaces(FloatExp spacing){
+		return Math.max(0, (int) Math.ceil(-spacing.log10())) + GUARD_DIGITS;
+	}
+
+	/*iterates the pixel at the offset dcr, dci from the reference point until it escapes, maxIterations is reached or it
+	 * glitches. Returns the number of iterations, or GLITCHED. If detectGlitches is false the pixel is iterated to the end
+	 * regardless, as the best guess that can be made without another reference*/
+	public static int escape(int fractalType, ReferenceOrbit reference, double dcr, double dci, int maxIterations, boolean detectGlitches, double[] state){
+		//the fractal type is checked once per pixel rather than once per iteration
+		return escape(fractalType, reference, dcr, dci, 0, 0, 0, maxIterations, detectGlitches, state);
+	}
+
+	/*iterates the pixel at the offset dcr, dci from the reference point in the same way as escape, from iteration start where
+	 * its delta is dr, di. Used to carry on from the extended range kernel*/
+	private static int escape(int fractalType, ReferenceOrbit reference, double dcr, double dci, double dr, double di, int start,
+			int maxIterations, boolean detectGlitches, double[] state){
+		//the fractal type is checked once per pixel rather than once per iteration
+		switch (fractalType) {
+		case 1:  return triplebrot(reference, dcr, dci, dr, di, start, maxIterations, detectGlitches, state);
+
+		case 2:  return burningShip(reference, dcr, dci, dr, di, start, maxIterations, detectGlitches, state);
+
+		case 3:  return birdOfPrey(reference, dcr, dci, dr, di, start, maxIterations, detectGlitches, state);
+
+		default: return mandelbrot(reference, dcr, dci, dr, di, start, maxIterations, detectGlitches, state);
+		}
+	}
+
+	/*iterates the pixel at the offset dcr, dci from the reference point until it escapes, maxIterations is reached,
+	 * it is trapped by the selected Orbit Trap or it glitches. The distance returned by the Orbit Trap is stored in state.
+	 * Returns the number of iterations, or GLITCHED*/
+	public static int trap(int fractalType, int orbitOption, ReferenceOrbit reference, double dcr, double dci, int maxIterations,
+			boolean detectGlitches, double[] state){
+		return trap(fractalType, orbitOption, reference, dcr, dci, 0, 0, 0, maxIterations, detectGlitches, state);
+	}
+
+	/*iterates the pixel at the offset dcr, dci from the reference point in the same way as trap, from iteration start where
+	 * its delta is dr, di. Used to carry on from the extended range kernel*/
+	private static int trap(int fractalType, int orbitOption, ReferenceOrbit reference, double dcr, double dci, double dr, double di,
+			int start, int maxIterations, boolean detectGlitches, double[] state){
+		double[] real = reference.getReal();
+		double[] imag = reference.getImag();
+		double[] modulus = reference.getModulusSquared();
+		int length = reference.getLength();
+		double zr = real[start] + dr;
+		double zi = imag[start] + di;
+		double zr2 = zr * zr;
+		double zi2 = zi * zi;
+		double dist = 0;
+		double xr;
+		double xi;
+		double sr;
+		double si;
+		double er;
+		double ei;
+		double next;
+		int iterations = start;
+
+		while(zr2 + zi2 < 4 && iterations < maxIterations && dist == 0){
+			//the reference escaped before this pixel so the rest of the orbit cannot be compared with it
+			if(iterations == length){
+				if(detectGlitches){
+					return glitch(zr2 + zi2, 4, state);
+				}
+				return iterations + IterationKernel.trap(fractalType, orbitOption, zr, zi, reference.getPointReal() + dcr,
+						reference.getPointImag() + dci, maxIterations - iterations, state);
+			}
+			xr = real[iterations];
+			xi = imag[iterations];
+
+			switch (fractalType) {
+			case 1:
+				er = ((2 * xr + dr) * dr) - ((2 * xi + di) * di);
+				ei = 2 * ((xr * di) + (xi * dr) + (dr * di));
+				sr = (xr * xr) - (xi * xi);
+				si = 2 * (xr * xi);
+				next = ((2 * sr + er) * er) - ((2 * si + ei) * ei) + dcr;
+				di = 2 * ((sr * ei) + (si * er) + (er * ei)) + dci;
+				dr = next;
+				break;
+
+			case 2:
+				next = ((2 * xr + dr) * dr) - ((2 * xi + di) * di) + dcr;
+				di = 2 * diffabs(xr * xi, (xr * di) + (xi * dr) + (dr * di)) - dci;
+				dr = next;
+				break;
+
+			case 3:
+				next = birdOfPreyReal(xr, xi, dr, di) + dcr;
+				di = birdOfPreyImag(xr, xi, dr, di) + dci;
+				dr = next;
+				break;
+
+			default:
+				next = ((2 * xr + dr) * dr) - ((2 * xi + di) * di) + dcr;
+				di = 2 * ((xr * di) + (xi * dr) + (dr * di)) + dci;
+				dr = next;
+				break;
+			}
+			iterations++;
+
+			zr = real[iterations] + dr;
+			zi = imag[iterations] + di;
+			zr2 = zr * zr;
+			zi2 = zi * zi;
+
+			if(detectGlitches && zr2 + zi2 < GLITCH_TOLERANCE * modulus[iterations]){
+				return glitch(zr2 + zi2, modulus[iterations], state);
+			}
+
+			//Check if complex point is trapped by the Orbit Trap
+			dist = IterationKernel.orbitTrap(orbitOption, zr, zi, dist);
+		}
+
+		state[IterationKernel.REAL] = zr;
+		state[IterationKernel.IMAG] = zi;
+		state[IterationKernel.DIST] = dist;
+		state[IterationKernel.SKIPPED] = 0;
+		return iterations;
+	}
+
+	/*iterates the pixel at an offset dcr, dci from the reference point that may be too small for a double, in the same way
+	 * as escape. The delta is iterated as a FloatExp until it is large enough for a double, then the double kernel carries on*/
+	public static int escape(int fractalType, ReferenceOrbit reference, FloatExp dcr, FloatExp dci, int maxIterations,
+			boolean detectGlitches, double[] state){
+		int iterations = extend(fractalType, -1, reference, dcr, dci, maxIterations, state);
+		return escape(fractalType, reference, dcr.toDouble(), dci.toDouble(), state[IterationKernel.REAL], state[IterationKernel.IMAG],
+				iterations, maxIterations, detectGlitches, state);
+	}
+
+	/*iterates the pixel at an offset dcr, dci from the reference point that may be too small for a double, in the same way
+	 * as trap. The delta is iterated as a FloatExp until it is large enough for a double, then the double kernel carries on*/
+	public static int trap(int fractalType, int orbitOption, ReferenceOrbit reference, FloatExp dcr, FloatExp dci, int maxIterations,
+			boolean detectGlitches, double[] state){
+		int iterations = extend(fractalType, orbitOption, reference, dcr, dci, maxIterations, state);
+		if(state[IterationKernel.DIST] != 0){
+			//trapped while the pixel was still following the reference
+			state[IterationKernel.REAL] = reference.getReal()[iterations];
+			state[IterationKernel.IMAG] = reference.getImag()[iterations];
+			state[IterationKernel.SKIPPED] = 0;
+			return iterations;
+		}
+		return trap(fractalType, orbitOption, reference, dcr.toDouble(), dci.toDouble(), state[IterationKernel.REAL],
+				state[IterationKernel.IMAG], iterations, maxIterations, detectGlitches, state);
+	}
+
+	/*iterates the delta of a pixel while it is too small for a double. Stops once the delta is large enough, the reference
+	 * runs out or maxIterations is reached, and stores the delta in state as doubles for the double kernels to carry on from.
+	 * The delta is kept as two doubles that share one exponent (dr, di * 2^scale), the same idea as FloatExp but without
+	 * creating an object for every step. The terms in d^2 are multiplied by 2^scale, which is 0 for most of this range as
+	 * they are far too small to matter.
+	 * While the delta is this small the pixel's orbit is the same as the reference's to double precision, so it cannot escape
+	 * or glitch before the reference does. With an Orbit Trap (orbitOption 0 or more) the reference's orbit is checked
+	 * against the trap and the distance is stored in state. Returns the number of iterations taken*/
+	private static int extend(int fractalType, int orbitOption, ReferenceOrbit reference, FloatExp dcr, FloatExp dci,
+			int maxIterations, double[] state){
+		double[] real = reference.getReal();
+		double[] imag = reference.getImag();
+		int length = reference.getLength();
+		int scale = dcr.signum() == 0 ? dci.getExponent() : dci.signum() == 0 ? dcr.getExponent() : Math.max(dcr.getExponent(), dci.getExponent());
+		double factor = Math.scalb(1.0, scale);
+		double cr = dcr.scaledValue(-scale);
+		double ci = dci.scaledValue(-scale);
+		double dr = 0;
+		double di = 0;
+		double xr;
+		double xi;
+		double sr;
+		double si;
+		double er;
+		double ei;
+		double next;
+		double dist = 0;
+		int size = Double.MIN_EXPONENT;
+		int iterations = 0;
+
+		while(iterations < length && iterations < maxIterations && scale + size < HANDOVER_EXPONENT){
+			xr = real[iterations];
+			xi = imag[iterations];
+
+			switch (fractalType) {
+			case 1:
+				//delta of the first square, then of the square of that
+				er = 2 * ((xr * dr) - (xi * di)) + ((dr * dr) - (di * di)) * factor;
+				ei = 2 * ((xr * di) + (xi * dr) + (dr * di * factor));
+				sr = (xr * xr) - (xi * xi);
+				si = 2 * (xr * xi);
+				next = 2 * ((sr * er) - (si * ei)) + ((er * er) - (ei * ei)) * factor + cr;
+				di = 2 * ((sr * ei) + (si * er) + (er * ei * factor)) + ci;
+				dr = next;
+				break;
+
+			case 2:
+				//the reference's part of diffabs is scaled too, a reference part too large for the scale becomes infinite
+				//which diffabs still handles correctly
+				next = 2 * ((xr * dr) - (xi * di)) + ((dr * dr) - (di * di)) * factor + cr;
+				di = 2 * diffabs(Math.scalb(xr * xi, -scale), (xr * di) + (xi * dr) + (dr * di * factor)) - ci;
+				dr = next;
+				break;
+
+			case 3:
+				//same as birdOfPreyReal and birdOfPreyImag
+				er = (2 * xr + dr * factor) * dr;
+				ei = (2 * xi + di * factor) * di;
+				next = ((xr * xr) - (3 * xi * xi)) * diffabs(Math.scalb(xr, -scale), dr) + (er - (3 * ei)) * Math.abs(xr + dr * factor) + cr;
+				di = ((3 * xr * xr) - (xi * xi)) * diffabs(Math.scalb(xi, -scale), di) + ((3 * er) - ei) * Math.abs(xi + di * factor) + ci;
+				dr = next;
+				break;
+
+			default:
+				next = 2 * ((xr * dr) - (xi * di)) + ((dr * dr) - (di * di)) * factor + cr;
+				di = 2 * ((xr * di) + (xi * dr) + (dr * di * factor)) + ci;
+				dr = next;
+				break;
+			}
+			iterations++;
+
+			//move the shared exponent when the delta has grown or shrunk a long way, so that the doubles never overflow or underflow
+			size = Math.getExponent(Math.max(Math.abs(dr), Math.abs(di)));
+			if(size > RESCALE_EXPONENT || (size < -RESCALE_EXPONENT && (dr != 0 || di != 0))){
+				dr = Math.scalb(dr, -size);
+				di = Math.scalb(di, -size);
+				scale += size;
+				size = 0;
+				factor = Math.scalb(1.0, scale);
+				cr = dcr.scaledValue(-scale);
+				ci = dci.scaledValue(-scale);
+			}
+
+			//Check if the reference point is trapped by the Orbit Trap
+			if(orbitOption >= 0){
+				dist = IterationKernel.orbitTrap(orbitOption, real[iterations], imag[iterations], 0);
+				if(dist != 0){
+					break;
+				}
+			}
+		}
+
+		state[IterationKernel.REAL] = Math.scalb(dr, scale);
+		state[IterationKernel.IMAG] = Math.scalb(di, scale);
+		state[IterationKernel.DIST] = dist;
+		return iterations;
+	}
+
+	/*Mandelbrot delta, d = 2Zd + d^2 + dc*/
+	private static int mandelbrot(ReferenceOrbit reference, double dcr, double dci, double dr, double di, int start, int maxIterations,
+			boolean detectGlitches, double[] state){
+		double[] real = reference.getReal();
+		double[] imag = reference.getImag();
+		double[] modulus = reference.getModulusSquared();
+		int length = reference.getLength();
+		double zr = real[start] + dr;
+		double zi = imag[start] + di;
+		double zr2 = zr * zr;
+		double zi2 = zi * zi;
+		double xr;
+		double xi;
+		double next;
+		int iterations = start;
+
+		while(zr2 + zi2 < 4 && iterations < maxIterations){
+			//the reference escaped before this pixel so the rest of the orbit cannot be compared with it
+			if(iterations == length){
+				if(detectGlitches){
+					return glitch(zr2 + zi2, 4, state);
+				}
+				return finish(0, reference, zr, zi, dcr, dci, iterations, maxIterations, state);
+			}
+			xr = real[iterations];
+			xi = imag[iterations];
+			next = ((2 * xr + dr) * dr) - ((2 * xi + di) * di) + dcr;
+			di = 2 * ((xr * di) + (xi * dr) + (dr * di)) + dci;
+			dr = next;
+			iterations++;
+
+			zr = real[iterations] + dr;
+			zi = imag[iterations] + di;
+			zr2 = zr * zr;
+			zi2 = zi * zi;
+
+			if(detectGlitches && zr2 + zi2 < GLITCH_TOLERANCE * modulus[iterations]){
+				return glitch(zr2 + zi2, modulus[iterations], state);
+			}
+		}
+
+		state[IterationKernel.REAL] = zr;
+		state[IterationKernel.IMAG] = zi;
+		state[IterationKernel.SKIPPED] = 0;
+		return iterations;
+	}
+
+	/*Triplebrot delta. z is squared twice, so each square is perturbed in the same way as the Mandelbrot*/
+	private static int triplebrot(ReferenceOrbit reference, double dcr, double dci, double dr, double di, int start, int maxIterations,
+			boolean detectGlitches, double[] state){
+		double[] real = reference.getReal();
+		double[] imag = reference.getImag();
+		double[] modulus = reference.getModulusSquared();
+		int length = reference.getLength();
+		double zr = real[start] + dr;
+		double zi = imag[start] + di;
+		double zr2 = zr * zr;
+		double zi2 = zi * zi;
+		double xr;
+		double xi;
+		double sr;
+		double si;
+		double er;
+		double ei;
+		double next;
+		int iterations = start;
+
+		while(zr2 + zi2 < 4 && iterations < maxIterations){
+			if(iterations == length){
+				if(detectGlitches){
+					return glitch(zr2 + zi2, 4, state);
+				}
+				return finish(1, reference, zr, zi, dcr, dci, iterations, maxIterations, state);
+			}
+			xr = real[iterations];
+			xi = imag[iterations];
+
+			//delta of the first square, then of the square of that
+			er = ((2 * xr + dr) * dr) - ((2 * xi + di) * di);
+			ei = 2 * ((xr * di) + (xi * dr) + (dr * di));
+			sr = (xr * xr) - (xi * xi);
+			si = 2 * (xr * xi);
+			next = ((2 * sr + er) * er) - ((2 * si + ei) * ei) + dcr;
+			di = 2 * ((sr * ei) + (si * er) + (er * ei)) + dci;
+			dr = next;
+			iterations++;
+
+			zr = real[iterations] + dr;
+			zi = imag[iterations] + di;
+			zr2 = zr * zr;
+			zi2 = zi * zi;
+
+			if(detectGlitches && zr2 + zi2 < GLITCH_TOLERANCE * modulus[iterations]){
+				return glitch(zr2 + zi2, modulus[iterations], state);
+			}
+		}
+
+		state[IterationKernel.REAL] = zr;
+		state[IterationKernel.IMAG] = zi;
+		state[IterationKernel.SKIPPED] = 0;
+		return iterations;
+	}
+
+	/*Burning Ship delta. The absolute value is perturbed with diffabs so that no precision is lost*/
+	private static int burningShip(ReferenceOrbit reference, double dcr, double dci, double dr, double di, int start, int maxIterations,
+			boolean detectGlitches, double[] state){
+		double[] real = reference.getReal();
+		double[] imag = reference.getImag();
+		double[] modulus = reference.getModulusSquared();
+		int length = reference.getLength();
+		double zr = real[start] + dr;
+		double zi = imag[start] + di;
+		double zr2 = zr * zr;
+		double zi2 = zi * zi;
+		double xr;
+		double xi;
+		double next;
+		int iterations = start;
+
+		while(zr2 + zi2 < 4 && iterations < maxIterations){
+			if(iterations == length){
+				if(detectGlitches){
+					return glitch(zr2 + zi2, 4, state);
+				}
+				return finish(2, reference, zr, zi, dcr, dci, iterations, maxIterations, state);
+			}
+			xr = real[iterations];
+			xi = imag[iterations];
+			next = ((2 * xr + dr) * dr) - ((2 * xi + di) * di) + dcr;
+			di = 2 * diffabs(xr * xi, (xr * di) + (xi * dr) + (dr * di)) - dci;
+			dr = next;
+			iterations++;
+
+			zr = real[iterations] + dr;
+			zi = imag[iterations] + di;
+			zr2 = zr * zr;
+			zi2 = zi * zi;
+
+			if(detectGlitches && zr2 + zi2 < GLITCH_TOLERANCE * modulus[iterations]){
+				return glitch(zr2 + zi2, modulus[iterations], state);
+			}
+		}
+
+		state[IterationKernel.REAL] = zr;
+		state[IterationKernel.IMAG] = zi;
+		state[IterationKernel.SKIPPED] = 0;
+		return iterations;
+	}
+
+	/*Bird Of Prey delta*/
+	private static int birdOfPrey(ReferenceOrbit reference, double dcr, double dci, double dr, double di, int start, int maxIterations,
+			boolean detectGlitches, double[] state){
+		double[] real = reference.getReal();
+		double[] imag = reference.getImag();
+		double[] modulus = reference.getModulusSquared();
+		int length = reference.getLength();
+		double zr = real[start] + dr;
+		double zi = imag[start] + di;
+		double zr2 = zr * zr;
+		double zi2 = zi * zi;
+		double xr;
+		double xi;
+		double next;
+		int iterations = start;
+
+		while(zr2 + zi2 < 4 && iterations < maxIterations){
+			if(iterations == length){
+				if(detectGlitches){
+					return glitch(zr2 + zi2, 4, state);
+				}
+				return finish(3, reference, zr, zi, dcr, dci, iterations, maxIterations, state);
+			}
+			xr = real[iterations];
+			xi = imag[iterations];
+			next = birdOfPreyReal(xr, xi, dr, di) + dcr;
+			di = birdOfPreyImag(xr, xi, dr, di) + dci;
+			dr = next;
+			iterations++;
+
+			zr = real[iterations] + dr;
+			zi = imag[iterations] + di;
+			zr2 = zr * zr;
+			zi2 = zi * zi;
+
+			if(detectGlitches && zr2 + zi2 < GLITCH_TOLERANCE * modulus[iterations]){
+				return glitch(zr2 + zi2, modulus[iterations], state);
+			}
+		}
+
+		state[IterationKernel.REAL] = zr;
+		state[IterationKernel.IMAG] = zi;
+		state[IterationKernel.SKIPPED] = 0;
+		return iterations;
+	}
+
+	/*real part of the Bird Of Prey delta without dc. The reference is (X^2 - 3Y^2)|X|, so the delta is the change in
+	 * X^2 - 3Y^2 times |X + dx| plus X^2 - 3Y^2 times the change in |X|*/
+	private static double birdOfPreyReal(double xr, double xi, double dr, double di){
+		double factor = (xr * xr) - (3 * xi * xi);
+		double change = ((2 * xr + dr) * dr) - (3 * (2 * xi + di) * di);
+		return (factor * diffabs(xr, dr)) + (change * Math.abs(xr + dr));
+	}
+
+	/*imaginary part of the Bird Of Prey delta without dc. The reference is (3X^2 - Y^2)|Y|*/
+	private static double birdOfPreyImag(double xr, double xi, double dr, double di){
+		double factor = (3 * xr * xr) - (xi * xi);
+		double change = (3 * (2 * xr + dr) * dr) - ((2 * xi + di) * di);
+		return (factor * diffabs(xi, di)) + (change * Math.abs(xi + di));
+	}
+
+	/*returns |c + d| - |c| without losing the precision of d when c is much larger than d*/
+	private static double diffabs(double c, double d){
+		if(c >= 0){
+			return c + d >= 0 ? d : -(2 * c + d);
+		}
+		return c + d > 0 ? (2 * c) + d : -d;
+	}
+
+	/*records a glitched pixel. The ratio of its squared distance from 0 to the reference's is stored so that the pixel
+	 * which glitched worst can be picked as the next reference*/
+	private static int glitch(double modulusSquared, double referenceModulusSquared, double[] state){
+		state[GLITCH_RATIO] = modulusSquared / referenceModulusSquared;
+		return GLITCHED;
+	}
+
+	/*finishes a pixel that has outlived the reference orbit by iterating the full point in double precision. Only used
+	 * once no more references can be made*/
+	private static int finish(int fractalType, ReferenceOrbit reference, double zr, double zi, double dcr, double dci,
+			int iterations, int maxIterations, double[] state){
+		return iterations + IterationKernel.escape(fractalType, zr, zi, reference.getPointReal() + dcr,
+				reference.getPointImag() + dci, maxIterations - iterations, state);
+	}
+}
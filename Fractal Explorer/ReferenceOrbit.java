@@ -0,0 +1,137 @@
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+
+/*The orbit of one point of a deep zoom calculated in high precision, used as the reference that every pixel is
+ * compared against by the perturbation kernels. The orbit is only kept in high precision while it is being calculated,
+ * each point is stored as a double as the pixels only need it to be accurate relative to its own size.
+ * The high precision numbers are fixed point: a BigInteger holding the number multiplied by 2^bits. This is much faster
+ * than BigDecimal for long orbits, as every product is rounded with a shift instead of a division by a power of ten*/
+public class ReferenceOrbit {
+	//bits kept beyond the decimal places asked for, to absorb the rounding of each step
+	private static final int GUARD_BITS = 32;
+
+	private final double pointReal;
+	private final double pointImag;
+	private final double[] real;
+	private final double[] imag;
+	private final double[] modulusSquared;
+	private final int length;
+
+	/*constructor. Iterates the selected fractal type from z = 0 with c set to the given point until the point escapes
+	 * or maxIterations is reached, keeping at least the given number of decimal places. Stops early if the ticket is cancelled*/
+	public ReferenceOrbit(int fractalType, BigDecimal cr, BigDecimal ci, int maxIterations, int decimalPlaces, RenderScheduler.Ticket ticket){
+		pointReal = cr.doubleValue();
+		pointImag = ci.doubleValue();
+		real = new double[maxIterations + 1];
+		imag = new double[maxIterations + 1];
+		modulusSquared = new double[maxIterations + 1];
+
+		int bits = (int) Math.ceil(decimalPlaces * Math.log(10) / Math.log(2)) + GUARD_BITS;
+		BigInteger fixedR = toFixed(cr, bits);
+		BigInteger fixedI = toFixed(ci, bits);
+		BigInteger zr = BigInteger.ZERO;
+		BigInteger zi = BigInteger.ZERO;
+		BigInteger zr2;
+		BigInteger zi2;
+		BigInteger twoZrZi;
+		BigInteger next;
+		int iterations = 0;
+
+		while(modulusSquared[iterations] < 4 && iterations < maxIterations && !ticket.isCancelled()){
+			zr2 = square(zr, bits);
+			zi2 = square(zi, bits);
+			//2 * zr * zi worked out from squares, as squaring a BigInteger is faster than multiplying two
+			twoZrZi = square(zr.add(zi), bits).subtract(zr2).subtract(zi2);
+
+			switch (fractalType) {
+			case 1:
+				//square twice
+				zr = zr2.subtract(zi2);
+				zi = twoZrZi;
+				zr2 = square(zr, bits);
+				zi2 = square(zi, bits);
+				twoZrZi = square(zr.add(zi), bits).subtract(zr2).subtract(zi2);
+				zr = zr2.subtract(zi2).add(fixedR);
+				zi = twoZrZi.add(fixedI);
+				break;
+
+			case 2:
+				zi = twoZrZi.abs().subtract(fixedI);
+				zr = zr2.subtract(zi2).add(fixedR);
+				break;
+
+			case 3:
+				next = multiply(zr2.subtract(zi2.multiply(BigInteger.valueOf(3))), zr.abs(), bits).add(fixedR);
+				zi = multiply(zr2.multiply(BigInteger.valueOf(3)).subtract(zi2), zi.abs(), bits).add(fixedI);
+				zr = next;
+				break;
+
+			default:
+				zi = twoZrZi.add(fixedI);
+				zr = zr2.subtract(zi2).add(fixedR);
+				break;
+			}
+			iterations++;
+
+			real[iterations] = toDouble(zr, bits);
+			imag[iterations] = toDouble(zi, bits);
+			modulusSquared[iterations] = (real[iterations] * real[iterations]) + (imag[iterations] * imag[iterations]);
+		}
+
+		length = iterations;
+	}
+
+	/*converts a number to fixed point with the given number of bits after the binary point*/
+	private static BigInteger toFixed(BigDecimal value, int bits){
+		return value.multiply(new BigDecimal(BigInteger.ONE.shiftLeft(bits))).setScale(0, RoundingMode.HALF_EVEN).toBigInteger();
+	}
+
+	/*converts a fixed point number back to the nearest double*/
+	private static double toDouble(BigInteger value, int bits){
+		//keep only the top bits that fit in a long so that numbers with more than 1024 bits do not overflow
+		int shift = Math.max(0, value.bitLength() - 62);
+		return Math.scalb((double) value.shiftRight(shift).longValue(), shift - bits);
+	}
+
+	/*multiplies two fixed point numbers*/
+	private static BigInteger multiply(BigInteger a, BigInteger b, int bits){
+		return a.multiply(b).shiftRight(bits);
+	}
+
+	/*squares a fixed point number*/
+	private static BigInteger square(BigInteger a, int bits){
+		return a.multiply(a).shiftRight(bits);
+	}
+
+	/*returns the real part of the point the orbit was calculated for, rounded to a double*/
+	public double getPointReal(){
+		return pointReal;
+	}
+
+	/*returns the imaginary part of the point the orbit was calculated for, rounded to a double*/
+	public double getPointImag(){
+		return pointImag;
+	}
+
+	/*returns the real part of each point of the orbit*/
+	public double[] getReal(){
+		return real;
+	}
+
+	/*returns the imaginary part of each point of the orbit*/
+	public double[] getImag(){
+		return imag;
+	}
+
+	/*returns the squared distance of each point of the orbit from the origin*/
+	public double[] getModulusSquared(){
+		return modulusSquared;
+	}
+
+	/*returns the number of iterations the orbit was calculated for. The orbit has escaped if this is less than the
+	 * maximum number of iterations*/
+	public int getLength(){
+		return length;
+	}
+}
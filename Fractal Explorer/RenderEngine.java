@@ -0,0 +1,117 @@
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+public class RenderEngine {
+	//width and height in pixels of the square tiles that a frame is split into
+	public static final int TILE_SIZE = 64;
+
+	//one pool shared by every panel, sized to the number of cores available
+	private static final ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+	/*calculates the pixels of one rectangular tile. startX/startY are inclusive and endX/endY are exclusive.
+	 * Implementations must keep all iteration state in local variables as many tiles are rendered at the same time*/
+	public interface TileRenderer {
+		void renderTile(int startX, int startY, int endX, int endY);
+	}
+
+	/*splits a frame of the given size into tiles and renders all of them in parallel on the shared pool.
+	 * Returns once every tile has been rendered or the ticket has been cancelled*/
+	public static void render(int width, int height, RenderScheduler.Ticket ticket, TileRenderer renderer){
+		if(width <= 0 || height <= 0){
+			return;
+		}
+
+		int tilesX = (width + TILE_SIZE - 1) / TILE_SIZE;
+		int tilesY = (height + TILE_SIZE - 1) / TILE_SIZE;
+
+		pool.invoke(new TileTask(renderer, ticket, width, height, tilesX, 0, tilesX * tilesY));
+	}
+
+	/*a piece of work that is split into a number of parts, such as building a histogram with one histogram per part*/
+	public interface PartRenderer {
+		void renderPart(int part);
+	}
+
+	/*runs every part from 0 to parts - 1 in parallel on the shared pool. Returns once every part has been run or the
+	 * ticket has been cancelled*/
+	public static void renderParts(int parts, final RenderScheduler.Ticket ticket, final PartRenderer renderer){
+		final ArrayList<RecursiveAction> tasks = new ArrayList<RecursiveAction>();
+		for(int i = 0; i < parts; i++){
+			final int part = i;
+			tasks.add(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					if(!ticket.isCancelled()){
+						renderer.renderPart(part);
+					}
+				}
+			});
+		}
+
+		pool.invoke(new RecursiveAction() {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected void compute() {
+				invokeAll(tasks);
+			}
+		});
+	}
+
+	/*returns the number of threads used to render tiles*/
+	public static int getParallelism(){
+		return pool.getParallelism();
+	}
+
+	/*Renders a range of tiles. The range is split in half until only one tile is left so that idle
+	 * worker threads can steal the other half. Tiles near the set take far longer than tiles far away from it
+	 * so a fixed split per thread would leave most cores waiting for the slowest one*/
+	static class TileTask extends RecursiveAction {
+		private static final long serialVersionUID = 1L;
+
+		private final TileRenderer renderer;
+		private final RenderScheduler.Ticket ticket;
+		private final int width;
+		private final int height;
+		private final int tilesX;
+		private final int firstTile;
+		private final int lastTile;
+
+		TileTask(TileRenderer renderer, RenderScheduler.Ticket ticket, int width, int height, int tilesX, int firstTile, int lastTile){
+			this.renderer = renderer;
+			this.ticket = ticket;
+			this.width = width;
+			this.height = height;
+			this.tilesX = tilesX;
+			this.firstTile = firstTile;
+			this.lastTile = lastTile;
+		}
+
+		@Override
+		protected void compute() {
+			//skip the remaining tiles once a newer render has been requested
+			if(ticket.isCancelled()){
+				return;
+			}
+
+			//split the range in two until a single tile is left
+			if(lastTile - firstTile > 1){
+				int middle = (firstTile + lastTile) >>> 1;
+				invokeAll(new TileTask(renderer, ticket, width, height, tilesX, firstTile, middle),
+						new TileTask(renderer, ticket, width, height, tilesX, middle, lastTile));
+				return;
+			}
+
+			//convert the tile index to the pixel bounds of the tile, clipping the tiles at the right and bottom edges
+			int startX = (firstTile % tilesX) * TILE_SIZE;
+			int startY = (firstTile / tilesX) * TILE_SIZE;
+			int endX = Math.min(startX + TILE_SIZE, width);
+			int endY = Math.min(startY + TILE_SIZE, height);
+
+			renderer.renderTile(startX, startY, endX, endY);
+		}
+	}
+}
@@ -0,0 +1,208 @@
+import java.util.LinkedHashSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*Central scheduler for every render in the program. Each panel has its own lane and only the latest request for a lane
+ * is rendered: a request that has not started yet is dropped when a newer one arrives and a render that is in progress
+ * is cancelled. Renders check their ticket between tiles and rows and stop as soon as it has been cancelled*/
+public class RenderScheduler {
+	//worker threads which run the jobs of each lane. Daemon threads so that they never stop the program from closing
+	private static final ExecutorService executor = Executors.newCachedThreadPool(new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "Render scheduler");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private static final ConcurrentHashMap<Object, Lane> lanes = new ConcurrentHashMap<Object, Lane>();
+
+	private static final AtomicLong submitted = new AtomicLong();
+	private static final AtomicLong dropped = new AtomicLong();
+	private static final AtomicLong cancelled = new AtomicLong();
+	private static final AtomicLong completed = new AtomicLong();
+
+	/*a render that can be stopped part way through by checking its ticket*/
+	public interface RenderJob {
+		void render(Ticket ticket);
+	}
+
+	/*passed to a render so that it can check whether a newer request has made it stale*/
+	public static class Ticket {
+		//ticket for renders that must always finish, such as saving an image
+		public static final Ticket NEVER_CANCELLED = new Ticket(null);
+
+		private final RenderJob job;
+		private volatile boolean cancelled;
+
+		Ticket(RenderJob job){
+			this.job = job;
+		}
+
+		/*returns true once a newer request has been made for the same lane*/
+		public boolean isCancelled(){
+			return cancelled;
+		}
+	}
+
+	/*the requests for one panel. At most one job of a lane runs at a time and at most one is waiting*/
+	static class Lane implements Runnable {
+		private Ticket pending;
+		private Ticket running;
+		private boolean scheduled;
+
+		@Override
+		public void run() {
+			boolean emptied = false;
+			try{
+				while(true){
+					Ticket ticket;
+					synchronized(this){
+						ticket = pending;
+						pending = null;
+						running = ticket;
+						if(ticket == null){
+							scheduled = false;
+							emptied = true;
+							return;
+						}
+					}
+
+					try{
+						ticket.job.render(ticket);
+					}catch(RuntimeException e){
+						e.printStackTrace();
+					}
+
+					if(!ticket.isCancelled()){
+						completed.incrementAndGet();
+					}
+				}
+			}finally{
+				//a job threw an Error, such as running out of memory, which stops this worker. The lane is handed to a
+				//new worker if a request is waiting, otherwise the next request schedules it, so the panel keeps rendering
+				if(!emptied){
+					synchronized(this){
+						running = null;
+						if(pending != null){
+							executor.execute(this);
+						}else{
+							scheduled = false;
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/*requests a render for the given lane (normally the panel being rendered). Any older request for the same lane
+	 * that has not started is dropped and any render in progress for the lane is cancelled*/
+	public static void submit(Object lane, RenderJob job){
+		Lane queue = lanes.get(lane);
+		if(queue == null){
+			lanes.putIfAbsent(lane, new Lane());
+			queue = lanes.get(lane);
+		}
+		Ticket ticket = new Ticket(job);
+		submitted.incrementAndGet();
+
+		synchronized(queue){
+			if(queue.pending != null){
+				dropped.incrementAndGet();
+			}
+			queue.pending = ticket;
+
+			if(queue.running != null && !queue.running.cancelled){
+				queue.running.cancelled = true;
+				cancelled.incrementAndGet();
+			}
+
+			if(!queue.scheduled){
+				queue.scheduled = true;
+				executor.execute(queue);
+			}
+		}
+	}
+
+	/*requests a quick job for the given lane, such as coloring the last frame again, that waits for the render in progress
+	 * instead of cancelling it. Quick jobs that are waiting are run one after the other, and a job that is already
+	 * waiting is not added again. Nothing is added if a render is waiting, as it reads the latest settings when it
+	 * starts anyway. Returns false if the job was not added*/
+	public static boolean submitAfter(Object lane, RenderJob job){
+		Lane queue = lanes.get(lane);
+		if(queue == null){
+			lanes.putIfAbsent(lane, new Lane());
+			queue = lanes.get(lane);
+		}
+
+		synchronized(queue){
+			if(queue.pending != null && !(queue.pending.job instanceof QuickJobs)){
+				return false;
+			}
+			if(queue.pending == null){
+				queue.pending = new Ticket(new QuickJobs());
+			}
+			((QuickJobs) queue.pending.job).jobs.add(job);
+			submitted.incrementAndGet();
+
+			if(!queue.scheduled){
+				queue.scheduled = true;
+				executor.execute(queue);
+			}
+		}
+		return true;
+	}
+
+	/*the quick jobs waiting for a lane, run in the order they were added. Jobs are only added while it is waiting*/
+	static class QuickJobs implements RenderJob {
+		private final LinkedHashSet<RenderJob> jobs = new LinkedHashSet<RenderJob>();
+
+		@Override
+		public void render(Ticket ticket) {
+			for(RenderJob job : jobs){
+				if(ticket.isCancelled()){
+					return;
+				}
+				job.render(ticket);
+			}
+		}
+	}
+
+	/*runs a job that must not be cancelled, such as rendering an image to save, outside of every lane*/
+	public static void submitUncancellable(RenderJob job){
+		submitted.incrementAndGet();
+		executor.execute(new Runnable() {
+
+			@Override
+			public void run() {
+				job.render(Ticket.NEVER_CANCELLED);
+				completed.incrementAndGet();
+			}
+		});
+	}
+
+	/*returns the number of render requests made*/
+	public static long getSubmittedCount(){
+		return submitted.get();
+	}
+
+	/*returns the number of requests replaced by a newer request before they started*/
+	public static long getDroppedCount(){
+		return dropped.get();
+	}
+
+	/*returns the number of renders stopped part way through by a newer request*/
+	public static long getCancelledCount(){
+		return cancelled.get();
+	}
+
+	/*returns the number of renders that ran to the end*/
+	public static long getCompletedCount(){
+		return completed.get();
+	}
+}
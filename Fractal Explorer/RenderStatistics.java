@@ -0,0 +1,152 @@
+import java.text.DecimalFormat;
+import java.util.concurrent.atomic.LongAdder;
+
+/*Counters collected while one frame is rendered. Tiles add to the counters from many threads at once*/
+public class RenderStatistics {
+	private final LongAdder iterations = new LongAdder();
+	private final LongAdder skippedIterations = new LongAdder();
+	private final LongAdder pixelsCalculated = new LongAdder();
+	private final LongAdder pixels = new LongAdder();
+	private final LongAdder referenceOrbits = new LongAdder();
+	private final LongAdder tiles = new LongAdder();
+	private final LongAdder cachedTiles = new LongAdder();
+	private volatile long mirroredPixels;
+	private volatile String kernel;
+	private volatile long trapMemory;
+	private volatile int resumedIterations;
+
+	/*adds the iterations a tile calculated and the iterations it skipped for points found to be inside the set*/
+	public void addIterations(long calculated, long skipped){
+		iterations.add(calculated);
+		skippedIterations.add(skipped);
+	}
+
+	/*adds the number of pixels a tile calculated out of all the pixels in the tile*/
+	public void addPixels(long calculated, long total){
+		pixelsCalculated.add(calculated);
+		pixels.add(total);
+	}
+
+	/*counts a high precision reference orbit calculated for a deep zoom*/
+	public void addReferenceOrbit(){
+		referenceOrbits.increment();
+	}
+
+	/*counts a tile of a frame that is kept in the tile cache, and whether it was found in the cache instead of being
+	 * calculated*/
+	public void addTile(boolean cached){
+		tiles.increment();
+		if(cached){
+			cachedTiles.increment();
+		}
+	}
+
+	/*records the number of pixels copied from their mirror image instead of being calculated*/
+	public void setMirroredPixels(long mirroredPixels){
+		this.mirroredPixels = mirroredPixels;
+	}
+
+	/*records the name of the row kernel the frame was calculated with*/
+	public void setKernel(String kernel){
+		this.kernel = kernel;
+	}
+
+	/*records the memory in bytes used by the panel to keep the result of every Orbit Trap style*/
+	public void setTrapMemory(long trapMemory){
+		this.trapMemory = trapMemory;
+	}
+
+	/*records that the frame was carried on from a frame calculated up to the given iteration limit*/
+	public void setResumedIterations(int resumedIterations){
+		this.resumedIterations = resumedIterations;
+	}
+
+	/*returns the iteration limit of the frame this frame was carried on from, or 0 if it was calculated from the start*/
+	public int getResumedIterations(){
+		return resumedIterations;
+	}
+
+	/*returns the memory in bytes used to keep the result of every Orbit Trap style, or 0 if every style is not kept*/
+	public long getTrapMemory(){
+		return trapMemory;
+	}
+
+	/*returns the name of the row kernel the frame was calculated with, or null if it was not calculated with one*/
+	public String getKernel(){
+		return kernel;
+	}
+
+	/*returns the number of iterations that were calculated*/
+	public long getIterations(){
+		return iterations.sum();
+	}
+
+	/*returns the number of iterations skipped by the interior checks*/
+	public long getSkippedIterations(){
+		return skippedIterations.sum();
+	}
+
+	/*returns the number of pixels that were calculated rather than reused or filled in*/
+	public long getPixelsCalculated(){
+		return pixelsCalculated.sum();
+	}
+
+	/*returns the number of pixels in the frame*/
+	public long getPixels(){
+		return pixels.sum();
+	}
+
+	/*returns the number of pixels copied from their mirror image, or 0 if the frame was not mirrored*/
+	public long getMirroredPixels(){
+		return mirroredPixels;
+	}
+
+	/*returns the number of reference orbits calculated for a deep zoom, or 0 if the frame was not a deep zoom*/
+	public long getReferenceOrbits(){
+		return referenceOrbits.sum();
+	}
+
+	/*returns the number of tiles of the frame that were looked up in the tile cache, or 0 if the cache was not used*/
+	public long getTiles(){
+		return tiles.sum();
+	}
+
+	/*returns the number of tiles of the frame found in the tile cache*/
+	public long getCachedTiles(){
+		return cachedTiles.sum();
+	}
+
+	/*returns a short description of the statistics to show in the GUI*/
+	public String getSummary(){
+		DecimalFormat formatCount = new DecimalFormat("#,##0");
+		long calculated = getIterations();
+		long skipped = getSkippedIterations();
+		long total = Math.max(calculated + skipped, 1);
+		long pixelTotal = Math.max(getPixels(), 1);
+
+		String summary = "Iterations: " + formatCount.format(calculated) + ", interior skipped: " + formatCount.format(skipped)
+				+ " (" + (100 * skipped / total) + "%), pixels calculated: " + (100 * getPixelsCalculated() / pixelTotal) + "%";
+		if(mirroredPixels > 0){
+			summary += ", mirrored: " + (100 * mirroredPixels / pixelTotal) + "%";
+		}
+		if(getReferenceOrbits() > 0){
+			summary += ", reference orbits: " + getReferenceOrbits();
+		}
+		if(resumedIterations > 0){
+			summary += ", resumed from " + formatCount.format(resumedIterations) + " iterations";
+		}
+		if(kernel != null){
+			summary += ", kernel: " + kernel;
+		}
+		if(trapMemory > 0){
+			summary += ", all trap styles: " + new DecimalFormat("#,##0.0").format(trapMemory / (1024.0 * 1024.0)) + " MB";
+		}
+		if(getTiles() > 0){
+			summary += ", cached tiles: " + (100 * getCachedTiles() / getTiles()) + "% (cache hits: "
+					+ formatCount.format(TileCache.getMemoryHitCount() + TileCache.getDiskHitCount()) + ", from disk: "
+					+ formatCount.format(TileCache.getDiskHitCount()) + ", misses: " + formatCount.format(TileCache.getMissCount())
+					+ ", evictions: " + formatCount.format(TileCache.getEvictionCount() + TileCache.getDiskEvictionCount()) + ")";
+		}
+		return summary;
+	}
+}
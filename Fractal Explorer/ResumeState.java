@@ -0,0 +1,142 @@
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*The last point of every pixel of a frame that had not escaped by the iteration limit, along with the results of the
+ * frame, so that raising the iteration limit on the same view only carries on those pixels from where they stopped
+ * instead of calculating the whole frame again. Pixels found to be inside the set by the interior checks are not kept
+ * as they never escape. The points are kept per tile as the tiles of a frame are calculated in parallel, and a tile
+ * whose points are not all known (such as a tile taken from the tile cache) is calculated again in full*/
+public class ResumeState {
+	//most memory the points and results of one frame may take up. Frames with more are calculated again in full
+	public static final long MEMORY_LIMIT = 64L * 1024 * 1024;
+	//memory taken up by each point: its position and the two parts of z
+	private static final int POINT_MEMORY = 4 + 8 + 8;
+
+	private final String settings;
+	private final double minR;
+	private final double maxR;
+	private final double minI;
+	private final double maxI;
+	private final int width;
+	private final int height;
+	private final int maxIterations;
+	private final int tilesX;
+	private final Points[] tiles;
+	private final AtomicLong memory;
+	private volatile boolean full;
+	private volatile boolean anyPoints;
+	//copy of the results of the frame, only set once the frame has been shown
+	private IterationBuffer results;
+
+	/*the points of one tile that had not escaped, in the order of their pixels. Only used by the thread calculating
+	 * the tile until it has been added to the state*/
+	public static class Points {
+		private int[] positions = new int[64];
+		private double[] zr = new double[64];
+		private double[] zi = new double[64];
+		private int count;
+
+		/*adds the last point z reached by the pixel at the given position*/
+		public void add(int position, double zr, double zi){
+			if(count == positions.length){
+				positions = Arrays.copyOf(positions, count * 2);
+				this.zr = Arrays.copyOf(this.zr, count * 2);
+				this.zi = Arrays.copyOf(this.zi, count * 2);
+			}
+			positions[count] = position;
+			this.zr[count] = zr;
+			this.zi[count] = zi;
+			count++;
+		}
+
+		/*drops the unused end of the arrays once every point has been added*/
+		void trim(){
+			positions = Arrays.copyOf(positions, count);
+			zr = Arrays.copyOf(zr, count);
+			zi = Arrays.copyOf(zi, count);
+		}
+
+		/*returns the number of points*/
+		public int getCount(){
+			return count;
+		}
+
+		/*returns the position of the pixel of a point*/
+		public int getPosition(int index){
+			return positions[index];
+		}
+
+		/*returns the real part of the last z of a point*/
+		public double getReal(int index){
+			return zr[index];
+		}
+
+		/*returns the imaginary part of the last z of a point*/
+		public double getImag(int index){
+			return zi[index];
+		}
+	}
+
+	/*constructor. settings must hold everything apart from the iteration limit that changes the result of a pixel, and
+	 * the frame shows the given part of the complex plane with the given size in pixels*/
+	public ResumeState(String settings, double minR, double maxR, double minI, double maxI, int width, int height, int maxIterations){
+		this.settings = settings;
+		this.minR = minR;
+		this.maxR = maxR;
+		this.minI = minI;
+		this.maxI = maxI;
+		this.width = width;
+		this.height = height;
+		this.maxIterations = maxIterations;
+		tilesX = (width + RenderEngine.TILE_SIZE - 1) / RenderEngine.TILE_SIZE;
+		tiles = new Points[tilesX * ((height + RenderEngine.TILE_SIZE - 1) / RenderEngine.TILE_SIZE)];
+		//the copy of the results is counted from the start
+		memory = new AtomicLong((long) width * height * 4);
+	}
+
+	/*returns true if a frame with the given settings can be calculated by carrying on this one: the view and settings
+	 * are the same and only the iteration limit has been raised*/
+	public boolean canResume(String settings, double minR, double maxR, double minI, double maxI, int width, int height, int maxIterations){
+		return results != null && this.settings.equals(settings) && this.minR == minR && this.maxR == maxR
+				&& this.minI == minI && this.maxI == maxI && this.width == width && this.height == height
+				&& maxIterations > this.maxIterations;
+	}
+
+	/*returns the iteration limit the frame was calculated with, where its points carry on from*/
+	public int getMaxIterations(){
+		return maxIterations;
+	}
+
+	/*adds the points of the tile with the given top left pixel once every pixel of the tile is known. Points that would
+	 * take the state over MEMORY_LIMIT are not kept, and neither is the state*/
+	public void setPoints(int startX, int startY, Points points){
+		if(full || memory.addAndGet((long) points.count * POINT_MEMORY) > MEMORY_LIMIT){
+			full = true;
+			return;
+		}
+		points.trim();
+		tiles[(startY / RenderEngine.TILE_SIZE) * tilesX + startX / RenderEngine.TILE_SIZE] = points;
+		anyPoints = true;
+	}
+
+	/*returns the points of the tile with the given top left pixel, or null if they are not known*/
+	public Points getPoints(int startX, int startY){
+		return tiles[(startY / RenderEngine.TILE_SIZE) * tilesX + startX / RenderEngine.TILE_SIZE];
+	}
+
+	/*keeps a copy of the results of the frame once it has been shown. Returns false, keeping nothing, if the state
+	 * would take more than MEMORY_LIMIT or no tile has its points, such as a frame mostly reused from the last one*/
+	public boolean setResults(IterationBuffer frameResults){
+		if(full || !anyPoints){
+			return false;
+		}
+		results = new IterationBuffer(frameResults);
+		return true;
+	}
+
+	/*copies the results of the frame into a buffer of the same size, so that the pixels that escaped are not calculated
+	 * again*/
+	public void copyResultsTo(IterationBuffer target){
+		target.copyFrom(results);
+	}
+}
@@ -0,0 +1,183 @@
+/*Escape time kernel that iterates a whole row of points at once instead of one point at a time, so that the points can
+ * be calculated side by side in the lanes of SIMD registers. The vector version (simd/VectorRowKernel.java) needs the
+ * jdk.incubator.vector module, so it is compiled separately and loaded by name, and the scalar kernels are used when it
+ * is not there.
+ * Both versions give exactly the same iteration counts and last points as FloatKernel and IterationKernel*/
+public abstract class RowKernel {
+	//why the vector kernel is not used, given by load() when the SIMD registers are too narrow
+	static final String NARROW_REGISTERS = "the SIMD registers hold fewer than 4 doubles";
+
+	//why the vector kernel was not loaded, or null if it was. Set by load() so it is declared first
+	private static String vectorProblem;
+	private static final RowKernel instance = load();
+
+	/*The points of one row, filled in by a tile and then iterated by the kernel. Each tile creates its own row, so the
+	 * arrays are never shared between threads. The arrays are longer than the row so that the vector kernel can always
+	 * load whole lane groups*/
+	public static class Row {
+		public final int[] positions;
+		public final double[] zr;
+		public final double[] zi;
+		public final double[] cr;
+		public final double[] ci;
+		public final int[] iterations;
+		public final int[] skipped;
+		public final double[] lastR;
+		public final double[] lastI;
+		//points converted to floats and lanes stored out of registers, used by the vector kernel
+		final float[][] floats;
+		final double[][] lanes;
+		private int count;
+
+		Row(int capacity, int padding){
+			int length = ((capacity + padding - 1) / padding) * padding;
+			positions = new int[length];
+			zr = new double[length];
+			zi = new double[length];
+			cr = new double[length];
+			ci = new double[length];
+			iterations = new int[length];
+			skipped = new int[length];
+			lastR = new double[length];
+			lastI = new double[length];
+			floats = new float[6][length];
+			lanes = new double[2][length];
+		}
+
+		/*empties the row so that a new row of points can be added*/
+		public void clear(){
+			count = 0;
+		}
+
+		/*adds a point to the row. position is where the result goes, usually the index of the pixel*/
+		public void add(int position, double zr, double zi, double cr, double ci){
+			positions[count] = position;
+			this.zr[count] = zr;
+			this.zi[count] = zi;
+			this.cr[count] = cr;
+			this.ci[count] = ci;
+			count++;
+		}
+
+		/*returns the number of points in the row*/
+		public int getCount(){
+			return count;
+		}
+
+		/*copies the result of the point at the given place in the row into a state array in the same layout as
+		 * IterationKernel, so that the smooth coloring can be worked out in the usual way. Returns the iterations taken*/
+		public int getResult(int index, double[] state){
+			state[IterationKernel.REAL] = lastR[index];
+			state[IterationKernel.IMAG] = lastI[index];
+			state[IterationKernel.SKIPPED] = skipped[index];
+			return iterations[index];
+		}
+	}
+
+	/*returns the fastest kernel available*/
+	public static RowKernel getInstance(){
+		return instance;
+	}
+
+	/*returns why the vector kernel was not loaded, or null if it was*/
+	public static String getVectorProblem(){
+		return vectorProblem;
+	}
+
+	/*returns a scalar kernel that iterates every point with the given kernel whatever fractal type is asked for, used
+	 * for custom formulas which the vector kernel cannot calculate*/
+	public static RowKernel forKernel(FractalKernel kernel){
+		return new ScalarRowKernel(kernel);
+	}
+
+	/*loads the vector kernel if it has been compiled into the class path and the jdk.incubator.vector module has been
+	 * added (--add-modules jdk.incubator.vector, see VectorRowKernel), otherwise returns the scalar kernel and records why
+	 * in vectorProblem. The scalar kernel is also used when the vector kernel finds the SIMD registers too narrow*/
+	private static RowKernel load(){
+		try{
+			RowKernel kernel = (RowKernel) Class.forName("VectorRowKernel").getMethod("create").invoke(null);
+			if(kernel != null){
+				return kernel;
+			}
+			vectorProblem = NARROW_REGISTERS;
+		}catch(ClassNotFoundException e){
+			vectorProblem = "VectorRowKernel.class is not in the class path";
+		}catch(LinkageError e){
+			vectorProblem = "the jdk.incubator.vector module has not been added";
+		}catch(Exception e){
+			vectorProblem = e.toString();
+		}
+		return new ScalarRowKernel();
+	}
+
+	/*creates a row that can hold up to capacity points*/
+	public Row createRow(int capacity){
+		return new Row(capacity, getPadding());
+	}
+
+	/*returns the number of points the arrays of a row have to be a multiple of*/
+	protected abstract int getPadding();
+
+	/*returns a short name of the kernel to show in the render statistics*/
+	public abstract String getName();
+
+	/*returns true if the given fractal type is iterated several points at a time, in floats when useFloat is set or in
+	 * doubles when it is not*/
+	public boolean isVectorized(int fractalType, boolean useFloat){
+		return false;
+	}
+
+	/*returns the name of the kernel along with whether the given fractal type is iterated in float or double lanes, to
+	 * show in the render statistics*/
+	public String describe(int fractalType, boolean useFloat){
+		if(useFloat && isVectorized(fractalType, true)){
+			return getName() + ", float lanes";
+		}
+		if(isVectorized(fractalType, false)){
+			return getName() + ", double lanes";
+		}
+		return "scalar";
+	}
+
+	/*iterates every point of the row with the selected fractal type until it escapes or maxIterations is reached. useFloat
+	 * allows the kernel to use floats, for kernels that are faster with them. The results are stored in the row*/
+	public abstract void escape(int fractalType, boolean useFloat, Row row, int maxIterations);
+
+	/*The fallback used when the vector module is not available. Iterates one point at a time with the scalar kernels,
+	 * always in doubles as a scalar float iteration is no faster than a double one*/
+	static class ScalarRowKernel extends RowKernel {
+		//kernel used for every point when set, instead of the kernel of the fractal type
+		private final FractalKernel fixedKernel;
+
+		ScalarRowKernel(){
+			this(null);
+		}
+
+		ScalarRowKernel(FractalKernel fixedKernel){
+			this.fixedKernel = fixedKernel;
+		}
+
+		@Override
+		protected int getPadding() {
+			return 1;
+		}
+
+		@Override
+		public String getName() {
+			return "scalar";
+		}
+
+		@Override
+		public void escape(int fractalType, boolean useFloat, Row row, int maxIterations) {
+			double[] state = new double[IterationKernel.STATE_SIZE];
+			FractalKernel kernel = fixedKernel != null ? fixedKernel : FractalKernel.create(fractalType, false, 0);
+
+			for(int k = 0; k < row.count; k++){
+				row.iterations[k] = kernel.iterate(row.zr[k], row.zi[k], row.cr[k], row.ci[k], maxIterations, state);
+				row.lastR[k] = state[IterationKernel.REAL];
+				row.lastI[k] = state[IterationKernel.IMAG];
+				row.skipped[k] = (int) state[IterationKernel.SKIPPED];
+			}
+		}
+	}
+}
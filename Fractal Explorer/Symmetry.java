@@ -0,0 +1,163 @@
+import java.util.concurrent.atomic.LongAdder;
+
+/*The symmetry of the fractal shown by a frame, used to copy the pixels that are the mirror image of another pixel of the
+ * same frame instead of calculating them:
+ *  - the Mandelbrot and Triplebrot sets are the same when mirrored in the real axis, as the orbit of the conjugate of c
+ *    is the conjugate of the orbit of c
+ *  - their Julia sets are the same when rotated by 180 degrees, as z and -z go to the same point in one iteration
+ *  - Julia sets of the Burning Ship and Bird of Prey are the same when mirrored in either axis, as their formulas only use
+ *    the size of each part of z, so the four points go to the same point in one iteration
+ * The main Burning Ship and Bird of Prey are left out as the sign of each part of c changes the orbit, and so are custom
+ * formulas. Orbit Traps of the main Mandelbrot and Triplebrot only keep the symmetry if the trap is the same when
+ * mirrored in the real axis, while the Julia orbits are the same from the first iteration so every trap keeps it.
+ * A pixel is only mirrored when the pixels of the frame land on each other under the symmetry, to within TOLERANCE of a
+ * pixel, and of each set of pixels that land on each other the one nearest the top right is calculated*/
+public class Symmetry {
+	//symmetry of frames that have none, which mirrors nothing
+	public static final Symmetry NONE = new Symmetry(false, false, false, 0, 0, 0, 0);
+
+	//how close, as a fraction of a pixel, the pixels have to land on each other, the same as the pixels reused by a zoom
+	//preview
+	private static final double TOLERANCE = 1e-6;
+
+	//mirror in the real axis, mirror in the imaginary axis and rotation by 180 degrees
+	private final boolean flipRows;
+	private final boolean flipColumns;
+	private final boolean rotate;
+	//column x is mirrored onto column mirrorX - x and row y onto row mirrorY - y
+	private final int mirrorX;
+	private final int mirrorY;
+	private final int width;
+	private final int height;
+
+	/*constructor*/
+	private Symmetry(boolean flipRows, boolean flipColumns, boolean rotate, int mirrorX, int mirrorY, int width, int height){
+		this.flipRows = flipRows;
+		this.flipColumns = flipColumns;
+		this.rotate = rotate;
+		this.mirrorX = mirrorX;
+		this.mirrorY = mirrorY;
+		this.width = width;
+		this.height = height;
+	}
+
+	/*returns the symmetry of a frame of the main fractal of the given size showing the given part of the complex plane.
+	 * trapStyle is the Orbit Trap style, -1 for escape time coloring or IterationKernel.TRAP_STYLES when every style is
+	 * kept*/
+	public static Symmetry forMain(int fractalType, int trapStyle, double minR, double maxR, double minI, double maxI, int width, int height){
+		//only the ellipse, circle, dots, rings and lines traps are the same when mirrored in the real axis
+		if((fractalType != 0 && fractalType != 1) || trapStyle > 4){
+			return NONE;
+		}
+		return create(true, false, false, minR, maxR, minI, maxI, width, height);
+	}
+
+	/*returns the symmetry of a frame of a Julia set of the given size showing the given part of the complex plane*/
+	public static Symmetry forJulia(int fractalType, double minR, double maxR, double minI, double maxI, int width, int height){
+		if(fractalType == 0 || fractalType == 1){
+			return create(false, false, true, minR, maxR, minI, maxI, width, height);
+		}
+		if(fractalType == 2 || fractalType == 3){
+			return create(true, true, true, minR, maxR, minI, maxI, width, height);
+		}
+		return NONE;
+	}
+
+	/*returns the symmetry with the given mirrors, leaving out the ones the pixels of the frame do not line up with*/
+	private static Symmetry create(boolean flipRows, boolean flipColumns, boolean rotate, double minR, double maxR, double minI, double maxI,
+			int width, int height){
+		//the imaginary axis is mirrorX / 2 pixels from the left and the real axis mirrorY / 2 pixels from the top
+		double axisX = -2 * minR * width / (maxR - minR);
+		double axisY = 2 * maxI * height / (maxI - minI);
+		boolean columns = Math.abs(axisX - Math.rint(axisX)) < TOLERANCE && Math.abs(axisX) < 2.0 * width;
+		boolean rows = Math.abs(axisY - Math.rint(axisY)) < TOLERANCE && Math.abs(axisY) < 2.0 * height;
+
+		flipRows = flipRows && rows;
+		flipColumns = flipColumns && columns;
+		rotate = rotate && rows && columns;
+		if(!flipRows && !flipColumns && !rotate){
+			return NONE;
+		}
+		return new Symmetry(flipRows, flipColumns, rotate, (int) Math.rint(axisX), (int) Math.rint(axisY), width, height);
+	}
+
+	/*returns the index of the pixel that pixel (x, y) is a mirror image of, or -1 if the pixel has to be calculated*/
+	public int getSource(int x, int y){
+		int bestX = x;
+		int bestY = y;
+		if(flipRows && isBetter(x, mirrorY - y, bestX, bestY)){
+			bestY = mirrorY - y;
+		}
+		if(flipColumns && isBetter(mirrorX - x, y, bestX, bestY)){
+			bestX = mirrorX - x;
+			bestY = y;
+		}
+		if(rotate && isBetter(mirrorX - x, mirrorY - y, bestX, bestY)){
+			bestX = mirrorX - x;
+			bestY = mirrorY - y;
+		}
+		return bestX == x && bestY == y ? -1 : bestY * width + bestX;
+	}
+
+	/*returns true if pixel (x, y) is in the frame and nearer the top right than pixel (bestX, bestY), going by the
+	 * side of the real axis first and then the side of the imaginary axis*/
+	private boolean isBetter(int x, int y, int bestX, int bestY){
+		if(x < 0 || x >= width || y < 0 || y >= height){
+			return false;
+		}
+		return getRank(x, y) > getRank(bestX, bestY);
+	}
+
+	/*returns the rank of a pixel by which sides of the axes it is on, highest above the real axis and right of the
+	 * imaginary axis*/
+	private int getRank(int x, int y){
+		int rank = 0;
+		if(flipRows || rotate){
+			rank += 3 * Integer.signum(mirrorY - 2 * y);
+		}
+		if(flipColumns || rotate){
+			rank += Integer.signum(2 * x - mirrorX);
+		}
+		return rank;
+	}
+
+	/*returns true if the frame has pixels that are mirrored instead of calculated*/
+	public boolean hasMirror(){
+		return flipRows || flipColumns || rotate;
+	}
+
+	/*copies every mirrored pixel of the frame from the pixel it is a mirror image of and colors it, once every other pixel
+	 * has been calculated. finished, which may be null, is called for each tile with mirrored pixels once they have been
+	 * copied. Nothing is copied if the ticket was cancelled before every other pixel was calculated. Returns the number
+	 * of pixels copied*/
+	public long mirror(final int[] pixels, final IterationBuffer results, final Coloring coloring, RenderScheduler.Ticket ticket,
+			final RenderEngine.TileRenderer finished){
+		if(!hasMirror() || ticket.isCancelled()){
+			return 0;
+		}
+		final LongAdder copied = new LongAdder();
+
+		RenderEngine.render(width, height, ticket, new RenderEngine.TileRenderer() {
+
+			@Override
+			public void renderTile(int startX, int startY, int endX, int endY) {
+				long count = 0;
+				for(int i = startY; i < endY; i++){
+					for(int j = startX; j < endX; j++){
+						int source = getSource(j, i);
+						if(source >= 0){
+							results.copyPixel(i*width + j, results, source);
+							pixels[i*width + j] = results.color(i*width + j, coloring);
+							count++;
+						}
+					}
+				}
+				copied.add(count);
+				if(count > 0 && finished != null){
+					finished.renderTile(startX, startY, endX, endY);
+				}
+			}
+		});
+		return copied.sum();
+	}
+}
@@ -0,0 +1,402 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/*Cache of the smooth values of tiles that have been calculated, so that going back to a view that has been seen before
+ * (such as with Reset Scale) only colors the cached values instead of calculating them again. Tiles are found by the
+ * settings of the frame and their place on a zoom grid: the pixel spacing is rounded to one of ZOOM_STEPS levels for
+ * every halving of the scale and the corner of the tile is counted in pixels of that spacing. The most recently used
+ * tiles are kept in memory up to MEMORY_LIMIT. Tiles pushed out of memory are compressed into files in a directory of
+ * the user's home by a background thread, which are kept up to DISK_LIMIT with the least recently used deleted first.
+ * The directory can only be read by its owner so that no other user can see the tiles or plant tiles of their own, and
+ * it is locked by the first running copy of the program. Other copies only keep tiles in memory, as the files and the
+ * space they take up are only tracked by the copy that owns them*/
+public class TileCache {
+	private static final long MEMORY_LIMIT = 64L * 1024 * 1024;
+	private static final long DISK_LIMIT = 256L * 1024 * 1024;
+	//levels of the zoom grid for each halving of the pixel spacing
+	private static final int ZOOM_STEPS = 64;
+	//how close, as a fraction of a pixel, the pixels of a cached tile have to be to the pixels of the tile being rendered,
+	//the same as the pixels reused by a zoom preview
+	private static final double TOLERANCE = 1e-6;
+	//memory a tile takes up on top of its values, for the map entry, the key and the place of the tile
+	private static final long ENTRY_OVERHEAD = 256;
+	//the version is part of the name so that files written by an older version of the program are never read
+	private static final File directory = new File(System.getProperty("user.home"), ".fractal-explorer-tiles-1");
+	//age in milliseconds after which a file left behind by a write that did not finish is deleted
+	private static final long STALE_AGE = 60L * 60 * 1000;
+
+	//tiles in memory, least recently used first
+	private static final LinkedHashMap<String, Entry> memory = new LinkedHashMap<String, Entry>(256, 0.75f, true);
+	private static long memoryBytes;
+	//tiles pushed out of memory that have not been written to a file yet
+	private static final HashMap<String, Entry> writing = new HashMap<String, Entry>();
+	//files of the tiles on disk and their size, least recently used first. Read from the directory when first needed
+	private static LinkedHashMap<String, Long> files;
+	private static long diskBytes;
+	//lock on the directory, or null if the tiles cannot be kept on disk. Held until the program closes
+	private static FileLock lock;
+
+	//writes the tiles pushed out of memory one at a time. A daemon thread so that it never stops the program from closing
+	private static final ExecutorService writer = Executors.newSingleThreadExecutor(new ThreadFactory() {
+
+		@Override
+		public Thread newThread(Runnable r) {
+			Thread thread = new Thread(r, "Tile cache writer");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+
+	private static final AtomicLong memoryHits = new AtomicLong();
+	private static final AtomicLong diskHits = new AtomicLong();
+	private static final AtomicLong misses = new AtomicLong();
+	private static final AtomicLong evictions = new AtomicLong();
+	private static final AtomicLong diskEvictions = new AtomicLong();
+
+	/*the place of one tile of a frame: the point of its top left pixel, the spacing of its pixels and its size*/
+	public static class Tile {
+		private final String key;
+		private final double x;
+		private final double y;
+		private final double spacingR;
+		private final double spacingI;
+		private final int width;
+		private final int height;
+
+		Tile(String key, double x, double y, double spacingR, double spacingI, int width, int height){
+			this.key = key;
+			this.x = x;
+			this.y = y;
+			this.spacingR = spacingR;
+			this.spacingI = spacingI;
+			this.width = width;
+			this.height = height;
+		}
+
+		/*returns true if every pixel of the other tile is within TOLERANCE of the same pixel of this tile*/
+		boolean matches(Tile other){
+			return width == other.width && height == other.height
+					&& Math.abs(x - other.x) < TOLERANCE * spacingR && Math.abs(y - other.y) < TOLERANCE * spacingI
+					&& Math.abs(spacingR - other.spacingR) * width < TOLERANCE * spacingR
+					&& Math.abs(spacingI - other.spacingI) * height < TOLERANCE * spacingI;
+		}
+	}
+
+	/*a cached tile along with its smooth values, stored row by row*/
+	static class Entry {
+		final Tile tile;
+		final float[] values;
+
+		Entry(Tile tile, float[] values){
+			this.tile = tile;
+			this.values = values;
+		}
+
+		long getMemory(){
+			return (long) values.length * 4 + ENTRY_OVERHEAD;
+		}
+	}
+
+	/*returns the place of a tile of the given size in pixels whose top left pixel is the point (x, y), with pixels
+	 * spacingR apart along the real axis and spacingI apart along the imaginary axis. settings must hold everything
+	 * that changes the result of a pixel apart from its point, as tiles are only shared between frames with equal settings*/
+	public static Tile locate(String settings, double x, double y, double spacingR, double spacingI, int width, int height){
+		String key = settings + "|" + level(spacingR) + "," + level(spacingI) + "|" + Math.round(x / spacingR) + ","
+				+ Math.round(y / spacingI) + "|" + width + "x" + height;
+		return new Tile(key, x, y, spacingR, spacingI, width, height);
+	}
+
+	/*returns the level of the zoom grid nearest the given pixel spacing*/
+	private static long level(double spacing){
+		return Math.round(Math.log(spacing) / Math.log(2) * ZOOM_STEPS);
+	}
+
+	/*returns the cached smooth values of the tile, row by row, or null if the tile is not cached. The values are shared
+	 * with the cache and must not be changed*/
+	public static float[] get(Tile tile){
+		Entry entry;
+		String file = null;
+		synchronized(TileCache.class){
+			entry = memory.get(tile.key);
+			if(entry == null){
+				entry = writing.get(tile.key);
+			}
+			if(entry == null && getFiles().get(getFileName(tile.key)) != null){
+				file = getFileName(tile.key);
+			}
+		}
+
+		if(entry != null && entry.tile.matches(tile)){
+			memoryHits.incrementAndGet();
+			return entry.values;
+		}
+		if(entry == null && file != null){
+			//the file may have been deleted since, in which case the tile is not cached
+			entry = read(new File(directory, file), tile.key);
+			if(entry != null && entry.tile.matches(tile)){
+				diskHits.incrementAndGet();
+				store(entry);
+				return entry.values;
+			}
+		}
+		misses.incrementAndGet();
+		return null;
+	}
+
+	/*caches the smooth values of a tile that has been calculated, row by row. The values are kept by the cache and must
+	 * not be changed afterwards*/
+	public static void put(Tile tile, float[] values){
+		store(new Entry(tile, values));
+	}
+
+	/*adds a tile to memory, pushing the least recently used tiles out to disk until the tiles in memory fit in
+	 * MEMORY_LIMIT. The tiles are dropped instead if they cannot be kept on disk*/
+	private static synchronized void store(Entry entry){
+		Entry old = memory.put(entry.tile.key, entry);
+		if(old != null){
+			memoryBytes -= old.getMemory();
+		}
+		memoryBytes += entry.getMemory();
+
+		Iterator<Entry> eldest = memory.values().iterator();
+		while(memoryBytes > MEMORY_LIMIT && eldest.hasNext()){
+			final Entry evicted = eldest.next();
+			eldest.remove();
+			memoryBytes -= evicted.getMemory();
+			evictions.incrementAndGet();
+
+			getFiles();
+			if(lock == null){
+				continue;
+			}
+			writing.put(evicted.tile.key, evicted);
+			writer.execute(new Runnable() {
+
+				@Override
+				public void run() {
+					write(evicted);
+				}
+			});
+		}
+	}
+
+	/*writes a tile pushed out of memory to its file, then deletes the least recently used files until the files fit in
+	 * DISK_LIMIT. Only run by the writer thread*/
+	private static void write(Entry entry){
+		String name = getFileName(entry.tile.key);
+		File file = new File(directory, name);
+		File temp = new File(directory, name + ".tmp");
+		//the files already on disk are read first so that the file being written is not taken as one left behind
+		getFiles();
+		boolean written;
+		try{
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(temp))));
+			try{
+				Tile tile = entry.tile;
+				out.writeUTF(tile.key);
+				out.writeDouble(tile.x);
+				out.writeDouble(tile.y);
+				out.writeDouble(tile.spacingR);
+				out.writeDouble(tile.spacingI);
+				out.writeInt(tile.width);
+				out.writeInt(tile.height);
+				for(float value : entry.values){
+					out.writeFloat(value);
+				}
+			}finally{
+				out.close();
+			}
+			written = temp.renameTo(file) || (file.delete() && temp.renameTo(file));
+		}catch(IOException e){
+			written = false;
+		}
+		if(!written){
+			temp.delete();
+		}
+
+		synchronized(TileCache.class){
+			if(writing.get(entry.tile.key) == entry){
+				writing.remove(entry.tile.key);
+			}
+			if(!written){
+				return;
+			}
+			Long old = getFiles().put(name, file.length());
+			if(old != null){
+				diskBytes -= old;
+			}
+			diskBytes += file.length();
+
+			Iterator<Map.Entry<String, Long>> eldest = files.entrySet().iterator();
+			while(diskBytes > DISK_LIMIT && eldest.hasNext()){
+				Map.Entry<String, Long> evicted = eldest.next();
+				eldest.remove();
+				diskBytes -= evicted.getValue();
+				new File(directory, evicted.getKey()).delete();
+				diskEvictions.incrementAndGet();
+			}
+		}
+	}
+
+	/*reads a tile from its file, or returns null if the file cannot be read or holds a different tile*/
+	private static Entry read(File file, String key){
+		try{
+			DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+			try{
+				//two keys may share a file name, so the key is checked
+				if(!in.readUTF().equals(key)){
+					return null;
+				}
+				double x = in.readDouble();
+				double y = in.readDouble();
+				double spacingR = in.readDouble();
+				double spacingI = in.readDouble();
+				int width = in.readInt();
+				int height = in.readInt();
+				float[] values = new float[width * height];
+				for(int i = 0; i < values.length; i++){
+					values[i] = in.readFloat();
+				}
+				return new Entry(new Tile(key, x, y, spacingR, spacingI, width, height), values);
+			}finally{
+				in.close();
+			}
+		}catch(IOException e){
+			return null;
+		}
+	}
+
+	/*returns the name of the file a tile is written to*/
+	private static String getFileName(String key){
+		return UUID.nameUUIDFromBytes(key.getBytes(StandardCharsets.UTF_8)) + ".tile";
+	}
+
+	/*returns the files of the tiles on disk, reading them from the directory the first time so that tiles written by
+	 * earlier runs of the program can be used. Files are ordered by when they were last written. Empty if the tiles
+	 * cannot be kept on disk*/
+	private static synchronized LinkedHashMap<String, Long> getFiles(){
+		if(files == null){
+			files = new LinkedHashMap<String, Long>(256, 0.75f, true);
+			lock = openDirectory();
+			File[] found = lock != null ? directory.listFiles() : null;
+			if(found != null){
+				Arrays.sort(found, new Comparator<File>() {
+
+					@Override
+					public int compare(File a, File b) {
+						return Long.compare(a.lastModified(), b.lastModified());
+					}
+				});
+				for(File file : found){
+					if(file.getName().endsWith(".tile")){
+						files.put(file.getName(), file.length());
+						diskBytes += file.length();
+					}else if(file.getName().endsWith(".tile.tmp") && System.currentTimeMillis() - file.lastModified() > STALE_AGE){
+						//left behind by a write that did not finish
+						file.delete();
+					}
+				}
+			}
+		}
+		return files;
+	}
+
+	/*creates the directory if it does not exist, makes it so that only the user can read and write it and locks it.
+	 * Returns the lock, or null if the directory cannot be made, belongs to another user or is locked by another copy of
+	 * the program*/
+	private static FileLock openDirectory(){
+		FileChannel channel = null;
+		try{
+			if(!directory.isDirectory() && !directory.mkdir()){
+				return null;
+			}
+			if(!Files.getOwner(directory.toPath()).getName().equals(System.getProperty("user.name"))){
+				return null;
+			}
+			//also done to a directory that already exists, in case it was made by hand or by an older version
+			directory.setReadable(false, false);
+			directory.setWritable(false, false);
+			directory.setExecutable(false, false);
+			directory.setReadable(true, true);
+			directory.setWritable(true, true);
+			directory.setExecutable(true, true);
+
+			channel = new RandomAccessFile(new File(directory, "lock"), "rw").getChannel();
+			FileLock directoryLock = channel.tryLock();
+			if(directoryLock == null){
+				channel.close();
+			}
+			return directoryLock;
+		}catch(IOException | OverlappingFileLockException | UnsupportedOperationException | SecurityException e){
+			if(channel != null){
+				try{
+					channel.close();
+				}catch(IOException closeFailed){
+					//nothing left to do
+				}
+			}
+			return null;
+		}
+	}
+
+	/*returns the number of tiles found in memory*/
+	public static long getMemoryHitCount(){
+		return memoryHits.get();
+	}
+
+	/*returns the number of tiles read back from disk*/
+	public static long getDiskHitCount(){
+		return diskHits.get();
+	}
+
+	/*returns the number of tiles that were not cached and had to be calculated*/
+	public static long getMissCount(){
+		return misses.get();
+	}
+
+	/*returns the number of tiles pushed out of memory to disk*/
+	public static long getEvictionCount(){
+		return evictions.get();
+	}
+
+	/*returns the number of tiles deleted from disk to keep within DISK_LIMIT*/
+	public static long getDiskEvictionCount(){
+		return diskEvictions.get();
+	}
+
+	/*returns the memory in bytes taken up by the tiles in memory*/
+	public static synchronized long getMemoryUsed(){
+		return memoryBytes;
+	}
+
+	/*returns the space in bytes taken up by the files of the tiles on disk*/
+	public static synchronized long getDiskUsed(){
+		getFiles();
+		return diskBytes;
+	}
+}
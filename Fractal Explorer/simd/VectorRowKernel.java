@@ -0,0 +1,637 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorSpecies;
+
+/*Row kernel built on the Vector API, which iterates as many points at once as fit in a SIMD register: 8 floats or 4
+ * doubles with AVX2, twice that with AVX-512. Every lane does exactly the same arithmetic as FloatKernel and
+ * IterationKernel, in the same order and without fused multiply adds, so the results are identical.
+ * All the lanes of a group step together. A mask keeps track of the lanes that are still iterating, and when a lane
+ * escapes or is found in a cycle its result is written out and it is masked off. The group stops once every lane is done.
+ * Fractal types are only iterated in lanes where KernelCheck has measured them to be faster than the scalar kernels,
+ * the others are passed to the scalar kernels.
+ * Only loaded by RowKernel when the jdk.incubator.vector module has been added.
+ * Kept apart from the other sources so that they compile with a plain "javac *.java" and use the scalar kernels. To use
+ * this kernel, compile it along with them into the same directory, which "-d ." does as this file is in simd/, and run
+ * with the module added:
+ *   javac --add-modules jdk.incubator.vector -d . *.java simd/VectorRowKernel.java
+ *   java --add-modules jdk.incubator.vector Main*/
+public class VectorRowKernel extends RowKernel {
+	private static final VectorSpecies<Float> FLOATS = FloatVector.SPECIES_PREFERRED;
+	private static final VectorSpecies<Double> DOUBLES = DoubleVector.SPECIES_PREFERRED;
+	//fractal types, by number, that are faster in double and in float lanes than with the scalar kernels. Measured with
+	//KernelCheck at 1.6 to 5.5 times faster with AVX-512. KernelCheck fails if a type set here is less than
+	//KernelCheck.MIN_SPEEDUP times faster
+	private static final boolean[] FASTER_DOUBLES = {true, true, true, true};
+	private static final boolean[] FASTER_FLOATS = {true, true, true, true};
+
+	//kernel used for the fractal types that are not faster in lanes
+	private final RowKernel scalar = new ScalarRowKernel();
+
+	/*constructor*/
+	private VectorRowKernel(){
+	}
+
+	/*returns the vector kernel, or null if the SIMD registers are narrower than 256 bits so that RowKernel uses the scalar
+	 * kernels instead. Two double lanes were found to be far slower than the scalar kernels*/
+	public static RowKernel create(){
+		if(DOUBLES.length() < 4){
+			return null;
+		}
+		return new VectorRowKernel();
+	}
+
+	@Override
+	protected int getPadding() {
+		return FLOATS.length();
+	}
+
+	@Override
+	public String getName() {
+		return "SIMD " + FLOATS.length() + " floats, " + DOUBLES.length() + " doubles";
+	}
+
+	@Override
+	public boolean isVectorized(int fractalType, boolean useFloat) {
+		if(fractalType < 0 || fractalType >= FASTER_DOUBLES.length){
+			return false;
+		}
+		return useFloat ? FASTER_FLOATS[fractalType] : FASTER_DOUBLES[fractalType];
+	}
+
+	@Override
+	public void escape(int fractalType, boolean useFloat, Row row, int maxIterations) {
+		//floats are only allowed, so double lanes are used when float lanes are not faster
+		if(isVectorized(fractalType, useFloat)){
+			if(useFloat){
+				escapeFloats(fractalType, row, maxIterations);
+			}else{
+				escapeDoubles(fractalType, row, maxIterations);
+			}
+		}else if(useFloat && isVectorized(fractalType, false)){
+			escapeDoubles(fractalType, row, maxIterations);
+		}else{
+			scalar.escape(fractalType, useFloat, row, maxIterations);
+		}
+	}
+
+	/*iterates the row in float lanes*/
+	private void escapeFloats(int fractalType, Row row, int maxIterations){
+		int count = row.getCount();
+		float[] startR = row.floats[0];
+		float[] startI = row.floats[1];
+		float[] pointR = row.floats[2];
+		float[] pointI = row.floats[3];
+		for(int k = 0; k < count; k++){
+			startR[k] = (float) row.zr[k];
+			startI[k] = (float) row.zi[k];
+			pointR[k] = (float) row.cr[k];
+			pointI[k] = (float) row.ci[k];
+		}
+
+		//the fractal type is checked once per group of lanes rather than once per iteration
+		for(int k = 0; k < count; k += FLOATS.length()){
+			switch (fractalType) {
+			case 1:  triplebrotFloats(row, k, maxIterations);  break;
+
+			case 2:  burningShipFloats(row, k, maxIterations);  break;
+
+			case 3:  birdOfPreyFloats(row, k, maxIterations);  break;
+
+			default: mandelbrotFloats(row, k, maxIterations);  break;
+			}
+		}
+	}
+
+	/*iterates the row in double lanes*/
+	private void escapeDoubles(int fractalType, Row row, int maxIterations){
+		int count = row.getCount();
+
+		//the fractal type is checked once per group of lanes rather than once per iteration
+		for(int k = 0; k < count; k += DOUBLES.length()){
+			switch (fractalType) {
+			case 1:  triplebrotDoubles(row, k, maxIterations);  break;
+
+			case 2:  burningShipDoubles(row, k, maxIterations);  break;
+
+			case 3:  birdOfPreyDoubles(row, k, maxIterations);  break;
+
+			default: mandelbrotDoubles(row, k, maxIterations);  break;
+			}
+		}
+	}
+
+	/*iterates the group of float lanes starting at point k of the row with the Mandelbrot formula*/
+	private static void mandelbrotFloats(Row row, int k, int maxIterations){
+		float[] lastR = row.floats[4];
+		float[] lastI = row.floats[5];
+		FloatVector zr = FloatVector.fromArray(FLOATS, row.floats[0], k);
+		FloatVector zi = FloatVector.fromArray(FLOATS, row.floats[1], k);
+		FloatVector cr = FloatVector.fromArray(FLOATS, row.floats[2], k);
+		FloatVector ci = FloatVector.fromArray(FLOATS, row.floats[3], k);
+		FloatVector zr2 = zr.mul(zr);
+		FloatVector zi2 = zi.mul(zi);
+		FloatVector savedR = zr;
+		FloatVector savedI = zi;
+		FloatVector dr;
+		FloatVector di;
+		VectorMask<Float> cycled;
+		VectorMask<Float> done;
+		int saveAt = FloatKernel.PERIOD_CHECK_START;
+		int iterations = 0;
+
+		//lanes past the end of the row and points that start outside the escape radius are never iterated
+		VectorMask<Float> inRow = FLOATS.indexInRange(k, row.getCount());
+		VectorMask<Float> active = inRow.and(zr2.add(zi2).lt(4));
+		zr.intoArray(lastR, 0);
+		zi.intoArray(lastI, 0);
+		store(row, k, inRow.andNot(active).toLong(), lastR, lastI, 0, 0);
+
+		while(active.anyTrue() && iterations < maxIterations){
+			zi = zr.mul(zi).mul(2).add(ci);
+			zr = zr2.sub(zi2).add(cr);
+			zr2 = zr.mul(zr);
+			zi2 = zi.mul(zi);
+			iterations++;
+
+			//lanes that have come back to the saved point are inside the set, the others are done once they escape
+			dr = zr.sub(savedR);
+			di = zi.sub(savedI);
+			cycled = active.and(dr.mul(dr).add(di.mul(di)).lt(FloatKernel.PERIOD_TOLERANCE));
+			done = active.andNot(zr2.add(zi2).lt(4)).or(cycled);
+			if(done.anyTrue()){
+				zr.intoArray(lastR, 0);
+				zi.intoArray(lastI, 0);
+				store(row, k, cycled.toLong(), lastR, lastI, maxIterations, maxIterations - iterations);
+				store(row, k, done.andNot(cycled).toLong(), lastR, lastI, iterations, 0);
+				active = active.andNot(done);
+			}
+
+			if(iterations == saveAt){
+				savedR = zr;
+				savedI = zi;
+				saveAt <<= 1;
+			}
+		}
+
+		//lanes still going have reached maxIterations
+		zr.intoArray(lastR, 0);
+		zi.intoArray(lastI, 0);
+		store(row, k, active.toLong(), lastR, lastI, iterations, 0);
+	}
+
+	/*iterates the group of float lanes starting at point k of the row with the Triplebrot formula*/
+	private static void triplebrotFloats(Row row, int k, int maxIterations){
+		float[] lastR = row.floats[4];
+		float[] lastI = row.floats[5];
+		FloatVector zr = FloatVector.fromArray(FLOATS, row.floats[0], k);
+		FloatVector zi = FloatVector.fromArray(FLOATS, row.floats[1], k);
+		FloatVector cr = FloatVector.fromArray(FLOATS, row.floats[2], k);
+		FloatVector ci = FloatVector.fromArray(FLOATS, row.floats[3], k);
+		FloatVector zr2 = zr.mul(zr);
+		FloatVector zi2 = zi.mul(zi);
+		FloatVector savedR = zr;
+		FloatVector savedI = zi;
+		FloatVector sr;
+		FloatVector si;
+		FloatVector dr;
+		FloatVector di;
+		VectorMask<Float> cycled;
+		VectorMask<Float> done;
+		int saveAt = FloatKernel.PERIOD_CHECK_START;
+		int iterations = 0;
+
+		//lanes past the end of the row and points that start outside the escape radius are never iterated
+		VectorMask<Float> inRow = FLOATS.indexInRange(k, row.getCount());
+		VectorMask<Float> active = inRow.and(zr2.add(zi2).lt(4));
+		zr.intoArray(lastR, 0);
+		zi.intoArray(lastI, 0);
+		store(row, k, inRow.andNot(active).toLong(), lastR, lastI, 0, 0);
+
+		while(active.anyTrue() && iterations < maxIterations){
+			//square twice
+			sr = zr2.sub(zi2);
+			si = zr.mul(zi).mul(2);
+			zr = sr.mul(sr).sub(si.mul(si)).add(cr);
+			zi = sr.mul(si).mul(2).add(ci);
+			zr2 = zr.mul(zr);
+			zi2 = zi.mul(zi);
+			iterations++;
+
+			//lanes that have come back to the saved point are inside the set, the others are done once they escape
+			dr = zr.sub(savedR);
+			di = zi.sub(savedI);
+			cycled = active.and(dr.mul(dr).add(di.mul(di)).lt(FloatKernel.PERIOD_TOLERANCE));
+			done = active.andNot(zr2.add(zi2).lt(4)).or(cycled);
+			if(done.anyTrue()){
+				zr.intoArray(lastR, 0);
+				zi.intoArray(lastI, 0);
+				store(row, k, cycled.toLong(), lastR, lastI, maxIterations, maxIterations - iterations);
+				store(row, k, done.andNot(cycled).toLong(), lastR, lastI, iterations, 0);
+				active = active.andNot(done);
+			}
+
+			if(iterations == saveAt){
+				savedR = zr;
+				savedI = zi;
+				saveAt <<= 1;
+			}
+		}
+
+		//lanes still going have reached maxIterations
+		zr.intoArray(lastR, 0);
+		zi.intoArray(lastI, 0);
+		store(row, k, active.toLong(), lastR, lastI, iterations, 0);
+	}
+
+	/*iterates the group of float lanes starting at point k of the row with the Burning Ship formula*/
+	private static void burningShipFloats(Row row, int k, int maxIterations){
+		float[] lastR = row.floats[4];
+		float[] lastI = row.floats[5];
+		FloatVector zr = FloatVector.fromArray(FLOATS, row.floats[0], k);
+		FloatVector zi = FloatVector.fromArray(FLOATS, row.floats[1], k);
+		FloatVector cr = FloatVector.fromArray(FLOATS, row.floats[2], k);
+		FloatVector ci = FloatVector.fromArray(FLOATS, row.floats[3], k);
+		FloatVector zr2 = zr.mul(zr);
+		FloatVector zi2 = zi.mul(zi);
+		FloatVector savedR = zr;
+		FloatVector savedI = zi;
+		FloatVector dr;
+		FloatVector di;
+		VectorMask<Float> cycled;
+		VectorMask<Float> done;
+		int saveAt = FloatKernel.PERIOD_CHECK_START;
+		int iterations = 0;
+
+		//lanes past the end of the row and points that start outside the escape radius are never iterated
+		VectorMask<Float> inRow = FLOATS.indexInRange(k, row.getCount());
+		VectorMask<Float> active = inRow.and(zr2.add(zi2).lt(4));
+		zr.intoArray(lastR, 0);
+		zi.intoArray(lastI, 0);
+		store(row, k, inRow.andNot(active).toLong(), lastR, lastI, 0, 0);
+
+		while(active.anyTrue() && iterations < maxIterations){
+			zi = zr.mul(zi).abs().mul(2).sub(ci);
+			zr = zr2.sub(zi2).add(cr);
+			zr2 = zr.mul(zr);
+			zi2 = zi.mul(zi);
+			iterations++;
+
+			//lanes that have come back to the saved point are inside the set, the others are done once they escape
+			dr = zr.sub(savedR);
+			di = zi.sub(savedI);
+			cycled = active.and(dr.mul(dr).add(di.mul(di)).lt(FloatKernel.PERIOD_TOLERANCE));
+			done = active.andNot(zr2.add(zi2).lt(4)).or(cycled);
+			if(done.anyTrue()){
+				zr.intoArray(lastR, 0);
+				zi.intoArray(lastI, 0);
+				store(row, k, cycled.toLong(), lastR, lastI, maxIterations, maxIterations - iterations);
+				store(row, k, done.andNot(cycled).toLong(), lastR, lastI, iterations, 0);
+				active = active.andNot(done);
+			}
+
+			if(iterations == saveAt){
+				savedR = zr;
+				savedI = zi;
+				saveAt <<= 1;
+			}
+		}
+
+		//lanes still going have reached maxIterations
+		zr.intoArray(lastR, 0);
+		zi.intoArray(lastI, 0);
+		store(row, k, active.toLong(), lastR, lastI, iterations, 0);
+	}
+
+	/*iterates the group of float lanes starting at point k of the row with the Bird Of Prey formula*/
+	private static void birdOfPreyFloats(Row row, int k, int maxIterations){
+		float[] lastR = row.floats[4];
+		float[] lastI = row.floats[5];
+		FloatVector zr = FloatVector.fromArray(FLOATS, row.floats[0], k);
+		FloatVector zi = FloatVector.fromArray(FLOATS, row.floats[1], k);
+		FloatVector cr = FloatVector.fromArray(FLOATS, row.floats[2], k);
+		FloatVector ci = FloatVector.fromArray(FLOATS, row.floats[3], k);
+		FloatVector zr2 = zr.mul(zr);
+		FloatVector zi2 = zi.mul(zi);
+		FloatVector savedR = zr;
+		FloatVector savedI = zi;
+		FloatVector sr;
+		FloatVector dr;
+		FloatVector di;
+		VectorMask<Float> cycled;
+		VectorMask<Float> done;
+		int saveAt = FloatKernel.PERIOD_CHECK_START;
+		int iterations = 0;
+
+		//lanes past the end of the row and points that start outside the escape radius are never iterated
+		VectorMask<Float> inRow = FLOATS.indexInRange(k, row.getCount());
+		VectorMask<Float> active = inRow.and(zr2.add(zi2).lt(4));
+		zr.intoArray(lastR, 0);
+		zi.intoArray(lastI, 0);
+		store(row, k, inRow.andNot(active).toLong(), lastR, lastI, 0, 0);
+
+		while(active.anyTrue() && iterations < maxIterations){
+			sr = zr2.sub(zi2.mul(3)).mul(zr.abs()).add(cr);
+			zi = zr2.mul(3).sub(zi2).mul(zi.abs()).add(ci);
+			zr = sr;
+			zr2 = zr.mul(zr);
+			zi2 = zi.mul(zi);
+			iterations++;
+
+			//lanes that have come back to the saved point are inside the set, the others are done once they escape
+			dr = zr.sub(savedR);
+			di = zi.sub(savedI);
+			cycled = active.and(dr.mul(dr).add(di.mul(di)).lt(FloatKernel.PERIOD_TOLERANCE));
+			done = active.andNot(zr2.add(zi2).lt(4)).or(cycled);
+			if(done.anyTrue()){
+				zr.intoArray(lastR, 0);
+				zi.intoArray(lastI, 0);
+				store(row, k, cycled.toLong(), lastR, lastI, maxIterations, maxIterations - iterations);
+				store(row, k, done.andNot(cycled).toLong(), lastR, lastI, iterations, 0);
+				active = active.andNot(done);
+			}
+
+			if(iterations == saveAt){
+				savedR = zr;
+				savedI = zi;
+				saveAt <<= 1;
+			}
+		}
+
+		//lanes still going have reached maxIterations
+		zr.intoArray(lastR, 0);
+		zi.intoArray(lastI, 0);
+		store(row, k, active.toLong(), lastR, lastI, iterations, 0);
+	}
+
+	/*iterates the group of double lanes starting at point k of the row with the Mandelbrot formula*/
+	private static void mandelbrotDoubles(Row row, int k, int maxIterations){
+		double[] lastR = row.lanes[0];
+		double[] lastI = row.lanes[1];
+		DoubleVector zr = DoubleVector.fromArray(DOUBLES, row.zr, k);
+		DoubleVector zi = DoubleVector.fromArray(DOUBLES, row.zi, k);
+		DoubleVector cr = DoubleVector.fromArray(DOUBLES, row.cr, k);
+		DoubleVector ci = DoubleVector.fromArray(DOUBLES, row.ci, k);
+		DoubleVector zr2 = zr.mul(zr);
+		DoubleVector zi2 = zi.mul(zi);
+		DoubleVector savedR = zr;
+		DoubleVector savedI = zi;
+		DoubleVector dr;
+		DoubleVector di;
+		VectorMask<Double> cycled;
+		VectorMask<Double> done;
+		int saveAt = IterationKernel.PERIOD_CHECK_START;
+		int iterations = 0;
+
+		//lanes past the end of the row and points that start outside the escape radius are never iterated
+		VectorMask<Double> inRow = DOUBLES.indexInRange(k, row.getCount());
+		VectorMask<Double> active = inRow.and(zr2.add(zi2).lt(4));
+		zr.intoArray(lastR, 0);
+		zi.intoArray(lastI, 0);
+		store(row, k, inRow.andNot(active).toLong(), lastR, lastI, 0, 0);
+
+		while(active.anyTrue() && iterations < maxIterations){
+			zi = zr.mul(zi).mul(2).add(ci);
+			zr = zr2.sub(zi2).add(cr);
+			zr2 = zr.mul(zr);
+			zi2 = zi.mul(zi);
+			iterations++;
+
+			//lanes that have come back to the saved point are inside the set, the others are done once they escape
+			dr = zr.sub(savedR);
+			di = zi.sub(savedI);
+			cycled = active.and(dr.mul(dr).add(di.mul(di)).lt(IterationKernel.PERIOD_TOLERANCE));
+			done = active.andNot(zr2.add(zi2).lt(4)).or(cycled);
+			if(done.anyTrue()){
+				zr.intoArray(lastR, 0);
+				zi.intoArray(lastI, 0);
+				store(row, k, cycled.toLong(), lastR, lastI, maxIterations, maxIterations - iterations);
+				store(row, k, done.andNot(cycled).toLong(), lastR, lastI, iterations, 0);
+				active = active.andNot(done);
+			}
+
+			if(iterations == saveAt){
+				savedR = zr;
+				savedI = zi;
+				saveAt <<= 1;
+			}
+		}
+
+		//lanes still going have reached maxIterations
+		zr.intoArray(lastR, 0);
+		zi.intoArray(lastI, 0);
+		store(row, k, active.toLong(), lastR, lastI, iterations, 0);
+	}
+
+	/*iterates the group of double lanes starting at point k of the row with the Triplebrot formula*/
+	private static void triplebrotDoubles(Row row, int k, int maxIterations){
+		double[] lastR = row.lanes[0];
+		double[] lastI = row.lanes[1];
+		DoubleVector zr = DoubleVector.fromArray(DOUBLES, row.zr, k);
+		DoubleVector zi = DoubleVector.fromArray(DOUBLES, row.zi, k);
+		DoubleVector cr = DoubleVector.fromArray(DOUBLES, row.cr, k);
+		DoubleVector ci = DoubleVector.fromArray(DOUBLES, row.ci, k);
+		DoubleVector zr2 = zr.mul(zr);
+		DoubleVector zi2 = zi.mul(zi);
+		DoubleVector savedR = zr;
+		DoubleVector savedI = zi;
+		DoubleVector sr;
+		DoubleVector si;
+		DoubleVector dr;
+		DoubleVector di;
+		VectorMask<Double> cycled;
+		VectorMask<Double> done;
+		int saveAt = IterationKernel.PERIOD_CHECK_START;
+		int iterations = 0;
+
+		//lanes past the end of the row and points that start outside the escape radius are never iterated
+		VectorMask<Double> inRow = DOUBLES.indexInRange(k, row.getCount());
+		VectorMask<Double> active = inRow.and(zr2.add(zi2).lt(4));
+		zr.intoArray(lastR, 0);
+		zi.intoArray(lastI, 0);
+		store(row, k, inRow.andNot(active).toLong(), lastR, lastI, 0, 0);
+
+		while(active.anyTrue() && iterations < maxIterations){
+			//square twice
+			sr = zr2.sub(zi2);
+			si = zr.mul(zi).mul(2);
+			zr = sr.mul(sr).sub(si.mul(si)).add(cr);
+			zi = sr.mul(si).mul(2).add(ci);
+			zr2 = zr.mul(zr);
+			zi2 = zi.mul(zi);
+			iterations++;
+
+			//lanes that have come back to the saved point are inside the set, the others are done once they escape
+			dr = zr.sub(savedR);
+			di = zi.sub(savedI);
+			cycled = active.and(dr.mul(dr).add(di.mul(di)).lt(IterationKernel.PERIOD_TOLERANCE));
+			done = active.andNot(zr2.add(zi2).lt(4)).or(cycled);
+			if(done.anyTrue()){
+				zr.intoArray(lastR, 0);
+				zi.intoArray(lastI, 0);
+				store(row, k, cycled.toLong(), lastR, lastI, maxIterations, maxIterations - iterations);
+				store(row, k, done.andNot(cycled).toLong(), lastR, lastI, iterations, 0);
+				active = active.andNot(done);
+			}
+
+			if(iterations == saveAt){
+				savedR = zr;
+				savedI = zi;
+				saveAt <<= 1;
+			}
+		}
+
+		//lanes still going have reached maxIterations
+		zr.intoArray(lastR, 0);
+		zi.intoArray(lastI, 0);
+		store(row, k, active.toLong(), lastR, lastI, iterations, 0);
+	}
+
+	/*iterates the group of double lanes starting at point k of the row with the Burning Ship formula*/
+	private static void burningShipDoubles(Row row, int k, int maxIterations){
+		double[] lastR = row.lanes[0];
+		double[] lastI = row.lanes[1];
+		DoubleVector zr = DoubleVector.fromArray(DOUBLES, row.zr, k);
+		DoubleVector zi = DoubleVector.fromArray(DOUBLES, row.zi, k);
+		DoubleVector cr = DoubleVector.fromArray(DOUBLES, row.cr, k);
+		DoubleVector ci = DoubleVector.fromArray(DOUBLES, row.ci, k);
+		DoubleVector zr2 = zr.mul(zr);
+		DoubleVector zi2 = zi.mul(zi);
+		DoubleVector savedR = zr;
+		DoubleVector savedI = zi;
+		DoubleVector dr;
+		DoubleVector di;
+		VectorMask<Double> cycled;
+		VectorMask<Double> done;
+		int saveAt = IterationKernel.PERIOD_CHECK_START;
+		int iterations = 0;
+
+		//lanes past the end of the row and points that start outside the escape radius are never iterated
+		VectorMask<Double> inRow = DOUBLES.indexInRange(k, row.getCount());
+		VectorMask<Double> active = inRow.and(zr2.add(zi2).lt(4));
+		zr.intoArray(lastR, 0);
+		zi.intoArray(lastI, 0);
+		store(row, k, inRow.andNot(active).toLong(), lastR, lastI, 0, 0);
+
+		while(active.anyTrue() && iterations < maxIterations){
+			zi = zr.mul(zi).abs().mul(2).sub(ci);
+			zr = zr2.sub(zi2).add(cr);
+			zr2 = zr.mul(zr);
+			zi2 = zi.mul(zi);
+			iterations++;
+
+			//lanes that have come back to the saved point are inside the set, the others are done once they escape
+			dr = zr.sub(savedR);
+			di = zi.sub(savedI);
+			cycled = active.and(dr.mul(dr).add(di.mul(di)).lt(IterationKernel.PERIOD_TOLERANCE));
+			done = active.andNot(zr2.add(zi2).lt(4)).or(cycled);
+			if(done.anyTrue()){
+				zr.intoArray(lastR, 0);
+				zi.intoArray(lastI, 0);
+				store(row, k, cycled.toLong(), lastR, lastI, maxIterations, maxIterations - iterations);
+				store(row, k, done.andNot(cycled).toLong(), lastR, lastI, iterations, 0);
+				active = active.andNot(done);
+			}
+
+			if(iterations == saveAt){
+				savedR = zr;
+				savedI = zi;
+				saveAt <<= 1;
+			}
+		}
+
+		//lanes still going have reached maxIterations
+		zr.intoArray(lastR, 0);
+		zi.intoArray(lastI, 0);
+		store(row, k, active.toLong(), lastR, lastI, iterations, 0);
+	}
+
+	/*iterates the group of double lanes starting at point k of the row with the Bird Of Prey formula*/
+	private static void birdOfPreyDoubles(Row row, int k, int maxIterations){
+		double[] lastR = row.lanes[0];
+		double[] lastI = row.lanes[1];
+		DoubleVector zr = DoubleVector.fromArray(DOUBLES, row.zr, k);
+		DoubleVector zi = DoubleVector.fromArray(DOUBLES, row.zi, k);
+		DoubleVector cr = DoubleVector.fromArray(DOUBLES, row.cr, k);
+		DoubleVector ci = DoubleVector.fromArray(DOUBLES, row.ci, k);
+		DoubleVector zr2 = zr.mul(zr);
+		DoubleVector zi2 = zi.mul(zi);
+		DoubleVector savedR = zr;
+		DoubleVector savedI = zi;
+		DoubleVector sr;
+		DoubleVector dr;
+		DoubleVector di;
+		VectorMask<Double> cycled;
+		VectorMask<Double> done;
+		int saveAt = IterationKernel.PERIOD_CHECK_START;
+		int iterations = 0;
+
+		//lanes past the end of the row and points that start outside the escape radius are never iterated
+		VectorMask<Double> inRow = DOUBLES.indexInRange(k, row.getCount());
+		VectorMask<Double> active = inRow.and(zr2.add(zi2).lt(4));
+		zr.intoArray(lastR, 0);
+		zi.intoArray(lastI, 0);
+		store(row, k, inRow.andNot(active).toLong(), lastR, lastI, 0, 0);
+
+		while(active.anyTrue() && iterations < maxIterations){
+			sr = zr2.sub(zi2.mul(3)).mul(zr.abs()).add(cr);
+			zi = zr2.mul(3).sub(zi2).mul(zi.abs()).add(ci);
+			zr = sr;
+			zr2 = zr.mul(zr);
+			zi2 = zi.mul(zi);
+			iterations++;
+
+			//lanes that have come back to the saved point are inside the set, the others are done once they escape
+			dr = zr.sub(savedR);
+			di = zi.sub(savedI);
+			cycled = active.and(dr.mul(dr).add(di.mul(di)).lt(IterationKernel.PERIOD_TOLERANCE));
+			done = active.andNot(zr2.add(zi2).lt(4)).or(cycled);
+			if(done.anyTrue()){
+				zr.intoArray(lastR, 0);
+				zi.intoArray(lastI, 0);
+				store(row, k, cycled.toLong(), lastR, lastI, maxIterations, maxIterations - iterations);
+				store(row, k, done.andNot(cycled).toLong(), lastR, lastI, iterations, 0);
+				active = active.andNot(done);
+			}
+
+			if(iterations == saveAt){
+				savedR = zr;
+				savedI = zi;
+				saveAt <<= 1;
+			}
+		}
+
+		//lanes still going have reached maxIterations
+		zr.intoArray(lastR, 0);
+		zi.intoArray(lastI, 0);
+		store(row, k, active.toLong(), lastR, lastI, iterations, 0);
+	}
+
+	/*writes out the results of the lanes set in the bits of lanes, for the group of lanes starting at point k of the row.
+	 * lastR and lastI hold the last point of every lane of the group*/
+	private static void store(Row row, int k, long lanes, float[] lastR, float[] lastI, int iterations, int skipped){
+		//visit each set bit, lowest first
+		while(lanes != 0){
+			int lane = Long.numberOfTrailingZeros(lanes);
+			row.iterations[k + lane] = iterations;
+			row.skipped[k + lane] = skipped;
+			row.lastR[k + lane] = lastR[lane];
+			row.lastI[k + lane] = lastI[lane];
+			lanes &= lanes - 1;
+		}
+	}
+
+	/*writes out the results of the lanes set in the bits of lanes, for the group of lanes starting at point k of the row.
+	 * lastR and lastI hold the last point of every lane of the group*/
+	private static void store(Row row, int k, long lanes, double[] lastR, double[] lastI, int iterations, int skipped){
+		//visit each set bit, lowest first
+		while(lanes != 0){
+			int lane = Long.numberOfTrailingZeros(lanes);
+			row.iterations[k + lane] = iterations;
+			row.skipped[k + lane] = skipped;
+			row.lastR[k + lane] = lastR[lane];
+			row.lastI[k + lane] = lastI[lane];
+			lanes &= lanes - 1;
+		}
+	}
+}